@@ -9,6 +9,9 @@ plugins {
 
     // Configures artifact repositories used for dependency resolution to include maven central and nexus snapshots.
     alias(libs.plugins.openrewrite.recipe.repositories)
+
+    // Microbenchmarks in src/jmh, run with ./gradlew jmh.
+    alias(libs.plugins.jmh)
 }
 
 group = "io.oczadly"
@@ -19,6 +22,8 @@ dependencies {
     implementation(platform("org.openrewrite.recipe:rewrite-recipe-bom:${libs.versions.openrewrite.bom.get()}"))
 
     implementation("org.openrewrite:rewrite-hcl")
+    // Property files; Jackson's version is aligned by the Jackson platform of rewrite-core.
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml")
 
     // lombok is optional, but recommended from the documentation for authoring recipes
     compileOnly("org.projectlombok:lombok:${libs.versions.lombok.get()}")
@@ -30,6 +35,12 @@ dependencies {
     testImplementation("org.assertj:assertj-core:${libs.versions.assertj.get()}")
 }
 
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    // Reports gc.alloc.rate.norm, the bytes allocated per benchmark operation.
+    profilers.add("gc")
+}
+
 mavenPublishing {
     coordinates(group.toString(), name.toString(), version.toString())
 
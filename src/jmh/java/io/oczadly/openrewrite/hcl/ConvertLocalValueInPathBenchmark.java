@@ -0,0 +1,91 @@
+package io.oczadly.openrewrite.hcl;
+
+import io.oczadly.openrewrite.hcl.ConvertLocalValueInPath.AttributeTransformation;
+import io.oczadly.openrewrite.hcl.utils.AttributePathAutomaton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrewrite.hcl.HclParser;
+import org.openrewrite.hcl.tree.Expression;
+import org.openrewrite.hcl.tree.Hcl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforms the records of a locals value with one records object per DNS zone, the shape that
+ * used to be rescanned from the start for every records object. 66k zones print to about 10 MB.
+ * <p>
+ * The build runs benchmarks with the {@code gc} profiler: {@code gc.alloc.rate.norm} should grow
+ * with the number of transformed values only, as every other node is shared with the parsed value,
+ * and stay near zero for {@link #noMatch()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertLocalValueInPathBenchmark {
+
+    @Param({"1000", "66000"})
+    public int records;
+
+    private Expression value;
+    private Expression listValue;
+    private AttributePathAutomaton attributePaths;
+    private AttributePathAutomaton missingPaths;
+
+    @Setup
+    public void setUp() {
+        Hcl.ConfigFile configFile = (Hcl.ConfigFile) HclParser.builder().build()
+            .parse(zones(records))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("Could not parse benchmark locals"));
+        Hcl.Block locals = (Hcl.Block) configFile.getBody().get(0);
+        value = ((Hcl.Attribute) locals.getBody().get(0)).getValue();
+        attributePaths = AttributePathAutomaton.compile(List.of("*.records.*.value"));
+        missingPaths = AttributePathAutomaton.compile(List.of("*.records.*.missing"));
+        listValue = stringToList();
+    }
+
+    @Benchmark
+    public Expression stringToList() {
+        return ConvertLocalValueInPath.transformValue(value, attributePaths, Collections.singletonList(AttributeTransformation.STRING_TO_LIST));
+    }
+
+    @Benchmark
+    public Expression listToString() {
+        return ConvertLocalValueInPath.transformValue(listValue, attributePaths, Collections.singletonList(AttributeTransformation.LIST_TO_STRING));
+    }
+
+    @Benchmark
+    public Expression noMatch() {
+        return ConvertLocalValueInPath.transformValue(value, missingPaths, Collections.singletonList(AttributeTransformation.STRING_TO_LIST));
+    }
+
+    static String zones(int count) {
+        StringBuilder text = new StringBuilder(count * 112);
+        text.append("locals {\n  txt_records = {\n");
+        for (int i = 0; i < count; i++) {
+            text.append("    \"zone").append(i).append("\" = {\n")
+                .append("      records = {\n")
+                .append("        \"txt\" = {\n")
+                .append("          ttl   = 300\n")
+                .append("          value = \"v=spf1 include:zone").append(i).append(" -all\"\n")
+                .append("        }\n")
+                .append("      }\n")
+                .append("    }\n");
+        }
+        return text.append("  }\n}\n").toString();
+    }
+}
@@ -0,0 +1,77 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches 100k source paths against a file pattern, compiling the glob per call as the provider
+ * recipes used to, and with the cached {@link GlobMatcher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlobMatcherBenchmark {
+
+    private static final int PATHS = 100_000;
+
+    @Param({"**/main.tf", "environments/*/modules/**/*.{tf,hcl}"})
+    public String pattern;
+
+    private String[] paths;
+
+    @Setup
+    public void setUp() {
+        paths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            paths[i] = "environments/env" + (i % 10) + "/modules/module" + i + (i % 3 == 0 ? "/main.tf" : "/variables.hcl");
+        }
+    }
+
+    @Benchmark
+    public int compilePerPath() {
+        int matches = 0;
+        for (String path : paths) {
+            if (matchesPerCall(path, pattern)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int cachedMatcher() {
+        int matches = 0;
+        for (String path : paths) {
+            if (GlobMatcher.of(pattern).matches(path)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matchesPerCall(String path, String pattern) {
+        Path candidate = Paths.get(path);
+        if (FileSystems.getDefault().getPathMatcher("glob:" + pattern).matches(candidate)) {
+            return true;
+        }
+        return candidate.getParent() == null && pattern.startsWith("**/") &&
+            FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)).matches(candidate);
+    }
+}
@@ -2,6 +2,7 @@ package io.oczadly.openrewrite.hcl;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -76,7 +77,7 @@ public class AddImportBlock extends Recipe {
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor() {
-        return TopLevelBlockRecipeSupport.topLevelBlockVisitor("import", buildBlockBody(), moduleName, source, version, filePattern);
+        return TopLevelBlockRecipeSupport.topLevelBlockVisitor(this, "import", this::buildBlockBody, moduleName, source, version, filePattern);
     }
 
     @Override
@@ -90,10 +91,10 @@ public class AddImportBlock extends Recipe {
         return validated;
     }
 
-    private String buildBlockBody() {
-        String resolvedTo = TopLevelBlockRecipeSupport.resolveRequiredValue(to, "to");
+    private String buildBlockBody(PropertySource properties) {
+        String resolvedTo = TopLevelBlockRecipeSupport.resolveRequiredValue(to, "to", properties);
         TopLevelBlockRecipeSupport.validateHclTraversal(resolvedTo, "to");
-        String resolvedId = TopLevelBlockRecipeSupport.resolveRequiredValue(id, "id");
+        String resolvedId = TopLevelBlockRecipeSupport.resolveRequiredValue(id, "id", properties);
 
         return "to = " + resolvedTo + "\n" +
                "id = " + TopLevelBlockRecipeSupport.quoteHclString(resolvedId);
@@ -1,7 +1,10 @@
 package io.oczadly.openrewrite.hcl;
 
+import io.oczadly.openrewrite.hcl.utils.HclStyle;
+import io.oczadly.openrewrite.hcl.utils.HclStyleDetector;
 import io.oczadly.openrewrite.hcl.utils.ModuleBlockPredicates;
 import io.oczadly.openrewrite.hcl.utils.PropertyPlaceholderResolver;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -68,7 +71,7 @@ public class AddModuleInput extends ModuleRecipe {
                 block = (Hcl.Block) super.visitBlock(block, ctx);
 
                 if (matchesModule(block) && block.getAttribute(inputName) == null) {
-                    Hcl.Block modified = addAttribute(block);
+                    Hcl.Block modified = addAttribute(block, PropertySource.forRun(ctx));
                     doAfterVisit(new SpacesVisitor<>(SpacesStyle.DEFAULT, modified));
                     return modified;
                 }
@@ -76,16 +79,18 @@ public class AddModuleInput extends ModuleRecipe {
                 return block;
             }
 
-            private Hcl.Block addAttribute(Hcl.Block block) {
+            private Hcl.Block addAttribute(Hcl.Block block, PropertySource properties) {
                 List<BodyContent> newBody = new ArrayList<>(block.getBody());
 
-                String indent = ModuleBlockPredicates.detectIndentation(block);
-                String effectiveValue = resolveInputValue();
+                Hcl.ConfigFile configFile = getCursor().firstEnclosing(Hcl.ConfigFile.class);
+                HclStyle style = configFile != null ? HclStyleDetector.detect(configFile) : HclStyle.DEFAULT;
+                String indent = ModuleBlockPredicates.detectIndentation(block, style.getIndentUnit());
+                String effectiveValue = resolveInputValue(properties);
                 String quotedValue = "\"" + effectiveValue + "\"";
 
                 Hcl.Attribute newAttribute = new Hcl.Attribute(
                     Tree.randomId(),
-                    Space.format('\n' + indent),
+                    Space.format(style.getNewline() + indent),
                     Markers.EMPTY,
                     new Hcl.Identifier(Tree.randomId(), Space.EMPTY, Markers.EMPTY, inputName),
                     new HclLeftPadded<>(Space.format(" "), Hcl.Attribute.Type.Assignment, Markers.EMPTY),
@@ -98,18 +103,18 @@ public class AddModuleInput extends ModuleRecipe {
             }
 
 
-            private String resolveInputValue() {
+            private String resolveInputValue(PropertySource properties) {
                 if (inputValueProperty != null) {
-                    // Backward compatible behavior: plain property names still resolve via System.getProperty(name).
+                    // Backward compatible behavior: plain property names still resolve as a single system property.
                     if (!inputValueProperty.contains("${")) {
-                        String propertyValue = System.getProperty(inputValueProperty);
+                        String propertyValue = properties.getProperty(inputValueProperty);
                         if (propertyValue == null) {
                             throw new IllegalStateException("System property '" + inputValueProperty + "' is not set");
                         }
                         return propertyValue;
                     }
 
-                    return PropertyPlaceholderResolver.resolve(inputValueProperty);
+                    return PropertyPlaceholderResolver.resolveFrom(inputValueProperty, properties);
                 }
                 return inputValue;
             }
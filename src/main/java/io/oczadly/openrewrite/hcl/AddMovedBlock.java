@@ -2,6 +2,7 @@ package io.oczadly.openrewrite.hcl;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -76,7 +77,7 @@ public class AddMovedBlock extends Recipe {
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor() {
-        return TopLevelBlockRecipeSupport.topLevelBlockVisitor("moved", buildBlockBody(), moduleName, source, version, filePattern);
+        return TopLevelBlockRecipeSupport.topLevelBlockVisitor(this, "moved", this::buildBlockBody, moduleName, source, version, filePattern);
     }
 
     @Override
@@ -90,10 +91,10 @@ public class AddMovedBlock extends Recipe {
         return validated;
     }
 
-    private String buildBlockBody() {
-        String resolvedFrom = TopLevelBlockRecipeSupport.resolveRequiredValue(from, "from");
+    private String buildBlockBody(PropertySource properties) {
+        String resolvedFrom = TopLevelBlockRecipeSupport.resolveRequiredValue(from, "from", properties);
         TopLevelBlockRecipeSupport.validateHclTraversal(resolvedFrom, "from");
-        String resolvedTo = TopLevelBlockRecipeSupport.resolveRequiredValue(to, "to");
+        String resolvedTo = TopLevelBlockRecipeSupport.resolveRequiredValue(to, "to", properties);
         TopLevelBlockRecipeSupport.validateHclTraversal(resolvedTo, "to");
 
         return "from = " + resolvedFrom + "\n" +
@@ -2,6 +2,14 @@ package io.oczadly.openrewrite.hcl;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.oczadly.openrewrite.hcl.utils.DirectoryInterner;
+import io.oczadly.openrewrite.hcl.utils.DirectoryMap;
+import io.oczadly.openrewrite.hcl.utils.GlobMatcher;
+import io.oczadly.openrewrite.hcl.utils.HclStyle;
+import io.oczadly.openrewrite.hcl.utils.HclStyleDetector;
+import io.oczadly.openrewrite.hcl.utils.ModuleMatcher;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
+import io.oczadly.openrewrite.hcl.utils.TopLevelBlockIndex;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -22,10 +30,6 @@ import org.openrewrite.hcl.tree.Space;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.NavigableSet;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentSkipListSet;
 
 @Value
 @EqualsAndHashCode(callSuper = false)
@@ -33,63 +37,82 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
     @Value
     public static class ScanState {
-        ConcurrentMap<String, DirectoryState> directories = new ConcurrentHashMap<>();
+        // Property snapshot of the run, shared by the scanning and editing phases.
+        PropertySource properties;
+        DirectoryInterner directoryInterner;
+        // Matcher of filePattern, resolved once per run; null matches every file.
+        @Nullable
+        GlobMatcher fileMatcher;
+        DirectoryMap<DirectoryState> directories = new DirectoryMap<>();
 
         void addFile(Hcl.ConfigFile configFile,
                      boolean moduleFiltersMatched,
                      boolean hasTerraformBlock,
                      boolean hasRequiredProvidersBlock) {
+            DirectoryState state = directories.computeIfAbsent(directoryInterner.idOf(configFile.getSourcePath()), DirectoryState::new);
             String path = configFile.getSourcePath().toString();
-            String directory = ProviderRecipeSupport.directoryOf(path);
-            DirectoryState state = directories.computeIfAbsent(directory, ignored -> new DirectoryState());
+            boolean candidate = fileMatcher == null || fileMatcher.matches(path);
+            state.add(path, candidate, moduleFiltersMatched, hasTerraformBlock, hasRequiredProvidersBlock);
+        }
+
+        @Nullable
+        String targetFileFor(Hcl.ConfigFile configFile) {
+            DirectoryState state = directories.get(directoryInterner.idOf(configFile.getSourcePath()));
+            return state == null ? null : state.targetFile();
+        }
+    }
+
+    /**
+     * Scan results of one directory. Only the least path of each kind of file matching filePattern
+     * is kept, since the provider is added to the first file in path order.
+     */
+    public static final class DirectoryState {
+        private boolean moduleFiltersMatched;
+        private @Nullable String firstMatchingFile;
+        private @Nullable String firstTerraformFile;
+        private @Nullable String firstRequiredProvidersFile;
+
+        synchronized void add(String path,
+                              boolean candidate,
+                              boolean moduleFiltersMatched,
+                              boolean hasTerraformBlock,
+                              boolean hasRequiredProvidersBlock) {
+            // Any file of the directory may hold the matching module, even outside filePattern.
+            this.moduleFiltersMatched |= moduleFiltersMatched;
+            if (!candidate) {
+                return;
+            }
             if (moduleFiltersMatched) {
-                state.matchingFiles.add(path);
+                firstMatchingFile = least(firstMatchingFile, path);
             }
             if (hasTerraformBlock) {
-                state.terraformFiles.add(path);
+                firstTerraformFile = least(firstTerraformFile, path);
             }
             if (hasRequiredProvidersBlock) {
-                state.requiredProvidersFiles.add(path);
+                firstRequiredProvidersFile = least(firstRequiredProvidersFile, path);
             }
         }
 
-        @Nullable
-        String targetFileFor(Hcl.ConfigFile configFile, @Nullable String filePattern) {
-            String directory = ProviderRecipeSupport.directoryOf(configFile.getSourcePath().toString());
-            DirectoryState state = directories.get(directory);
-            if (state == null || state.matchingFiles.isEmpty()) {
+        /**
+         * @return the file to add the provider to: the first file with a {@code required_providers}
+         * block, else with a {@code terraform} block, else with a matching module, or {@code null}
+         * if no module in the directory matches
+         */
+        synchronized @Nullable String targetFile() {
+            if (!moduleFiltersMatched) {
                 return null;
             }
-
-            String candidate = firstMatching(state.requiredProvidersFiles, filePattern);
-            if (candidate != null) {
-                return candidate;
-            }
-            candidate = firstMatching(state.terraformFiles, filePattern);
-            if (candidate != null) {
-                return candidate;
+            if (firstRequiredProvidersFile != null) {
+                return firstRequiredProvidersFile;
             }
-            return firstMatching(state.matchingFiles, filePattern);
+            return firstTerraformFile != null ? firstTerraformFile : firstMatchingFile;
         }
 
-        @Nullable
-        private String firstMatching(NavigableSet<String> candidates, @Nullable String filePattern) {
-            for (String candidate : candidates) {
-                if (filePattern == null || ProviderRecipeSupport.matchesPattern(candidate, filePattern)) {
-                    return candidate;
-                }
-            }
-            return null;
+        private static String least(@Nullable String current, String path) {
+            return current == null || path.compareTo(current) < 0 ? path : current;
         }
     }
 
-    @Value
-    public static class DirectoryState {
-        NavigableSet<String> matchingFiles = new ConcurrentSkipListSet<>();
-        NavigableSet<String> terraformFiles = new ConcurrentSkipListSet<>();
-        NavigableSet<String> requiredProvidersFiles = new ConcurrentSkipListSet<>();
-    }
-
     @Option(displayName = "Provider name", description = "The provider name to add (for example 'azapi' or 'azuread')")
     @Nullable
     String providerName;
@@ -155,29 +178,39 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
     @Override
     public @NonNull ScanState getInitialValue(@Nullable ExecutionContext ctx) {
-        return new ScanState();
+        return new ScanState(
+            PropertySource.forRun(ctx),
+            DirectoryInterner.forRun(ctx),
+            filePattern != null ? GlobMatcher.of(filePattern) : null
+        );
     }
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getScanner(@Nullable ScanState acc) {
-        String resolvedModuleSource = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(source, "source");
-        String resolvedModuleVersion = TopLevelBlockRecipeSupport.resolveOptionalVersionFilterValue(version);
-        String resolvedModuleName = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(moduleName, "moduleName");
+        PropertySource properties = acc != null ? acc.properties : PropertySource.systemSnapshot();
+        ModuleMatcher moduleMatcher = ModuleMatcher.of(
+            TopLevelBlockRecipeSupport.resolveOptionalFilterValue(moduleName, "moduleName", properties),
+            TopLevelBlockRecipeSupport.resolveOptionalFilterValue(source, "source", properties),
+            TopLevelBlockRecipeSupport.resolveOptionalVersionFilter(version, properties)
+        );
+        if (moduleMatcher.isUnsatisfiable()) {
+            // No module can match, so no directory is ever marked and the scan can be skipped.
+            return TreeVisitor.noop();
+        }
 
         return ProviderRecipeSupport.scopedVisitor("**/*.tf", new HclVisitor<ExecutionContext>() {
             @Override
             public @NonNull Hcl visitConfigFile(Hcl.@NonNull ConfigFile configFile, ExecutionContext ctx) {
                 Hcl.ConfigFile visited = (Hcl.ConfigFile) super.visitConfigFile(configFile, ctx);
-                Hcl.Block terraformBlock = ProviderRecipeSupport.findTopLevelBlock(visited, "terraform");
-                Hcl.Block requiredProvidersBlock = terraformBlock == null ? null : ProviderRecipeSupport.findNestedBlock(terraformBlock, "required_providers");
-                boolean moduleFiltersMatched = ProviderRecipeSupport.matchesModuleFilters(visited, resolvedModuleName, resolvedModuleSource, resolvedModuleVersion);
+                TopLevelBlockIndex blocks = TopLevelBlockIndex.of(visited);
+                boolean moduleFiltersMatched = moduleMatcher.matchesAny(visited);
 
                 if (acc != null) {
                     acc.addFile(
                         visited,
                         moduleFiltersMatched,
-                        terraformBlock != null,
-                        requiredProvidersBlock != null
+                        blocks.first("terraform") != null,
+                        blocks.requiredProviders() != null
                     );
                 }
                 return visited;
@@ -187,10 +220,11 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor(@Nullable ScanState acc) {
-        String resolvedProviderName = TopLevelBlockRecipeSupport.resolveRequiredValue(providerName, "providerName");
-        String resolvedProviderVersion = TopLevelBlockRecipeSupport.resolveRequiredValue(providerVersion, "providerVersion");
-        String resolvedProviderSource = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(providerSource, "providerSource");
-        String resolvedConfiguration = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(configuration, "configuration");
+        PropertySource properties = acc != null ? acc.properties : PropertySource.systemSnapshot();
+        String resolvedProviderName = TopLevelBlockRecipeSupport.resolveRequiredValue(providerName, "providerName", properties);
+        String resolvedProviderVersion = TopLevelBlockRecipeSupport.resolveRequiredValue(providerVersion, "providerVersion", properties);
+        String resolvedProviderSource = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(providerSource, "providerSource", properties);
+        String resolvedConfiguration = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(configuration, "configuration", properties);
 
         HclParser parser = HclParser.builder().build();
 
@@ -201,7 +235,7 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
                 String targetFile = null;
                 if (acc != null) {
-                    targetFile = acc.targetFileFor(visited, filePattern);
+                    targetFile = acc.targetFileFor(visited);
                 }
                 if (targetFile == null || !targetFile.equals(visited.getSourcePath().toString())) {
                     return visited;
@@ -209,14 +243,15 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
                 boolean changed = false;
                 Hcl.ConfigFile modified = visited;
+                HclStyle style = HclStyleDetector.detect(visited);
 
                 if (!hasProviderInRequiredProviders(modified, resolvedProviderName)) {
-                    modified = addProviderToRequiredProviders(modified, parser, resolvedProviderName, resolvedProviderSource, resolvedProviderVersion);
+                    modified = addProviderToRequiredProviders(modified, parser, style, resolvedProviderName, resolvedProviderSource, resolvedProviderVersion);
                     changed = true;
                 }
 
                 if (resolvedConfiguration != null && !hasProviderConfigurationBlock(modified, resolvedProviderName)) {
-                    modified = addProviderConfigurationBlock(modified, parser, resolvedProviderName, resolvedConfiguration);
+                    modified = addProviderConfigurationBlock(modified, parser, style, resolvedProviderName, resolvedConfiguration);
                     changed = true;
                 }
 
@@ -229,12 +264,7 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
             }
 
             private boolean hasProviderInRequiredProviders(Hcl.ConfigFile configFile, String providerName) {
-                Hcl.Block terraformBlock = ProviderRecipeSupport.findTopLevelBlock(configFile, "terraform");
-                if (terraformBlock == null) {
-                    return false;
-                }
-
-                Hcl.Block requiredProvidersBlock = ProviderRecipeSupport.findNestedBlock(terraformBlock, "required_providers");
+                Hcl.Block requiredProvidersBlock = TopLevelBlockIndex.of(configFile).requiredProviders();
                 if (requiredProvidersBlock == null) {
                     return false;
                 }
@@ -252,37 +282,40 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
             private Hcl.ConfigFile addProviderToRequiredProviders(Hcl.ConfigFile configFile,
                                                                   HclParser parser,
+                                                                  HclStyle style,
                                                                   String providerName,
                                                                   @Nullable String providerSource,
                                                                   String providerVersion) {
-                Hcl.Block terraformBlock = ProviderRecipeSupport.findTopLevelBlock(configFile, "terraform");
+                TopLevelBlockIndex blocks = TopLevelBlockIndex.of(configFile);
+                Hcl.Block terraformBlock = blocks.first("terraform");
                 if (terraformBlock == null) {
-                    return addTerraformBlock(configFile, parser, providerName, providerSource, providerVersion);
+                    return addTerraformBlock(configFile, parser, style, providerName, providerSource, providerVersion);
                 }
 
-                Hcl.Block requiredProvidersBlock = ProviderRecipeSupport.findNestedBlock(terraformBlock, "required_providers");
+                Hcl.Block requiredProvidersBlock = blocks.requiredProviders();
                 Hcl.Block updatedTerraform;
                 if (requiredProvidersBlock == null) {
-                    String requiredProvidersIndent = ProviderRecipeSupport.childIndent(terraformBlock, "  ");
-                    Hcl.Block requiredProvidersToAdd = parseRequiredProvidersBlockForTerraform(parser, providerName, providerSource, providerVersion)
-                        .withPrefix(Space.format("\n" + requiredProvidersIndent));
+                    String requiredProvidersIndent = ProviderRecipeSupport.childIndent(terraformBlock, style.getIndentUnit());
+                    Hcl.Block requiredProvidersToAdd = parseRequiredProvidersBlockForTerraform(parser, style, providerName, providerSource, providerVersion)
+                        .withPrefix(Space.format(style.getNewline() + requiredProvidersIndent));
 
                     List<BodyContent> terraformBody = new ArrayList<>(terraformBlock.getBody());
                     terraformBody.add(requiredProvidersToAdd);
                     updatedTerraform = terraformBlock.withBody(terraformBody);
                 } else {
-                    String requiredProvidersPrefix = requiredProvidersBlock.getPrefix().getWhitespace();
-                    int newlineIndex = requiredProvidersPrefix.lastIndexOf('\n');
-                    String requiredProvidersIndent = newlineIndex >= 0 ? requiredProvidersPrefix.substring(newlineIndex + 1) : "";
-                    String entryIndent = ProviderRecipeSupport.childIndent(requiredProvidersBlock, requiredProvidersIndent + "  ");
+                    String requiredProvidersIndent = HclStyle.indentationOf(requiredProvidersBlock.getPrefix().getWhitespace());
+                    if (requiredProvidersIndent == null) {
+                        requiredProvidersIndent = "";
+                    }
+                    String entryIndent = ProviderRecipeSupport.childIndent(requiredProvidersBlock, requiredProvidersIndent + style.getIndentUnit());
 
                     List<String> renderedEntries = new ArrayList<>(requiredProvidersBlock.getBody().size() + 1);
                     for (BodyContent bodyContent : requiredProvidersBlock.getBody()) {
                         renderedEntries.add(ProviderRecipeSupport.indentBlockBody(bodyContent.printTrimmed(getCursor()), entryIndent));
                     }
-                    renderedEntries.add(renderProviderEntry(providerName, providerSource, providerVersion, entryIndent));
+                    renderedEntries.add(renderProviderEntry(style, providerName, providerSource, providerVersion, entryIndent));
 
-                    Hcl.Block updatedRequiredProviders = parseRequiredProvidersBlock(parser, renderedEntries, requiredProvidersIndent)
+                    Hcl.Block updatedRequiredProviders = parseRequiredProvidersBlock(parser, style, renderedEntries, requiredProvidersIndent)
                         .withPrefix(requiredProvidersBlock.getPrefix());
                     updatedTerraform = ProviderRecipeSupport.replaceNestedBlock(terraformBlock, requiredProvidersBlock, updatedRequiredProviders);
                 }
@@ -292,12 +325,13 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
             private Hcl.ConfigFile addTerraformBlock(Hcl.ConfigFile configFile,
                                                      HclParser parser,
+                                                     HclStyle style,
                                                      String providerName,
                                                      @Nullable String providerSource,
                                                      String providerVersion) {
-                Hcl.Block terraformToAdd = parseTerraformBlock(parser, providerName, providerSource, providerVersion);
+                Hcl.Block terraformToAdd = parseTerraformBlock(parser, style, providerName, providerSource, providerVersion);
                 if (!configFile.getBody().isEmpty()) {
-                    terraformToAdd = terraformToAdd.withPrefix(Space.format("\n\n"));
+                    terraformToAdd = terraformToAdd.withPrefix(Space.format(style.topLevelBlockSeparator()));
                 }
 
                 List<BodyContent> updatedBody = new ArrayList<>(configFile.getBody());
@@ -306,30 +340,17 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
             }
 
             private boolean hasProviderConfigurationBlock(Hcl.ConfigFile configFile, String providerName) {
-                for (BodyContent bodyContent : configFile.getBody()) {
-                    if (!(bodyContent instanceof Hcl.Block)) {
-                        continue;
-                    }
-
-                    Hcl.Block block = (Hcl.Block) bodyContent;
-                    if (!ProviderRecipeSupport.isBlockType(block, "provider")) {
-                        continue;
-                    }
-
-                    if (ProviderRecipeSupport.matchesProviderNameLabel(block, providerName)) {
-                        return true;
-                    }
-                }
-                return false;
+                return TopLevelBlockIndex.of(configFile).contains("provider", providerName);
             }
 
             private Hcl.ConfigFile addProviderConfigurationBlock(Hcl.ConfigFile configFile,
                                                                  HclParser parser,
+                                                                 HclStyle style,
                                                                  String providerName,
                                                                  String providerConfiguration) {
-                Hcl.Block providerBlock = parseProviderBlock(parser, providerName, providerConfiguration);
+                Hcl.Block providerBlock = parseProviderBlock(parser, style, providerName, providerConfiguration);
                 if (!configFile.getBody().isEmpty()) {
-                    providerBlock = providerBlock.withPrefix(Space.format("\n\n"));
+                    providerBlock = providerBlock.withPrefix(Space.format(style.topLevelBlockSeparator()));
                 }
 
                 List<BodyContent> updatedBody = new ArrayList<>(configFile.getBody());
@@ -338,23 +359,26 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
             }
 
             private Hcl.Block parseTerraformBlock(HclParser parser,
+                                                  HclStyle style,
                                                   String providerName,
                                                   @Nullable String providerSource,
                                                   String providerVersion) {
-                String providerEntry = renderProviderEntry(providerName, providerSource, providerVersion, "    ");
+                String indent = style.getIndentUnit();
+                String providerEntry = renderProviderEntry(style, providerName, providerSource, providerVersion, indent + indent);
                 String terraformText = "terraform {\n"
-                                       + "  required_providers {\n"
+                                       + indent + "required_providers {\n"
                                        + providerEntry + "\n"
-                                       + "  }\n"
+                                       + indent + "}\n"
                                        + "}\n";
-                return ProviderRecipeSupport.parseSingleBlock(parser, terraformText, "terraform block");
+                return ProviderRecipeSupport.parseSingleBlock(parser, style.withNewlines(terraformText), "terraform block");
             }
 
             private Hcl.Block parseRequiredProvidersBlockForTerraform(HclParser parser,
+                                                                       HclStyle style,
                                                                        String providerName,
                                                                        @Nullable String providerSource,
                                                                        String providerVersion) {
-                Hcl.Block terraformBlock = parseTerraformBlock(parser, providerName, providerSource, providerVersion);
+                Hcl.Block terraformBlock = parseTerraformBlock(parser, style, providerName, providerSource, providerVersion);
                 Hcl.Block requiredProvidersBlock = ProviderRecipeSupport.findNestedBlock(terraformBlock, "required_providers");
                 if (requiredProvidersBlock == null) {
                     throw new IllegalStateException("Generated terraform block does not contain required_providers block");
@@ -364,26 +388,29 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
 
 
             private Hcl.Block parseRequiredProvidersBlock(HclParser parser,
+                                                          HclStyle style,
                                                           List<String> renderedEntries,
                                                           String closingIndent) {
                 String blockText = "required_providers {\n"
                                    + String.join("\n", renderedEntries) + "\n"
                                    + closingIndent + "}\n";
-                return ProviderRecipeSupport.parseSingleBlock(parser, blockText, "required_providers block");
+                return ProviderRecipeSupport.parseSingleBlock(parser, style.withNewlines(blockText), "required_providers block");
             }
 
 
             private Hcl.Block parseProviderBlock(HclParser parser,
+                                                 HclStyle style,
                                                  String providerName,
                                                  String providerConfiguration) {
                 String normalizedConfiguration = providerConfiguration.trim();
                 String blockText = "provider " + TopLevelBlockRecipeSupport.quoteHclString(providerName) + " {\n"
-                                   + ProviderRecipeSupport.indentBlockBody(normalizedConfiguration, "  ") + "\n"
+                                   + ProviderRecipeSupport.indentBlockBody(normalizedConfiguration, style.getIndentUnit()) + "\n"
                                    + "}\n";
-                return ProviderRecipeSupport.parseSingleBlock(parser, blockText, "provider block");
+                return ProviderRecipeSupport.parseSingleBlock(parser, style.withNewlines(blockText), "provider block");
             }
 
-            private String renderProviderEntry(String providerName,
+            private String renderProviderEntry(HclStyle style,
+                                               String providerName,
                                                @Nullable String providerSource,
                                                String providerVersion,
                                                String indent) {
@@ -393,9 +420,9 @@ public class AddProvider extends ScanningRecipe<AddProvider.ScanState> {
                 }
 
                 String quotedSource = TopLevelBlockRecipeSupport.quoteHclString(providerSource);
-                String nestedIndent = indent + "  ";
+                String nestedIndent = indent + style.getIndentUnit();
                 return indent + providerName + " = {\n"
-                       + nestedIndent + "source  = " + quotedSource + "\n"
+                       + nestedIndent + (style.isAlignAssignments() ? "source  = " : "source = ") + quotedSource + "\n"
                        + nestedIndent + "version = " + quotedVersion + "\n"
                        + indent + "}";
             }
@@ -2,6 +2,7 @@ package io.oczadly.openrewrite.hcl;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -76,7 +77,7 @@ public class AddRemovedBlock extends Recipe {
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor() {
-        return TopLevelBlockRecipeSupport.topLevelBlockVisitor("removed", buildBlockBody(), moduleName, source, version, filePattern);
+        return TopLevelBlockRecipeSupport.topLevelBlockVisitor(this, "removed", this::buildBlockBody, moduleName, source, version, filePattern);
     }
 
     @Override
@@ -88,8 +89,8 @@ public class AddRemovedBlock extends Recipe {
         return TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "from", from);
     }
 
-    private String buildBlockBody() {
-        String resolvedFrom = TopLevelBlockRecipeSupport.resolveRequiredValue(from, "from");
+    private String buildBlockBody(PropertySource properties) {
+        String resolvedFrom = TopLevelBlockRecipeSupport.resolveRequiredValue(from, "from", properties);
         TopLevelBlockRecipeSupport.validateHclTraversal(resolvedFrom, "from");
         boolean destroyValue = lifecycleDestroy != null ? lifecycleDestroy : false;
 
@@ -1,7 +1,7 @@
 package io.oczadly.openrewrite.hcl;
 
 import io.oczadly.openrewrite.hcl.utils.ModuleBlockPredicates;
-import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher;
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -86,16 +86,14 @@ public class ChangeModuleVersion extends ModuleRecipe {
     }
 
     private Hcl.Block changeModuleVersion(Hcl.Block block) {
-        String currentVersion = block.getAttributeValue("version");
+        String currentVersion = ModuleBlockPredicates.getAttributeValue(block, "version");
 
         if (version == null || version.trim().isEmpty() || currentVersion == null) {
             return block;
         }
 
-        // Remove quotes if present
-        currentVersion = ModuleBlockPredicates.removeQuotes(currentVersion);
-
-        if (!VersionConstraintMatcher.matches(version, currentVersion)) {
+        CompiledConstraint constraint = versionConstraint();
+        if (constraint == null || !constraint.matches(currentVersion)) {
             return block;
         }
 
@@ -1,6 +1,17 @@
 package io.oczadly.openrewrite.hcl;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.oczadly.openrewrite.hcl.utils.AttributePathAutomaton;
+import io.oczadly.openrewrite.hcl.utils.DirectoryInterner;
+import io.oczadly.openrewrite.hcl.utils.DirectorySet;
+import io.oczadly.openrewrite.hcl.utils.GlobMatcher;
+import io.oczadly.openrewrite.hcl.utils.ModuleBlockPredicates;
+import io.oczadly.openrewrite.hcl.utils.ModuleMatcher;
 import io.oczadly.openrewrite.hcl.utils.PropertyPlaceholderResolver;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
+import io.oczadly.openrewrite.hcl.utils.TopLevelBlockIndex;
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -8,33 +19,42 @@ import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.*;
 import org.openrewrite.hcl.HclVisitor;
-import org.openrewrite.hcl.HclParser;
 import org.openrewrite.hcl.format.SpacesVisitor;
 import org.openrewrite.hcl.style.SpacesStyle;
 import org.openrewrite.hcl.tree.BodyContent;
 import org.openrewrite.hcl.tree.Expression;
 import org.openrewrite.hcl.tree.Hcl;
-import org.openrewrite.tree.ParseError;
+import org.openrewrite.hcl.tree.HclContainer;
+import org.openrewrite.hcl.tree.HclRightPadded;
+import org.openrewrite.hcl.tree.Space;
+import org.openrewrite.marker.Markers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
- * Transforms values inside Terraform/OpenTofu {@code locals} objects using a constrained path syntax.
+ * Transforms values inside Terraform/OpenTofu {@code locals} objects selected by an attribute path.
  *
- * <p>The recipe currently supports record-style paths such as {@code records.*.value} and
- * {@code *.records.*.value} with the following transformations:</p>
+ * <p>Paths are dot-separated object keys where {@code *} matches any key, {@code **} matches any
+ * number of keys and list elements, and {@code [*]} or {@code [n]} match list elements, for example
+ * {@code *.records.*.value}, {@code zones.*.ips[*]} or {@code **.value}. For backward compatibility
+ * {@code records.*.value} also matches {@code *.records.*.value}. The selected values support the
+ * following transformations:</p>
  * <ul>
  *     <li>{@code stringToList}: {@code value = "foo"} -> {@code value = ["foo"]}</li>
  *     <li>{@code listToString}: {@code value = ["foo"]} -> {@code value = "foo"}</li>
  * </ul>
  *
+ * <p>Several locals can be transformed in one run by listing
+ * {@code localName:attributePath:transformation} entries in {@code targets}; all of them are
+ * applied in a single visit of each {@code locals} block.</p>
+ *
  * <p>When module filters are configured, the recipe uses a two-phase scan/apply model: it first
  * finds directories containing matching module blocks and then applies the locals transformation
  * to files in those same directories.</p>
@@ -47,51 +67,62 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
 
     @Value
     static class ResolvedOptions {
-        @Nullable String source;
-        @Nullable String version;
-        @Nullable String moduleName;
-        String localName;
-        String attributePath;
-        AttributeTransformation transformation;
+        ModuleMatcher moduleMatcher;
+        Map<String, LocalTransformation> locals;
         String filePattern;
 
         boolean hasModuleFilters() {
-            return source != null || version != null || moduleName != null;
+            return moduleMatcher.hasFilters();
+        }
+
+        boolean hasUnsatisfiableVersion() {
+            return moduleMatcher.isUnsatisfiable();
         }
     }
 
+    @Value
+    static class Target {
+        String localName;
+        String attributePath;
+        AttributeTransformation transformation;
+    }
+
+    /**
+     * All targets of one locals attribute, compiled into one automaton.
+     */
+    @Value
+    static class LocalTransformation {
+        AttributePathAutomaton attributePaths;
+        // Transformation of each compiled path, by path index.
+        List<AttributeTransformation> transformations;
+    }
+
     @Value
     public static class ScanState {
-        Set<String> matchingDirectories = new ConcurrentSkipListSet<>();
+        // Options resolved against the property snapshot of the run, shared by the scanning and
+        // editing phases.
+        ResolvedOptions options;
+        DirectoryInterner directoryInterner;
+        DirectorySet matchingDirectories = new DirectorySet();
+        // Directories with a file the apply phase could change.
+        DirectorySet candidateDirectories = new DirectorySet();
 
         void addMatchingFile(Hcl.ConfigFile configFile) {
-            matchingDirectories.add(directoryOf(configFile));
+            matchingDirectories.add(directoryInterner.idOf(configFile.getSourcePath()));
         }
 
-        boolean directoryMatches(Hcl.ConfigFile configFile) {
-            return matchingDirectories.contains(directoryOf(configFile));
+        void addCandidateFile(Hcl.ConfigFile configFile) {
+            candidateDirectories.add(directoryInterner.idOf(configFile.getSourcePath()));
         }
 
-        private String directoryOf(Hcl.ConfigFile configFile) {
-            if (configFile.getSourcePath().getParent() == null) {
-                return "";
-            }
-            return configFile.getSourcePath().getParent().toString();
+        boolean directoryMatches(Hcl.ConfigFile configFile) {
+            int directory = directoryInterner.idOf(configFile.getSourcePath());
+            return matchingDirectories.contains(directory) && candidateDirectories.contains(directory);
         }
     }
 
     private static final String DEFAULT_FILE_PATTERN = "**/*.tf";
-    private static final List<String> SUPPORTED_ATTRIBUTE_PATHS = Arrays.asList("records.*.value", "*.records.*.value");
-    private static final Set<String> SUPPORTED_PATHS = new LinkedHashSet<>(SUPPORTED_ATTRIBUTE_PATHS);
-    private static final Pattern CAMEL_CASE_BOUNDARY = Pattern.compile("(?<=[a-z0-9])([A-Z])");
-    // Accept Terraform inline comments in value assignments: #, // and one-line /* ... */.
-    private static final String OPTIONAL_INLINE_COMMENT = "(\\s*(?:(?://|#)[^\\r\\n]*|/\\*[^\\r\\n]*?\\*/)?\\s*)";
-    private static final Pattern STRING_VALUE_ASSIGNMENT = Pattern.compile(
-        "(?m)^(\\s*value\\s*=\\s*)\"((?:[^\"\\\\]|\\\\.)*)\"" + OPTIONAL_INLINE_COMMENT + "$"
-    );
-    private static final Pattern SINGLE_STRING_LIST_VALUE_ASSIGNMENT = Pattern.compile(
-        "(?m)^(\\s*value\\s*=\\s*)\\[\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*]" + OPTIONAL_INLINE_COMMENT + "$"
-    );
+    private static final String LEGACY_RECORDS_PATH = "records.*.value";
 
     @Option(displayName = "Module name",
             description = "Only apply if module is referenced by this name",
@@ -112,15 +143,21 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
     String version;
 
     @Option(displayName = "Local variable name",
-            description = "Name of the locals variable (e.g., 'txt_records', 'ptr_records')")
+            description = "Name of the locals variable (e.g., 'txt_records', 'ptr_records'); required unless targets are set",
+            required = false)
+    @Nullable
     String localName;
 
     @Option(displayName = "Attribute path",
-            description = "Supported values: records.*.value or *.records.*.value")
+            description = "Path of the values to transform, e.g. '*.records.*.value', 'zones.*.ips[*]' or '**.value'; required unless targets are set",
+            required = false)
+    @Nullable
     String attributePath;
 
     @Option(displayName = "Transformation type",
-            description = "Type of transformation: stringToList, listToString")
+            description = "Type of transformation: stringToList, listToString; required unless targets are set",
+            required = false)
+    @Nullable
     String transformation;
 
     @Option(displayName = "File pattern",
@@ -129,13 +166,21 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
     @Nullable
     String filePattern;
 
-    public ConvertLocalValueInPath(@Nullable String moduleName,
-                                       @Nullable String source,
-                                       @Nullable String version,
-                                       String localName,
-                                       String attributePath,
-                                       String transformation,
-                                       @Nullable String filePattern) {
+    @Option(displayName = "Targets",
+            description = "Additional 'localName:attributePath:transformation' entries applied in the same visit of each locals block, e.g. 'ptr_records:*.records.*.value:stringToList'",
+            required = false)
+    @Nullable
+    List<String> targets;
+
+    @JsonCreator
+    public ConvertLocalValueInPath(@JsonProperty("moduleName") @Nullable String moduleName,
+                                   @JsonProperty("source") @Nullable String source,
+                                   @JsonProperty("version") @Nullable String version,
+                                   @JsonProperty("localName") @Nullable String localName,
+                                   @JsonProperty("attributePath") @Nullable String attributePath,
+                                   @JsonProperty("transformation") @Nullable String transformation,
+                                   @JsonProperty("filePattern") @Nullable String filePattern,
+                                   @JsonProperty("targets") @Nullable List<String> targets) {
         this.moduleName = moduleName;
         this.source = source;
         this.version = version;
@@ -143,6 +188,17 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
         this.attributePath = attributePath;
         this.transformation = transformation;
         this.filePattern = filePattern;
+        this.targets = targets;
+    }
+
+    public ConvertLocalValueInPath(@Nullable String moduleName,
+                                   @Nullable String source,
+                                   @Nullable String version,
+                                   String localName,
+                                   String attributePath,
+                                   String transformation,
+                                   @Nullable String filePattern) {
+        this(moduleName, source, version, localName, attributePath, transformation, filePattern, null);
     }
 
     @NullMarked
@@ -159,71 +215,68 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
 
     @Override
     public @NonNull ScanState getInitialValue(@Nullable ExecutionContext ctx) {
-        return new ScanState();
+        return new ScanState(resolveOptions(PropertySource.forRun(ctx)), DirectoryInterner.forRun(ctx));
     }
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getScanner(@Nullable ScanState acc) {
-        ResolvedOptions options = resolveOptionsForScanner();
-        if (!options.hasModuleFilters() || acc == null) {
+        ResolvedOptions options = optionsOf(acc);
+        if (!options.hasModuleFilters() || options.hasUnsatisfiableVersion() || acc == null) {
             return TreeVisitor.noop();
         }
-
-        return Preconditions.check(
-            new FindSourceFiles(DEFAULT_FILE_PATTERN),
-            new HclVisitor<ExecutionContext>() {
-                @Override
-                public @NonNull Hcl visitConfigFile(Hcl.@NonNull ConfigFile configFile, ExecutionContext ctx) {
-                    Hcl.ConfigFile visited = (Hcl.ConfigFile) super.visitConfigFile(configFile, ctx);
-
-
-                    // Mark the directory as eligible for the apply phase when any module block matches.
-                    if (matchesModuleFilters(visited, options.source, options.version, options.moduleName)) {
-                        acc.addMatchingFile(visited);
-                    }
-                    return visited;
+        GlobMatcher moduleFiles = GlobMatcher.of(DEFAULT_FILE_PATTERN);
+        GlobMatcher candidateFiles = GlobMatcher.of(options.filePattern);
+
+        // Module blocks may live in files outside filePattern, so modules are looked up in every
+        // Terraform file while candidate locals only in files matching filePattern. Both checks
+        // only read top-level blocks, so the files are not visited any deeper.
+        return new HclVisitor<ExecutionContext>() {
+            @Override
+            public @NonNull Hcl visitConfigFile(Hcl.@NonNull ConfigFile configFile, ExecutionContext ctx) {
+                String[] path = GlobMatcher.segmentsOf(configFile.getSourcePath().toString());
+                if (moduleFiles.matches(path) && options.moduleMatcher.matchesAny(configFile)) {
+                    acc.addMatchingFile(configFile);
+                }
+                if (candidateFiles.matches(path) && definesTargetLocal(configFile, options)) {
+                    acc.addCandidateFile(configFile);
                 }
+                return configFile;
             }
-        );
+        };
     }
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor(@Nullable ScanState acc) {
-        ResolvedOptions options = resolveOptionsForVisitor();
-        if (options == null) {
+        ResolvedOptions options = optionsOf(acc);
+        if (options.hasModuleFilters() && acc == null || options.hasUnsatisfiableVersion()) {
             return TreeVisitor.noop();
         }
-        if (options.hasModuleFilters() && acc == null) {
-            return TreeVisitor.noop();
-        }
-        HclParser parser = HclParser.builder().build();
 
         return Preconditions.check(
             new FindSourceFiles(options.filePattern),
             new HclVisitor<ExecutionContext>() {
                 @Override
                 public @NonNull Hcl visitConfigFile(Hcl.@NonNull ConfigFile configFile, ExecutionContext ctx) {
-                    Hcl.ConfigFile visited = (Hcl.ConfigFile) super.visitConfigFile(configFile, ctx);
-
                     // In two-phase mode, module filters are satisfied if any file in the same
-                    // directory matched during the scan phase.
-                    if (options.hasModuleFilters() && (acc == null || !acc.directoryMatches(visited))) {
-                        return visited;
+                    // directory matched during the scan phase, and the directory is only worth
+                    // visiting if the scan also found a candidate file in it.
+                    if (options.hasModuleFilters() && (acc == null || !acc.directoryMatches(configFile))) {
+                        return configFile;
+                    }
+
+                    if (!definesTargetLocal(configFile, options)) {
+                        return configFile;
                     }
 
-                    // Process locals block
-                    List<BodyContent> newBody = new ArrayList<>(visited.getBody());
+                    // Process the locals blocks; the rest of the file is never visited.
+                    List<BodyContent> newBody = new ArrayList<>(configFile.getBody());
                     boolean modified = false;
 
                     for (int i = 0; i < newBody.size(); i++) {
                         if (newBody.get(i) instanceof Hcl.Block) {
                             Hcl.Block block = (Hcl.Block) newBody.get(i);
                             if ("locals".equals(blockTypeName(block))) {
-                                Hcl.Block transformedBlock = transformLocalsBlock(
-                                    block,
-                                    parser,
-                                    options
-                                );
+                                Hcl.Block transformedBlock = transformLocalsBlock(block, options);
                                 if (transformedBlock != block) {
                                     newBody.set(i, transformedBlock);
                                     modified = true;
@@ -233,24 +286,18 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
                     }
 
                     if (!modified) {
-                        return visited;
+                        return configFile;
                     }
 
-                    Hcl.ConfigFile result = visited.withBody(newBody);
+                    Hcl.ConfigFile result = configFile.withBody(newBody);
                     doAfterVisit(new SpacesVisitor<>(SpacesStyle.DEFAULT, result));
                     return result;
                 }
 
                 /**
-                 * Rewrites the configured locals attribute when the path/transformation pair is supported.
+                 * Rewrites the values selected by the attribute paths in the configured locals attributes.
                  */
-                private Hcl.Block transformLocalsBlock(Hcl.Block localsBlock,
-                                                       HclParser parser,
-                                                       ResolvedOptions options) {
-                    if (isUnsupportedTransformationPath(options.attributePath)) {
-                        return localsBlock;
-                    }
-
+                private Hcl.Block transformLocalsBlock(Hcl.Block localsBlock, ResolvedOptions options) {
                     List<BodyContent> updatedBody = new ArrayList<>(localsBlock.getBody().size());
                     boolean modified = false;
 
@@ -261,622 +308,205 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
                         }
 
                         Hcl.Attribute attribute = (Hcl.Attribute) bodyContent;
-                        if (!options.localName.equals(attribute.getSimpleName())) {
+                        LocalTransformation local = options.locals.get(attribute.getSimpleName());
+                        if (local == null) {
                             updatedBody.add(bodyContent);
                             continue;
                         }
 
-                        String renderedValue = stripLeadingWhitespace(attribute.getValue().print(getCursor()));
-                        String transformedValueText = transformValueTextByPath(renderedValue, options);
-
-                        if (renderedValue.equals(transformedValueText)) {
+                        Expression transformedValue = transformValue(attribute.getValue(), local.attributePaths, local.transformations);
+                        if (transformedValue == attribute.getValue()) {
                             updatedBody.add(bodyContent);
                             continue;
                         }
 
-                        Expression transformedExpression = parseAttributeValue(parser, attribute, transformedValueText);
-                        updatedBody.add(attribute.withValue(transformedExpression));
+                        updatedBody.add(attribute.withValue(transformedValue));
                         modified = true;
                     }
 
                     return modified ? localsBlock.withBody(updatedBody) : localsBlock;
                 }
+            }
+        );
+    }
 
-                /**
-                 * Re-parses the transformed locals attribute value back into an HCL expression while
-                 * preserving the original attribute indentation context.
-                 */
-                private Expression parseAttributeValue(HclParser parser,
-                                                       Hcl.Attribute originalAttribute,
-                                                       String valueText) {
-                    String attributeName = originalAttribute.getSimpleName();
-                    String attributeIndent = indentationOf(originalAttribute.getPrefix().getWhitespace());
-                    String snippet = "locals {\n"
-                                     + attributeIndent + attributeName + " = " + valueText + "\n"
-                                     + "}\n";
-                    SourceFile sourceFile = parser.parse(snippet)
-                        .findFirst()
-                        .orElseThrow(() -> new IllegalStateException("Unable to parse transformed locals value."));
-
-                    if (sourceFile instanceof ParseError) {
-                        throw new IllegalStateException("Unable to parse transformed locals value: " + sourceFile);
-                    }
-                    if (!(sourceFile instanceof Hcl.ConfigFile)) {
-                        throw new IllegalStateException("Expected parsed snippet to be a ConfigFile.");
-                    }
-
-                    Hcl.ConfigFile parsed = (Hcl.ConfigFile) sourceFile;
-                    for (BodyContent topLevel : parsed.getBody()) {
-                        if (!(topLevel instanceof Hcl.Block)) {
-                            continue;
-                        }
-                        Hcl.Block block = (Hcl.Block) topLevel;
-                        if (!"locals".equals(blockTypeName(block))) {
-                            continue;
-                        }
-                        for (BodyContent content : block.getBody()) {
-                            if (content instanceof Hcl.Attribute) {
-                                Hcl.Attribute attribute = (Hcl.Attribute) content;
-                                if (attributeName.equals(attribute.getSimpleName())) {
-                                    return attribute.getValue();
-                                }
-                            }
-                        }
-                    }
-
-                    throw new IllegalStateException("Transformed locals snippet does not contain target attribute '" + attributeName + "'.");
-                }
-
-                private String indentationOf(String whitespace) {
-                    int newline = whitespace.lastIndexOf('\n');
-                    if (newline >= 0) {
-                        return whitespace.substring(newline + 1);
-                    }
-                    return whitespace;
-                }
-
-                private String stripLeadingWhitespace(String text) {
-                    int index = 0;
-                    while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
-                        index++;
-                    }
-                    return text.substring(index);
-                }
-
-                /**
-                 * Applies the configured transformation only inside {@code records = { ... }} object bodies.
-                 */
-                private String transformValueTextByPath(String valueText, ResolvedOptions options) {
-                    if (isUnsupportedTransformationPath(options.attributePath)) {
-                        return valueText;
-                    }
-
-                    String attributePath = options.attributePath;
-
-                    StringBuilder rewritten = new StringBuilder(valueText.length() + 32);
-                    int cursor = 0;
-                    while (true) {
-                        int[] recordsMatch = findNextRecordsObjectStart(valueText, cursor, attributePath);
-                        if (recordsMatch[0] < 0) {
-                            break;
-                        }
-
-                        int blockOpen = recordsMatch[1];
-                        int blockClose = findMatchingClosingBrace(valueText, blockOpen);
-                        if (blockClose < 0) {
-                            break;
-                        }
-
-                        rewritten.append(valueText, cursor, blockOpen + 1);
-                        String recordsBody = valueText.substring(blockOpen + 1, blockClose);
-                        String transformedRecordsBody = transformRecordsBody(recordsBody, options.transformation);
-                        rewritten.append(transformedRecordsBody);
-                        cursor = blockClose;
-                    }
-
-                    if (cursor == 0) {
-                        return valueText;
-                    }
-                    rewritten.append(valueText.substring(cursor));
-                    return rewritten.toString();
-                }
-
-                private int[] findNextRecordsObjectStart(String text, int fromIndex, String attributePath) {
-                    boolean inString = false;
-                    boolean escaped = false;
-                    boolean inLineComment = false;
-                    boolean inBlockComment = false;
-                    int depth = 0;
-
-                    for (int i = 0; i < text.length(); i++) {
-                        char c = text.charAt(i);
-
-                        if (inLineComment) {
-                            if (c == '\n' || c == '\r') {
-                                inLineComment = false;
-                            }
-                            continue;
-                        }
-
-                        if (inBlockComment) {
-                            if (c == '*' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
-                                inBlockComment = false;
-                                i++;
-                            }
-                            continue;
-                        }
-
-                        if (escaped) {
-                            escaped = false;
-                            continue;
-                        }
-
-                        if (c == '\\' && inString) {
-                            escaped = true;
-                            continue;
-                        }
-
-                        if (c == '"') {
-                            inString = !inString;
-                            continue;
-                        }
-
-                        if (inString) {
-                            continue;
-                        }
-
-                        if (c == '#') {
-                            inLineComment = true;
-                            continue;
-                        }
-
-                        if (c == '/' && i + 1 < text.length()) {
-                            char next = text.charAt(i + 1);
-                            if (next == '/') {
-                                inLineComment = true;
-                                i++;
-                                continue;
-                            }
-                            if (next == '*') {
-                                inBlockComment = true;
-                                i++;
-                                continue;
-                            }
-                        }
-
-                        if (c == '{') {
-                            depth++;
-                            continue;
-                        }
-
-                        if (c == '}') {
-                            depth = Math.max(0, depth - 1);
-                            continue;
-                        }
-
-                        if (i >= fromIndex && text.startsWith("records", i) && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)) && text.charAt(i - 1) != '_')) {
-                            int j = i + "records".length();
-                            while (j < text.length() && Character.isWhitespace(text.charAt(j))) {
-                                j++;
-                            }
-                            if (j >= text.length() || text.charAt(j) != '=') {
-                                continue;
-                            }
-                            j++;
-                            while (j < text.length() && Character.isWhitespace(text.charAt(j))) {
-                                j++;
-                            }
-                            if (j < text.length() && text.charAt(j) == '{' && matchesRecordsDepth(attributePath, depth)) {
-                                return new int[]{i, j};
-                            }
-                        }
-                    }
-
-                    return new int[]{-1, -1};
-                }
-
-                private boolean matchesRecordsDepth(String attributePath, int depth) {
-                    if ("*.records.*.value".equals(attributePath)) {
-                        return depth == 2;
-                    }
-                    // Backward-compatible alias used across existing recipes/tests.
-                    return depth == 1 || depth == 2;
-                }
-
-                private String transformRecordsBody(String recordsBody, AttributeTransformation transformation) {
-                    StringBuilder rewritten = new StringBuilder(recordsBody.length() + 16);
-                    int cursor = 0;
-                    boolean inString = false;
-                    boolean escaped = false;
-                    boolean inLineComment = false;
-                    boolean inBlockComment = false;
-                    int depth = 0;
-
-                    for (int i = 0; i < recordsBody.length(); i++) {
-                        char c = recordsBody.charAt(i);
-
-                        if (inLineComment) {
-                            if (c == '\n' || c == '\r') {
-                                inLineComment = false;
-                            }
-                            continue;
-                        }
-
-                        if (inBlockComment) {
-                            if (c == '*' && i + 1 < recordsBody.length() && recordsBody.charAt(i + 1) == '/') {
-                                inBlockComment = false;
-                                i++;
-                            }
-                            continue;
-                        }
-
-                        if (escaped) {
-                            escaped = false;
-                            continue;
-                        }
-
-                        if (c == '\\' && inString) {
-                            escaped = true;
-                            continue;
-                        }
-
-                        if (c == '"') {
-                            inString = !inString;
-                            continue;
-                        }
-
-                        if (inString) {
-                            continue;
-                        }
-
-                        if (c == '#') {
-                            inLineComment = true;
-                            continue;
-                        }
-
-                        if (c == '/' && i + 1 < recordsBody.length()) {
-                            char next = recordsBody.charAt(i + 1);
-                            if (next == '/') {
-                                inLineComment = true;
-                                i++;
-                                continue;
-                            }
-                            if (next == '*') {
-                                inBlockComment = true;
-                                i++;
-                                continue;
-                            }
-                        }
-
-                        if (c == '{') {
-                            if (depth == 0) {
-                                int objectClose = findMatchingClosingBrace(recordsBody, i);
-                                if (objectClose < 0) {
-                                    return recordsBody;
-                                }
-
-                                rewritten.append(recordsBody, cursor, i + 1);
-                                String objectBody = recordsBody.substring(i + 1, objectClose);
-                                rewritten.append(transformImmediateValueAssignments(objectBody, transformation));
-                                cursor = objectClose;
-                                i = objectClose;
-                                continue;
-                            }
-                            depth++;
-                            continue;
-                        }
-
-                        if (c == '}') {
-                            depth--;
-                        }
-                    }
-
-                    if (cursor == 0) {
-                        return recordsBody;
-                    }
-
-                    rewritten.append(recordsBody.substring(cursor));
-                    return rewritten.toString();
-                }
-
-                private String transformImmediateValueAssignments(String objectBody, AttributeTransformation transformation) {
-                    StringBuilder rewritten = new StringBuilder(objectBody.length() + 8);
-                    int cursor = 0;
-                    boolean inString = false;
-                    boolean escaped = false;
-                    boolean inLineComment = false;
-                    boolean inBlockComment = false;
-                    int depth = 0;
-
-                    for (int i = 0; i < objectBody.length(); i++) {
-                        char c = objectBody.charAt(i);
-
-                        if (inLineComment) {
-                            if (c == '\n' || c == '\r') {
-                                inLineComment = false;
-                            }
-                            continue;
-                        }
-
-                        if (inBlockComment) {
-                            if (c == '*' && i + 1 < objectBody.length() && objectBody.charAt(i + 1) == '/') {
-                                inBlockComment = false;
-                                i++;
-                            }
-                            continue;
-                        }
-
-                        if (escaped) {
-                            escaped = false;
-                            continue;
-                        }
-
-                        if (c == '\\' && inString) {
-                            escaped = true;
-                            continue;
-                        }
-
-                        if (c == '"') {
-                            inString = !inString;
-                            continue;
-                        }
-
-                        if (inString) {
-                            continue;
-                        }
-
-                        if (c == '#') {
-                            inLineComment = true;
-                            continue;
-                        }
-
-                        if (c == '/' && i + 1 < objectBody.length()) {
-                            char next = objectBody.charAt(i + 1);
-                            if (next == '/') {
-                                inLineComment = true;
-                                i++;
-                                continue;
-                            }
-                            if (next == '*') {
-                                inBlockComment = true;
-                                i++;
-                                continue;
-                            }
-                        }
-
-                        if (c == '{') {
-                            depth++;
-                            continue;
-                        }
-
-                        if (c == '}') {
-                            depth--;
-                            continue;
-                        }
-
-                        if (depth == 0 && objectBody.startsWith("value", i)
-                            && (i == 0 || !Character.isLetterOrDigit(objectBody.charAt(i - 1)) && objectBody.charAt(i - 1) != '_')) {
-                            int lineStart = lineStart(objectBody, i);
-                            int lineEnd = lineEnd(objectBody, i);
-                            if (lineStart < cursor) {
-                                continue;
-                            }
-
-                            rewritten.append(objectBody, cursor, lineStart);
-                            String originalLine = objectBody.substring(lineStart, lineEnd);
-                            rewritten.append(transformValueAssignmentLine(originalLine, transformation));
-                            cursor = lineEnd;
-                            i = lineEnd - 1;
-                        }
-                    }
-
-                    if (cursor == 0) {
-                        return objectBody;
-                    }
+    /**
+     * @return the options resolved for the run, or resolved against the current system properties
+     * when there is no scan state
+     */
+    private ResolvedOptions optionsOf(@Nullable ScanState acc) {
+        return acc != null ? acc.options : resolveOptions(PropertySource.systemSnapshot());
+    }
 
-                    rewritten.append(objectBody.substring(cursor));
-                    return rewritten.toString();
+    /**
+     * @throws IllegalStateException if a placeholder cannot be resolved, or if a target, a
+     * transformation or an attribute path is invalid once resolved
+     */
+    private ResolvedOptions resolveOptions(PropertySource properties) {
+        Map<String, LocalTransformation> locals;
+        try {
+            List<Target> resolvedTargets = new ArrayList<>();
+            if (hasSingleTarget() || !hasTargets()) {
+                String resolvedTransformation = requireResolvedNonBlank(transformation, "transformation", properties);
+                resolvedTargets.add(new Target(
+                    requireResolvedNonBlank(localName, "localName", properties),
+                    requireResolvedNonBlank(attributePath, "attributePath", properties),
+                    transformationOf(resolvedTransformation)
+                ));
+            }
+            if (targets != null) {
+                for (String target : targets) {
+                    resolvedTargets.add(resolveTarget(target, properties));
                 }
+            }
+            locals = compileTargets(resolvedTargets);
+        } catch (IllegalArgumentException ex) {
+            // Fail the run like an unresolved placeholder does rather than silently changing nothing.
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
 
-                private String transformValueAssignmentLine(String line, AttributeTransformation transformation) {
-                    if (transformation == AttributeTransformation.STRING_TO_LIST) {
-                        return STRING_VALUE_ASSIGNMENT.matcher(line)
-                            .replaceAll("$1[\"$2\"]$3");
-                    }
-                    return SINGLE_STRING_LIST_VALUE_ASSIGNMENT.matcher(line)
-                        .replaceAll("$1\"$2\"$3");
-                }
+        String resolvedFilePattern = resolveOptional(filePattern, properties);
 
-                private int lineStart(String text, int index) {
-                    int lineStart = index;
-                    while (lineStart > 0) {
-                        char previous = text.charAt(lineStart - 1);
-                        if (previous == '\n' || previous == '\r') {
-                            break;
-                        }
-                        lineStart--;
-                    }
-                    return lineStart;
-                }
+        return new ResolvedOptions(
+            moduleMatcher(properties),
+            locals,
+            resolvedFilePattern != null ? resolvedFilePattern : DEFAULT_FILE_PATTERN
+        );
+    }
 
-                private int lineEnd(String text, int index) {
-                    int lineEnd = index;
-                    while (lineEnd < text.length()) {
-                        char current = text.charAt(lineEnd);
-                        if (current == '\n' || current == '\r') {
-                            break;
-                        }
-                        lineEnd++;
-                    }
-                    return lineEnd;
+    /**
+     * @return {@code true} if a top-level {@code locals} block of the file defines one of the
+     * target locals
+     */
+    private static boolean definesTargetLocal(Hcl.ConfigFile configFile, ResolvedOptions options) {
+        List<Hcl.Block> localsBlocks = TopLevelBlockIndex.of(configFile).blocks("locals");
+        for (int i = 0; i < localsBlocks.size(); i++) {
+            for (BodyContent content : localsBlocks.get(i).getBody()) {
+                if (content instanceof Hcl.Attribute && options.locals.containsKey(((Hcl.Attribute) content).getSimpleName())) {
+                    return true;
                 }
+            }
+        }
+        return false;
+    }
 
-                /**
-                 * Finds the matching closing brace for an object literal while respecting quoted
-                 * strings and skipping line/block comments outside string literals.
-                 */
-                private int findMatchingClosingBrace(String text, int openingBraceIndex) {
-                    int depth = 0;
-                    boolean inString = false;
-                    boolean escaped = false;
-                    boolean inLineComment = false;
-                    boolean inBlockComment = false;
-
-                    for (int i = openingBraceIndex; i < text.length(); i++) {
-                        char c = text.charAt(i);
-
-                        if (inLineComment) {
-                            if (c == '\n' || c == '\r') {
-                                inLineComment = false;
-                            }
-                            continue;
-                        }
-
-                        if (inBlockComment) {
-                            if (c == '*' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
-                                inBlockComment = false;
-                                i++;
-                            }
-                            continue;
-                        }
-
-                        if (escaped) {
-                            escaped = false;
-                            continue;
-                        }
-                        if (c == '\\' && inString) {
-                            escaped = true;
-                            continue;
-                        }
-                        if (c == '"') {
-                            inString = !inString;
-                            continue;
-                        }
-                        if (inString) {
-                            continue;
-                        }
-
-                        if (c == '#') {
-                            inLineComment = true;
-                            continue;
-                        }
-
-                        if (c == '/' && i + 1 < text.length()) {
-                            char next = text.charAt(i + 1);
-                            if (next == '/') {
-                                inLineComment = true;
-                                i++;
-                                continue;
-                            }
-                            if (next == '*') {
-                                inBlockComment = true;
-                                i++;
-                                continue;
-                            }
-                        }
+    private boolean hasTargets() {
+        return targets != null && !targets.isEmpty();
+    }
 
-                        if (c == '{') {
-                            depth++;
-                        } else if (c == '}') {
-                            depth--;
-                            if (depth == 0) {
-                                return i;
-                            }
-                        }
-                    }
+    private boolean hasSingleTarget() {
+        return TopLevelBlockRecipeSupport.normalizeNullable(localName) != null
+               || TopLevelBlockRecipeSupport.normalizeNullable(attributePath) != null
+               || TopLevelBlockRecipeSupport.normalizeNullable(transformation) != null;
+    }
 
-                    return -1;
-                }
+    /**
+     * Parses a {@code localName:attributePath:transformation} entry of {@code targets}. The
+     * attribute path may itself contain {@code :} in quoted keys, so it spans from the first to
+     * the last separator.
+     *
+     * @throws IllegalArgumentException if the entry is malformed or names an unknown transformation
+     * @throws IllegalStateException if a placeholder of the entry resolves to a blank value
+     */
+    static Target resolveTarget(String target, PropertySource properties) {
+        int first = target.indexOf(':');
+        int last = target.lastIndexOf(':');
+        if (first <= 0 || last == first || last == target.length() - 1) {
+            throw new IllegalArgumentException("'targets' entries must have the form localName:attributePath:transformation.");
+        }
 
-            }
-        );
+        String resolvedLocalName = requireResolvedNonBlank(target.substring(0, first).trim(), "targets", properties);
+        if (!resolvedLocalName.matches(HCL_IDENTIFIER_PATTERN)) {
+            throw new IllegalArgumentException("'targets' local names must be valid HCL identifiers matching [A-Za-z_][A-Za-z0-9_]*.");
+        }
+        String resolvedAttributePath = requireResolvedNonBlank(target.substring(first + 1, last).trim(), "targets", properties);
+        String resolvedTransformation = requireResolvedNonBlank(target.substring(last + 1).trim(), "targets", properties);
+        return new Target(resolvedLocalName, resolvedAttributePath, transformationOf(resolvedTransformation));
     }
 
-    private ResolvedOptions resolveOptionsForScanner() {
-        return new ResolvedOptions(
-            resolveOptional(source),
-            resolveOptionalVersion(version),
-            resolveOptional(moduleName),
-            localName,
-            attributePath,
-            AttributeTransformation.STRING_TO_LIST,
-            DEFAULT_FILE_PATTERN
-        );
+    /**
+     * @throws IllegalArgumentException if the transformation is unknown
+     */
+    private static AttributeTransformation transformationOf(String resolvedTransformation) {
+        try {
+            return AttributeTransformation.valueOf(normalizeTransformationValue(resolvedTransformation));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown transformation type. Supported: stringToList, listToString");
+        }
     }
 
-    private @Nullable ResolvedOptions resolveOptionsForVisitor() {
-        String resolvedTransformation = requireResolvedNonBlank(transformation, "transformation");
-        String resolvedAttributePath = requireResolvedNonBlank(attributePath, "attributePath");
-        AttributeTransformation transformationType;
-        try {
-            transformationType = AttributeTransformation.valueOf(normalizeTransformationValue(resolvedTransformation));
-        } catch (IllegalArgumentException ex) {
-            return null;
+    /**
+     * Groups the targets by local name and compiles the paths of each local into one automaton;
+     * where the paths of several targets end at the same node, the earlier target wins.
+     *
+     * @throws IllegalArgumentException if an attribute path is invalid
+     */
+    static Map<String, LocalTransformation> compileTargets(List<Target> targets) {
+        Map<String, List<String>> paths = new LinkedHashMap<>();
+        Map<String, List<AttributeTransformation>> transformations = new LinkedHashMap<>();
+        for (Target target : targets) {
+            for (String path : attributePaths(target.attributePath)) {
+                paths.computeIfAbsent(target.localName, k -> new ArrayList<>()).add(path);
+                transformations.computeIfAbsent(target.localName, k -> new ArrayList<>()).add(target.transformation);
+            }
         }
 
-        String resolvedFilePattern = resolveOptional(filePattern);
+        Map<String, LocalTransformation> locals = new HashMap<>();
+        for (Map.Entry<String, List<String>> local : paths.entrySet()) {
+            locals.put(local.getKey(), new LocalTransformation(
+                AttributePathAutomaton.compile(local.getValue()),
+                transformations.get(local.getKey())
+            ));
+        }
+        return locals;
+    }
 
-        return new ResolvedOptions(
-            resolveOptional(source),
-            resolveOptionalVersion(version),
-            resolveOptional(moduleName),
-            requireResolvedNonBlank(localName, "localName"),
-            resolvedAttributePath,
-            transformationType,
-            resolvedFilePattern != null ? resolvedFilePattern : DEFAULT_FILE_PATTERN
-        );
+    /**
+     * Applies to each node of a locals value matched by one of the compiled attribute paths the
+     * transformation of the first path matching it, in a single walk of the value that skips the
+     * subtrees no path reaches.
+     * <p>
+     * Only the transformed values are replaced; every other node of the value, including the
+     * objects that do not contain a transformed value, is shared with the original tree.
+     *
+     * @param transformations the transformation of each compiled path, by path index
+     * @return the transformed value, or the same instance if nothing changed
+     */
+    static Expression transformValue(Expression value,
+                                     AttributePathAutomaton attributePaths,
+                                     List<AttributeTransformation> transformations) {
+        return new AttributePathTransformer(transformations).transform(value, attributePaths.start());
     }
 
-    private static boolean isUnsupportedTransformationPath(String attributePath) {
-        return !SUPPORTED_PATHS.contains(attributePath);
+    /**
+     * @return the paths an {@code attributePath} option stands for
+     */
+    static List<String> attributePaths(String attributePath) {
+        if (LEGACY_RECORDS_PATH.equals(attributePath)) {
+            // Backward-compatible alias that also matched records objects one level down.
+            return Arrays.asList(LEGACY_RECORDS_PATH, "*." + LEGACY_RECORDS_PATH);
+        }
+        return Collections.singletonList(attributePath);
     }
 
-    private static @Nullable String resolveOptional(@Nullable String value) {
+    private static @Nullable String resolveOptional(@Nullable String value, PropertySource properties) {
         String normalizedValue = TopLevelBlockRecipeSupport.normalizeNullable(value);
         if (normalizedValue == null) {
             return null;
         }
 
-        String resolved = PropertyPlaceholderResolver.resolve(normalizedValue);
+        String resolved = PropertyPlaceholderResolver.resolveFrom(normalizedValue, properties);
         return TopLevelBlockRecipeSupport.normalizeNullable(resolved);
     }
 
-    private static String requireResolvedNonBlank(String value, String fieldName) {
-        return TopLevelBlockRecipeSupport.resolveRequiredValue(value, fieldName);
+    private static String requireResolvedNonBlank(@Nullable String value, String fieldName, PropertySource properties) {
+        return TopLevelBlockRecipeSupport.resolveRequiredValue(value, fieldName, properties);
     }
 
-    private static @Nullable String resolveOptionalVersion(@Nullable String value) {
-        return TopLevelBlockRecipeSupport.resolveOptionalVersionFilterValue(value);
-    }
-
-    private static boolean matchesModuleFilters(Hcl.ConfigFile configFile,
-                                                @Nullable String source,
-                                                @Nullable String version,
-                                                @Nullable String name) {
-        if (source == null && version == null && name == null) {
-            return true;
-        }
-
-        for (BodyContent bc : configFile.getBody()) {
-            if (!(bc instanceof Hcl.Block)) {
-                continue;
-            }
-            Hcl.Block block = (Hcl.Block) bc;
-            if (!"module".equals(blockTypeName(block))) {
-                continue;
-            }
-            if (matchesModuleBlock(block, source, version, name)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static boolean matchesModuleBlock(Hcl.Block block,
-                                              @Nullable String source,
-                                              @Nullable String version,
-                                              @Nullable String name) {
-        return TopLevelBlockRecipeSupport.matchesModuleFilters(block, name, source, version);
+    private ModuleMatcher moduleMatcher(PropertySource properties) {
+        String resolvedSource = resolveOptional(source, properties);
+        CompiledConstraint resolvedVersion = TopLevelBlockRecipeSupport.resolveOptionalVersionFilter(version, properties);
+        return ModuleMatcher.of(resolveOptional(moduleName, properties), resolvedSource, resolvedVersion);
     }
 
     private static String blockTypeName(Hcl.Block block) {
@@ -891,19 +521,24 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
     public @NonNull Validated<Object> validate() {
         Validated<Object> validated = super.validate();
 
-        validated = TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "localName", localName);
-        validated = TopLevelBlockRecipeSupport.validateRequiredHclIdentifier(validated, "localName", localName);
-        validated = TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "attributePath", attributePath);
-        validated = TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "transformation", transformation);
+        // The single target may be omitted when targets are listed, but must then be omitted entirely.
+        if (hasSingleTarget() || !hasTargets()) {
+            validated = TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "localName", localName);
+            validated = TopLevelBlockRecipeSupport.validateRequiredHclIdentifier(validated, "localName", localName);
+            validated = TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "attributePath", attributePath);
+            validated = TopLevelBlockRecipeSupport.validateRequiredNonBlank(validated, "transformation", transformation);
+        }
         validated = TopLevelBlockRecipeSupport.validateOptionalNonBlank(validated, "source", source);
         validated = TopLevelBlockRecipeSupport.validateOptionalVersionConstraint(validated, version);
         validated = TopLevelBlockRecipeSupport.validateOptionalNonBlank(validated, "moduleName", moduleName);
         validated = TopLevelBlockRecipeSupport.validateOptionalNonBlank(validated, "filePattern", filePattern);
 
+        // validate() runs outside of a recipe run, so placeholders resolve against current system properties.
+        PropertySource properties = PropertySource.systemSnapshot();
         String normalizedLocalName = TopLevelBlockRecipeSupport.normalizeNullable(localName);
         if (normalizedLocalName != null) {
             try {
-                String resolvedLocalName = requireResolvedNonBlank(normalizedLocalName, "localName");
+                String resolvedLocalName = requireResolvedNonBlank(normalizedLocalName, "localName", properties);
                 if (normalizedLocalName.contains("${") && !resolvedLocalName.matches(HCL_IDENTIFIER_PATTERN)) {
                     validated = validated.and(Validated.invalid(
                         "localName",
@@ -923,7 +558,7 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
         String normalizedTransformation = TopLevelBlockRecipeSupport.normalizeNullable(transformation);
         if (normalizedTransformation != null) {
             try {
-                String resolvedTransformation = requireResolvedNonBlank(normalizedTransformation, "transformation");
+                String resolvedTransformation = requireResolvedNonBlank(normalizedTransformation, "transformation", properties);
                 AttributeTransformation.valueOf(normalizeTransformationValue(resolvedTransformation));
             } catch (IllegalArgumentException e) {
                 validated = validated.and(Validated.invalid(
@@ -943,14 +578,14 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
         String normalizedAttributePath = TopLevelBlockRecipeSupport.normalizeNullable(attributePath);
         if (normalizedAttributePath != null) {
             try {
-                String resolvedAttributePath = requireResolvedNonBlank(normalizedAttributePath, "attributePath");
-                if (isUnsupportedTransformationPath(resolvedAttributePath)) {
-                    validated = validated.and(Validated.invalid(
-                        "attributePath",
-                        attributePath,
-                        "Unsupported attributePath. Supported values: " + String.join(", ", SUPPORTED_ATTRIBUTE_PATHS)
-                    ));
-                }
+                String resolvedAttributePath = requireResolvedNonBlank(normalizedAttributePath, "attributePath", properties);
+                AttributePathAutomaton.compile(attributePaths(resolvedAttributePath));
+            } catch (IllegalArgumentException e) {
+                validated = validated.and(Validated.invalid(
+                    "attributePath",
+                    attributePath,
+                    e.getMessage()
+                ));
             } catch (IllegalStateException e) {
                 validated = validated.and(Validated.invalid(
                     "attributePath",
@@ -960,14 +595,192 @@ public class ConvertLocalValueInPath extends ScanningRecipe<ConvertLocalValueInP
             }
         }
 
+        if (targets != null) {
+            for (String target : targets) {
+                try {
+                    AttributePathAutomaton.compile(attributePaths(resolveTarget(target, properties).getAttributePath()));
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    validated = validated.and(Validated.invalid(
+                        "targets",
+                        target,
+                        e.getMessage()
+                    ));
+                }
+            }
+        }
+
         return validated;
     }
 
-    private static String normalizeTransformationValue(String rawValue) {
-        String withUnderscores = CAMEL_CASE_BOUNDARY.matcher(rawValue).replaceAll("_$1");
-        return withUnderscores
-            .replace('-', '_')
-            .toUpperCase(Locale.ROOT);
+    /**
+     * Maps {@code stringToList} and {@code string-to-list} to {@code STRING_TO_LIST}: an underscore
+     * goes before each ASCII capital following a lowercase letter or digit, and dashes become
+     * underscores.
+     */
+    static String normalizeTransformationValue(String rawValue) {
+        StringBuilder normalized = new StringBuilder(rawValue.length() + 4);
+        for (int i = 0; i < rawValue.length(); i++) {
+            char c = rawValue.charAt(i);
+            if (c >= 'A' && c <= 'Z' && i > 0 && isLowerCaseOrDigit(rawValue.charAt(i - 1))) {
+                normalized.append('_');
+            }
+            normalized.append(c == '-' ? '_' : c);
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isLowerCaseOrDigit(char c) {
+        return c >= 'a' && c <= 'z' || c >= '0' && c <= '9';
+    }
+
+    /**
+     * Walks a value along the states of an {@link AttributePathAutomaton}, descending only into the
+     * object attributes and list elements some path continues through.
+     */
+    private static final class AttributePathTransformer {
+        private final List<AttributeTransformation> transformations;
+
+        private AttributePathTransformer(List<AttributeTransformation> transformations) {
+            this.transformations = transformations;
+        }
+
+        private Expression transform(Expression value, AttributePathAutomaton.State state) {
+            Expression transformed = value;
+            if (value instanceof Hcl.ObjectValue) {
+                transformed = transformAttributes((Hcl.ObjectValue) value, state);
+            } else if (value instanceof Hcl.Tuple) {
+                transformed = transformElements((Hcl.Tuple) value, state);
+            }
+
+            int path = state.acceptedPath();
+            if (path < 0) {
+                return transformed;
+            }
+            return transformations.get(path) == AttributeTransformation.STRING_TO_LIST
+                ? stringToList(transformed)
+                : listToString(transformed);
+        }
+
+        private Hcl.ObjectValue transformAttributes(Hcl.ObjectValue object, AttributePathAutomaton.State state) {
+            List<Expression> attributes = object.getAttributes();
+            List<Expression> updated = null;
+            for (int i = 0; i < attributes.size(); i++) {
+                if (!(attributes.get(i) instanceof Hcl.Attribute)) {
+                    continue;
+                }
+                Hcl.Attribute attribute = (Hcl.Attribute) attributes.get(i);
+                String key = keyOf(attribute);
+                AttributePathAutomaton.State next = key != null ? state.onKey(key) : null;
+                if (next == null) {
+                    continue;
+                }
+                Expression value = transform(attribute.getValue(), next);
+                if (value != attribute.getValue()) {
+                    if (updated == null) {
+                        updated = new ArrayList<>(attributes);
+                    }
+                    updated.set(i, attribute.withValue(value));
+                }
+            }
+            return updated == null ? object : object.withAttributes(updated);
+        }
+
+        private Hcl.Tuple transformElements(Hcl.Tuple tuple, AttributePathAutomaton.State state) {
+            List<Expression> values = tuple.getValues();
+            List<Expression> updated = null;
+            for (int i = 0; i < values.size(); i++) {
+                AttributePathAutomaton.State next = state.onElement(i);
+                if (next == null) {
+                    continue;
+                }
+                Expression value = transform(values.get(i), next);
+                if (value != values.get(i)) {
+                    if (updated == null) {
+                        updated = new ArrayList<>(values);
+                    }
+                    updated.set(i, value);
+                }
+            }
+            return updated == null ? tuple : tuple.withValues(updated);
+        }
+
+        /**
+         * @return the unquoted key of {@code name = ...} or {@code "name": ...}, or {@code null}
+         * for computed keys
+         */
+        private static @Nullable String keyOf(Hcl.Attribute attribute) {
+            Expression key = attribute.getName();
+            if (key instanceof Hcl.Identifier) {
+                return ((Hcl.Identifier) key).getName();
+            }
+            if (key instanceof Hcl.VariableExpression) {
+                return ((Hcl.VariableExpression) key).getName().getName();
+            }
+            if (key instanceof Hcl.Literal) {
+                return ModuleBlockPredicates.removeQuotes(((Hcl.Literal) key).getValueSource());
+            }
+            if (key instanceof Hcl.QuotedTemplate) {
+                List<Expression> expressions = ((Hcl.QuotedTemplate) key).getExpressions();
+                if (expressions.isEmpty()) {
+                    return "";
+                }
+                if (expressions.size() == 1 && expressions.get(0) instanceof Hcl.Literal) {
+                    return ModuleBlockPredicates.removeQuotes(((Hcl.Literal) expressions.get(0)).getValueSource());
+                }
+            }
+            return null;
+        }
+
+        /**
+         * {@code "foo"} becomes {@code ["foo"]}; other values are returned as is.
+         */
+        private static Expression stringToList(Expression value) {
+            if (!isString(value)) {
+                return value;
+            }
+            Expression element = value.withPrefix(Space.EMPTY);
+            return new Hcl.Tuple(
+                Tree.randomId(),
+                value.getPrefix(),
+                Markers.EMPTY,
+                HclContainer.build(
+                    Space.EMPTY,
+                    Collections.singletonList(new HclRightPadded<>(element, Space.EMPTY, Markers.EMPTY)),
+                    Markers.EMPTY
+                )
+            );
+        }
+
+        /**
+         * {@code ["foo"]} becomes {@code "foo"}; lists with other or more elements, or with comments
+         * that would be lost, are returned as is.
+         */
+        private static Expression listToString(Expression value) {
+            if (!(value instanceof Hcl.Tuple)) {
+                return value;
+            }
+            Hcl.Tuple tuple = (Hcl.Tuple) value;
+            HclContainer<Expression> values = tuple.getPadding().getValues();
+            if (values.getElements().size() != 1 || !values.getBefore().getComments().isEmpty()) {
+                return value;
+            }
+            HclRightPadded<Expression> element = values.getPadding().getElements().get(0);
+            if (!isString(element.getElement())
+                || !element.getElement().getPrefix().getComments().isEmpty()
+                || !element.getAfter().getComments().isEmpty()) {
+                return value;
+            }
+            return element.getElement().withPrefix(tuple.getPrefix());
+        }
+
+        private static boolean isString(Expression value) {
+            if (value instanceof Hcl.QuotedTemplate) {
+                return true;
+            }
+            return value instanceof Hcl.Literal
+                   && ((Hcl.Literal) value).getValue() instanceof String
+                   && ((Hcl.Literal) value).getValueSource().startsWith("\"");
+        }
     }
 
     enum AttributeTransformation {
@@ -1,7 +1,8 @@
 package io.oczadly.openrewrite.hcl;
 
-import io.oczadly.openrewrite.hcl.utils.ModuleBlockPredicates;
+import io.oczadly.openrewrite.hcl.utils.ModuleMatcher;
 import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher;
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.*;
@@ -35,7 +36,7 @@ import org.openrewrite.hcl.tree.Hcl;
  * )
  * }</pre>
  *
- * @see ModuleBlockPredicates for matching logic
+ * @see ModuleMatcher for matching logic
  */
 public abstract class ModuleRecipe extends Recipe {
 
@@ -57,6 +58,15 @@ public abstract class ModuleRecipe extends Recipe {
     @Option(displayName = "File pattern", description = "A glob pattern to match files to apply this recipe to", required = false, example = DEFAULT_FILE_PATTERN)
     final String filePattern;
 
+    // Compiled lazily from the immutable 'version' option and reused for every block the recipe visits.
+    private transient volatile @Nullable CompiledConstraint compiledVersion;
+
+    // Set once compiling 'version' failed, so an invalid constraint is not parsed again on every call.
+    private transient volatile boolean invalidVersion;
+
+    // Built lazily from the immutable filter options and shared by every visitor of the recipe.
+    private transient volatile @Nullable ModuleMatcher moduleMatcher;
+
     protected ModuleRecipe(@Nullable String moduleName,
                            String source,
                            @Nullable String version,
@@ -69,6 +79,11 @@ public abstract class ModuleRecipe extends Recipe {
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor() {
+        CompiledConstraint constraint = validVersionConstraint();
+        if (constraint != null && constraint.isEmpty()) {
+            // No module can match, so there is no reason to visit any file.
+            return TreeVisitor.noop();
+        }
         return Preconditions.check(new FindSourceFiles(filePattern != null ? filePattern : DEFAULT_FILE_PATTERN), createModuleVisitor());
     }
 
@@ -98,6 +113,12 @@ public abstract class ModuleRecipe extends Recipe {
                     version,
                     VersionConstraintMatcher.INVALID_CONSTRAINT_MESSAGE
                 ));
+            } else if (!VersionConstraintMatcher.isSatisfiableConstraint(version)) {
+                validated = validated.and(Validated.invalid(
+                    "version",
+                    version,
+                    VersionConstraintMatcher.UNSATISFIABLE_CONSTRAINT_MESSAGE
+                ));
             }
         }
 
@@ -106,22 +127,48 @@ public abstract class ModuleRecipe extends Recipe {
 
     protected abstract HclVisitor<ExecutionContext> createModuleVisitor();
 
-    protected boolean matchesModule(Hcl.Block block) {
-        if (!ModuleBlockPredicates.matchesModuleName(block, moduleName)) {
-            return false;
+    /**
+     * Returns the compiled {@code version} constraint, parsing it on first use.
+     *
+     * @return the compiled constraint, or {@code null} if no version filter is configured
+     */
+    protected @Nullable CompiledConstraint versionConstraint() {
+        if (version == null) {
+            return null;
         }
-
-        if (source != null && !source.equals(ModuleBlockPredicates.getAttributeValue(block, "source"))) {
-            return false;
+        CompiledConstraint compiled = compiledVersion;
+        if (compiled == null) {
+            compiled = VersionConstraintMatcher.compile(version);
+            compiledVersion = compiled;
         }
+        return compiled;
+    }
 
-        if (version != null) {
-            if (version.trim().isEmpty()) {
-                return false;
-            }
-            return VersionConstraintMatcher.matches(version, ModuleBlockPredicates.getAttributeValue(block, "version"));
+    /**
+     * @return the compiled {@code version} constraint, or {@code null} if no version filter is
+     * configured or it is invalid
+     */
+    private @Nullable CompiledConstraint validVersionConstraint() {
+        if (version == null || invalidVersion) {
+            return null;
+        }
+        try {
+            return versionConstraint();
+        } catch (IllegalArgumentException e) {
+            invalidVersion = true;
+            return null;
         }
+    }
 
-        return true;
+    protected boolean matchesModule(Hcl.Block block) {
+        if (version != null && version.trim().isEmpty()) {
+            return false;
+        }
+        ModuleMatcher matcher = moduleMatcher;
+        if (matcher == null) {
+            matcher = ModuleMatcher.of(moduleName, source, versionConstraint());
+            moduleMatcher = matcher;
+        }
+        return matcher.matches(block);
     }
 }
@@ -1,6 +1,8 @@
 package io.oczadly.openrewrite.hcl;
 
-import io.oczadly.openrewrite.hcl.utils.ModuleBlockPredicates;
+import io.oczadly.openrewrite.hcl.utils.GlobMatcher;
+import io.oczadly.openrewrite.hcl.utils.HclStyle;
+import io.oczadly.openrewrite.hcl.utils.TopLevelBlockIndex;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.ExecutionContext;
 import org.openrewrite.FindSourceFiles;
@@ -10,7 +12,6 @@ import org.openrewrite.hcl.HclParser;
 import org.openrewrite.hcl.HclVisitor;
 import org.openrewrite.hcl.tree.BodyContent;
 import org.openrewrite.hcl.tree.Hcl;
-import org.openrewrite.hcl.tree.Label;
 import org.openrewrite.SourceFile;
 import org.openrewrite.tree.ParseError;
 
@@ -29,45 +30,13 @@ final class ProviderRecipeSupport {
         return Preconditions.check(new FindSourceFiles(filePattern != null ? filePattern : DEFAULT_FILE_PATTERN), visitor);
     }
 
-    static boolean matchesModuleFilters(Hcl.ConfigFile configFile,
-                                        @Nullable String moduleName,
-                                        @Nullable String moduleSource,
-                                        @Nullable String moduleVersion) {
-        if (moduleName == null && moduleSource == null && moduleVersion == null) {
-            return true;
-        }
-
-        for (BodyContent bodyContent : configFile.getBody()) {
-            if (!(bodyContent instanceof Hcl.Block)) {
-                continue;
-            }
-
-            if (TopLevelBlockRecipeSupport.matchesModuleFilters((Hcl.Block) bodyContent, moduleName, moduleSource, moduleVersion)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     static boolean isBlockType(Hcl.Block block, String blockType) {
         Hcl.Identifier type = block.getType();
         return type != null && blockType.equalsIgnoreCase(type.getName());
     }
 
     static Hcl.Block findTopLevelBlock(Hcl.ConfigFile configFile, String blockType) {
-        for (BodyContent bodyContent : configFile.getBody()) {
-            if (!(bodyContent instanceof Hcl.Block)) {
-                continue;
-            }
-
-            Hcl.Block block = (Hcl.Block) bodyContent;
-            if (isBlockType(block, blockType)) {
-                return block;
-            }
-        }
-
-        return null;
+        return TopLevelBlockIndex.of(configFile).first(blockType);
     }
 
     static Hcl.Block findNestedBlock(Hcl.Block parent, String blockType) {
@@ -115,39 +84,16 @@ final class ProviderRecipeSupport {
 
     static String childIndent(Hcl.Block parent, String fallback) {
         for (BodyContent bodyContent : parent.getBody()) {
-            String prefix = bodyContent.getPrefix().getWhitespace();
-            int newlineIndex = prefix.lastIndexOf('\n');
-            if (newlineIndex >= 0) {
-                return prefix.substring(newlineIndex + 1);
+            String indentation = HclStyle.indentationOf(bodyContent.getPrefix().getWhitespace());
+            if (indentation != null) {
+                return indentation;
             }
         }
         return fallback;
     }
 
     static boolean matchesProviderNameLabel(Hcl.Block block, String providerName) {
-        if (block.getLabels().isEmpty()) {
-            return false;
-        }
-
-        Label label = block.getLabels().get(0);
-        if (label instanceof Hcl.Literal) {
-            String valueSource = ((Hcl.Literal) label).getValueSource();
-            return providerName.equals(ModuleBlockPredicates.removeQuotes(valueSource));
-        }
-
-        if (label instanceof Hcl.QuotedTemplate) {
-            Hcl.QuotedTemplate quoted = (Hcl.QuotedTemplate) label;
-            if (quoted.getExpressions().size() != 1) {
-                return false;
-            }
-            Hcl quotedExpression = quoted.getExpressions().get(0);
-            if (quotedExpression instanceof Hcl.Literal) {
-                String valueSource = ((Hcl.Literal) quotedExpression).getValueSource();
-                return providerName.equals(ModuleBlockPredicates.removeQuotes(valueSource));
-            }
-        }
-
-        return false;
+        return providerName.equals(TopLevelBlockIndex.firstLabel(block));
     }
 
     static Hcl.Block parseSingleBlock(HclParser parser, String hclText, String purpose) {
@@ -183,24 +129,7 @@ final class ProviderRecipeSupport {
         return result.toString();
     }
 
-    static String directoryOf(String path) {
-        java.nio.file.Path p = java.nio.file.Paths.get(path);
-        java.nio.file.Path parent = p.getParent();
-        return parent != null ? parent.toString() : "";
-    }
-
     static boolean matchesPattern(String path, String pattern) {
-        java.nio.file.PathMatcher matcher = java.nio.file.FileSystems.getDefault()
-            .getPathMatcher("glob:" + pattern);
-        java.nio.file.Path candidate = java.nio.file.Paths.get(path);
-        if (matcher.matches(candidate)) {
-            return true;
-        }
-        if (candidate.getParent() == null && pattern.startsWith("**/")) {
-            java.nio.file.PathMatcher rootMatcher = java.nio.file.FileSystems.getDefault()
-                .getPathMatcher("glob:" + pattern.substring(3));
-            return rootMatcher.matches(candidate);
-        }
-        return false;
+        return GlobMatcher.of(pattern).matches(path);
     }
 }
@@ -2,6 +2,11 @@ package io.oczadly.openrewrite.hcl;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.oczadly.openrewrite.hcl.utils.DirectoryInterner;
+import io.oczadly.openrewrite.hcl.utils.DirectorySet;
+import io.oczadly.openrewrite.hcl.utils.ModuleMatcher;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
+import io.oczadly.openrewrite.hcl.utils.TopLevelBlockIndex;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.NonNull;
@@ -20,8 +25,6 @@ import org.openrewrite.hcl.tree.Hcl;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Value
 @EqualsAndHashCode(callSuper = false)
@@ -29,19 +32,18 @@ public class RemoveProvider extends ScanningRecipe<RemoveProvider.ScanState> {
 
     @Value
     public static class ScanState {
-        Set<String> matchingDirectories = ConcurrentHashMap.newKeySet();
+        // Property snapshot of the run, shared by the scanning and editing phases.
+        PropertySource properties;
+        DirectoryInterner directoryInterner;
+        DirectorySet matchingDirectories = new DirectorySet();
 
         void markDirectoryMatched(Hcl.ConfigFile configFile) {
-            String path = configFile.getSourcePath().toString();
-            String directory = ProviderRecipeSupport.directoryOf(path);
-            matchingDirectories.add(directory);
+            matchingDirectories.add(directoryInterner.idOf(configFile.getSourcePath()));
         }
 
         boolean isDirectoryMatched(Hcl.ConfigFile configFile, @Nullable String filePattern) {
-            String directory = ProviderRecipeSupport.directoryOf(configFile.getSourcePath().toString());
-            String currentPath = configFile.getSourcePath().toString();
-            return matchingDirectories.contains(directory)
-                   && (filePattern == null || ProviderRecipeSupport.matchesPattern(currentPath, filePattern));
+            return matchingDirectories.contains(directoryInterner.idOf(configFile.getSourcePath()))
+                   && (filePattern == null || ProviderRecipeSupport.matchesPattern(configFile.getSourcePath().toString(), filePattern));
         }
     }
 
@@ -98,20 +100,27 @@ public class RemoveProvider extends ScanningRecipe<RemoveProvider.ScanState> {
 
     @Override
     public @NonNull ScanState getInitialValue(@Nullable ExecutionContext ctx) {
-        return new ScanState();
+        return new ScanState(PropertySource.forRun(ctx), DirectoryInterner.forRun(ctx));
     }
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getScanner(@Nullable ScanState acc) {
-        String resolvedModuleSource = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(source, "source");
-        String resolvedModuleVersion = TopLevelBlockRecipeSupport.resolveOptionalVersionFilterValue(version);
-        String resolvedModuleName = TopLevelBlockRecipeSupport.resolveOptionalFilterValue(moduleName, "moduleName");
+        PropertySource properties = acc != null ? acc.properties : PropertySource.systemSnapshot();
+        ModuleMatcher moduleMatcher = ModuleMatcher.of(
+            TopLevelBlockRecipeSupport.resolveOptionalFilterValue(moduleName, "moduleName", properties),
+            TopLevelBlockRecipeSupport.resolveOptionalFilterValue(source, "source", properties),
+            TopLevelBlockRecipeSupport.resolveOptionalVersionFilter(version, properties)
+        );
+        if (moduleMatcher.isUnsatisfiable()) {
+            // No module can match, so no directory is ever marked and the scan can be skipped.
+            return TreeVisitor.noop();
+        }
 
         return ProviderRecipeSupport.scopedVisitor("**/*.tf", new HclVisitor<ExecutionContext>() {
             @Override
             public @NonNull Hcl visitConfigFile(Hcl.@NonNull ConfigFile configFile, ExecutionContext ctx) {
                 Hcl.ConfigFile visited = (Hcl.ConfigFile) super.visitConfigFile(configFile, ctx);
-                if (acc != null && ProviderRecipeSupport.matchesModuleFilters(visited, resolvedModuleName, resolvedModuleSource, resolvedModuleVersion)) {
+                if (acc != null && moduleMatcher.matchesAny(visited)) {
                     acc.markDirectoryMatched(visited);
                 }
                 return visited;
@@ -121,7 +130,8 @@ public class RemoveProvider extends ScanningRecipe<RemoveProvider.ScanState> {
 
     @Override
     public @NonNull TreeVisitor<?, ExecutionContext> getVisitor(@Nullable ScanState acc) {
-        String resolvedProviderName = TopLevelBlockRecipeSupport.resolveRequiredValue(providerName, "providerName");
+        PropertySource properties = acc != null ? acc.properties : PropertySource.systemSnapshot();
+        String resolvedProviderName = TopLevelBlockRecipeSupport.resolveRequiredValue(providerName, "providerName", properties);
         boolean shouldRemoveConfiguration = removeConfiguration == null || removeConfiguration;
 
         return ProviderRecipeSupport.scopedVisitor(filePattern, new HclVisitor<ExecutionContext>() {
@@ -136,9 +146,10 @@ public class RemoveProvider extends ScanningRecipe<RemoveProvider.ScanState> {
                 boolean changed = false;
                 Hcl.ConfigFile modified = visited;
 
-                Hcl.Block terraformBlock = ProviderRecipeSupport.findTopLevelBlock(modified, "terraform");
+                TopLevelBlockIndex blocks = TopLevelBlockIndex.of(modified);
+                Hcl.Block terraformBlock = blocks.first("terraform");
                 if (terraformBlock != null) {
-                    Hcl.Block requiredProvidersBlock = ProviderRecipeSupport.findNestedBlock(terraformBlock, "required_providers");
+                    Hcl.Block requiredProvidersBlock = blocks.requiredProviders();
                     if (requiredProvidersBlock != null) {
                         Hcl.Block updatedRequiredProviders = removeProviderEntry(requiredProvidersBlock, resolvedProviderName);
                         if (updatedRequiredProviders != requiredProvidersBlock) {
@@ -185,6 +196,10 @@ public class RemoveProvider extends ScanningRecipe<RemoveProvider.ScanState> {
             }
 
             private Hcl.ConfigFile removeProviderBlocks(Hcl.ConfigFile configFile, String providerName) {
+                if (!TopLevelBlockIndex.of(configFile).contains("provider", providerName)) {
+                    return configFile;
+                }
+
                 List<BodyContent> updatedBody = new ArrayList<>(configFile.getBody().size());
                 boolean removed = false;
 
@@ -1,8 +1,14 @@
 package io.oczadly.openrewrite.hcl;
 
-import io.oczadly.openrewrite.hcl.utils.ModuleBlockPredicates;
+import io.oczadly.openrewrite.hcl.utils.BlockFingerprint;
+import io.oczadly.openrewrite.hcl.utils.HclStyle;
+import io.oczadly.openrewrite.hcl.utils.HclStyleDetector;
+import io.oczadly.openrewrite.hcl.utils.ModuleMatcher;
 import io.oczadly.openrewrite.hcl.utils.PropertyPlaceholderResolver;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
+import io.oczadly.openrewrite.hcl.utils.TopLevelBlockIndex;
 import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher;
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.*;
@@ -12,61 +18,68 @@ import org.openrewrite.hcl.format.SpacesVisitor;
 import org.openrewrite.hcl.style.SpacesStyle;
 import org.openrewrite.hcl.tree.BodyContent;
 import org.openrewrite.hcl.tree.Hcl;
-import org.openrewrite.hcl.tree.Label;
 import org.openrewrite.hcl.tree.Space;
 import org.openrewrite.tree.ParseError;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 final class TopLevelBlockRecipeSupport {
 
     private static final String DEFAULT_FILE_PATTERN = "**/*.tf";
 
+    // Execution context message holding the resolved options of each recipe in the run.
+    static final String RUN_OPTIONS_KEY = "io.oczadly.openrewrite.hcl.topLevelBlockOptions";
+
     private TopLevelBlockRecipeSupport() {
     }
 
 
-    static TreeVisitor<?, ExecutionContext> topLevelBlockVisitor(String blockType,
-                                                                 String blockBody,
+    /**
+     * Returns the visitor adding a top-level block. Options are resolved once per recipe run and
+     * stored in the execution context, since the visitor is created again for every source file.
+     *
+     * @param recipe the recipe adding the block, identifying its resolved options within the run
+     */
+    static TreeVisitor<?, ExecutionContext> topLevelBlockVisitor(Recipe recipe,
+                                                                 String blockType,
+                                                                 Function<PropertySource, String> blockBody,
                                                                  @Nullable String moduleName,
                                                                  @Nullable String source,
                                                                  @Nullable String version,
                                                                  @Nullable String filePattern) {
-        // Build one parser per visitor instance and reuse it for all parses within this run.
-        HclParser parser = HclParser.builder().build();
-        String normalizedModuleName = resolveOptionalFilterValue(moduleName, "moduleName");
-        String normalizedSource = resolveOptionalFilterValue(source, "source");
-        String normalizedVersion = resolveOptionalVersionFilterValue(version);
-        boolean hasModuleFilter = normalizedModuleName != null || normalizedSource != null || normalizedVersion != null;
-        // Render once and pre-parse a candidate block for idempotency checks.
-        String blockText = renderBlockText(blockType, blockBody);
-        Hcl.Block candidateBlock = parseBlock(parser, blockText);
-
         return Preconditions.check(
             new FindSourceFiles(filePattern != null ? filePattern : DEFAULT_FILE_PATTERN),
             new HclVisitor<ExecutionContext>() {
                 @Override
                 public @NonNull Hcl visitConfigFile(Hcl.@NonNull ConfigFile configFile, ExecutionContext ctx) {
+                    Map<Recipe, ResolvedBlockOptions> runOptions = ctx.computeMessageIfAbsent(RUN_OPTIONS_KEY, key -> new ConcurrentHashMap<>());
+                    ResolvedBlockOptions resolved = runOptions.computeIfAbsent(recipe, r -> resolveOptions(ctx));
+                    if (resolved.moduleMatcher.isUnsatisfiable()) {
+                        // No module can match, so there is no reason to visit the file.
+                        return configFile;
+                    }
+
                     Hcl.ConfigFile visited = (Hcl.ConfigFile) super.visitConfigFile(configFile, ctx);
 
-                    if (hasModuleFilter && !containsMatchingModule(visited, normalizedModuleName, normalizedSource, normalizedVersion)) {
+                    if (!resolved.moduleMatcher.matchesAny(visited)) {
                         return visited;
                     }
 
-                    if (containsEquivalentBlock(visited, candidateBlock)) {
+                    if (containsEquivalentBlock(visited, resolved)) {
                         return visited;
                     }
 
                     // Create a fresh block instance for each insertion to keep Tree IDs unique across files.
-                    Hcl.Block blockToAdd = parseBlock(parser, blockText).withPrefix(Space.EMPTY);
+                    HclStyle style = HclStyleDetector.detect(visited);
+                    Hcl.Block blockToAdd = parseBlock(resolved.blockText(style)).withPrefix(Space.EMPTY);
                     List<BodyContent> newBody = new ArrayList<>(visited.getBody());
                     if (!newBody.isEmpty()) {
-                        blockToAdd = blockToAdd.withPrefix(Space.format("\n\n"));
+                        blockToAdd = blockToAdd.withPrefix(Space.format(style.topLevelBlockSeparator()));
                     }
                     newBody.add(blockToAdd);
 
@@ -75,79 +88,33 @@ final class TopLevelBlockRecipeSupport {
                     return modified;
                 }
 
-                private boolean containsEquivalentBlock(Hcl.ConfigFile configFile,
-                                                        Hcl.Block candidateBlock) {
-                    String candidateTypeName = blockTypeName(candidateBlock);
-                    String candidateSignature = blockSignature(candidateBlock);
-
-                    for (BodyContent bodyContent : configFile.getBody()) {
-                        if (!(bodyContent instanceof Hcl.Block)) {
-                            continue;
-                        }
-
-                        Hcl.Block existingBlock = (Hcl.Block) bodyContent;
-                        String existingTypeName = blockTypeName(existingBlock);
-                        if (!existingTypeName.equals(candidateTypeName)) {
-                            continue;
-                        }
-
-                        String existingSignature = blockSignature(existingBlock);
-                        if (existingSignature.equals(candidateSignature)) {
-                            return true;
-                        }
-                    }
-
-                    return false;
-                }
-
-                private String blockTypeName(Hcl.Block block) {
-                    Hcl.Identifier type = block.getType();
-                    return type == null ? "" : type.getName().toLowerCase(Locale.ROOT);
+                private ResolvedBlockOptions resolveOptions(ExecutionContext ctx) {
+                    PropertySource properties = PropertySource.forRun(ctx);
+                    // Render once and fingerprint a candidate block for idempotency checks.
+                    String body = blockBody.apply(properties);
+                    String blockText = renderBlockText(blockType, body, HclStyle.DEFAULT);
+                    Hcl.Block candidateBlock = parseBlock(blockText);
+                    return new ResolvedBlockOptions(
+                        blockType,
+                        body,
+                        blockText,
+                        candidateTypeOf(candidateBlock),
+                        BlockFingerprint.of(candidateBlock),
+                        ModuleMatcher.of(
+                            resolveOptionalFilterValue(moduleName, "moduleName", properties),
+                            resolveOptionalFilterValue(source, "source", properties),
+                            resolveOptionalVersionFilter(version, properties)
+                        )
+                    );
                 }
 
-                private String blockSignature(Hcl.Block block) {
-                    // For idempotency, we compare blocks by collecting their normalized attributes
-                    // in a map to handle different ordering while preserving semantic meaning.
-                    Map<String, String> normalizedAttributes = new LinkedHashMap<>();
-                    List<String> nestedBlocks = new ArrayList<>();
-
-                    for (BodyContent bodyContent : block.getBody()) {
-                        if (bodyContent instanceof Hcl.Attribute) {
-                            Hcl.Attribute attribute = (Hcl.Attribute) bodyContent;
-                            String attrName = attribute.getSimpleName().toLowerCase(Locale.ROOT);
-                            String attrValue = normalizeHcl(attribute.getValue().printTrimmed(getCursor()));
-                            normalizedAttributes.put(attrName, attrValue);
-                        } else if (bodyContent instanceof Hcl.Block) {
-                            nestedBlocks.add(blockSignature((Hcl.Block) bodyContent));
-                        } else {
-                            nestedBlocks.add("o:" + normalizeHcl(bodyContent.printTrimmed(getCursor())));
-                        }
-                    }
-
-                    List<String> labelSignatures = new ArrayList<>(block.getLabels().size());
-                    for (Label label : block.getLabels()) {
-                        labelSignatures.add(normalizeHcl(label.printTrimmed(getCursor())));
-                    }
-
-                    // Build signature: sort nested blocks and attributes for comparison
-                    Collections.sort(nestedBlocks);
-                    List<String> sortedAttrs = new ArrayList<>();
-                    for (Map.Entry<String, String> entry : normalizedAttributes.entrySet()) {
-                        sortedAttrs.add("a:" + entry.getKey() + "=" + entry.getValue());
-                    }
-                    Collections.sort(sortedAttrs);
-
-                    List<String> allBodySignatures = new ArrayList<>(sortedAttrs);
-                    allBodySignatures.addAll(nestedBlocks);
-
-                    return "b:"
-                           + blockTypeName(block)
-                           + "|labels="
-                           + String.join(",", labelSignatures)
-                           + "|body="
-                           + String.join(";", allBodySignatures);
+                private boolean containsEquivalentBlock(Hcl.ConfigFile configFile,
+                                                        ResolvedBlockOptions resolved) {
+                    // Blocks are compared by fingerprint, so attribute order, whitespace and
+                    // comments do not make an existing block look different.
+                    return TopLevelBlockIndex.of(configFile)
+                        .containsFingerprint(resolved.candidateType, resolved.candidateFingerprint);
                 }
-
             }
         );
     }
@@ -190,13 +157,23 @@ final class TopLevelBlockRecipeSupport {
     static Validated<Object> validateOptionalVersionConstraint(Validated<Object> validated,
                                                                @Nullable String value) {
         validated = validateOptionalNonBlank(validated, "version", value);
-        if (value != null && !value.trim().isEmpty() && !value.contains("${") && !VersionConstraintMatcher.isValidConstraint(value)) {
+        if (value == null || value.trim().isEmpty() || value.contains("${")) {
+            return validated;
+        }
+        if (!VersionConstraintMatcher.isValidConstraint(value)) {
             return validated.and(Validated.invalid(
                 "version",
                 value,
                 VersionConstraintMatcher.INVALID_CONSTRAINT_MESSAGE
             ));
         }
+        if (!VersionConstraintMatcher.isSatisfiableConstraint(value)) {
+            return validated.and(Validated.invalid(
+                "version",
+                value,
+                VersionConstraintMatcher.UNSATISFIABLE_CONSTRAINT_MESSAGE
+            ));
+        }
         return validated;
     }
 
@@ -217,7 +194,7 @@ final class TopLevelBlockRecipeSupport {
         return validated;
     }
 
-    static String resolveRequiredValue(@Nullable String value, String fieldName) {
+    static String resolveRequiredValue(@Nullable String value, String fieldName, PropertySource properties) {
         String normalizedValue = normalizeNullable(value);
         if (normalizedValue == null) {
             throw new IllegalStateException(
@@ -229,7 +206,7 @@ final class TopLevelBlockRecipeSupport {
             return normalizedValue;
         }
 
-        String resolvedPlaceholder = PropertyPlaceholderResolver.resolve(normalizedValue);
+        String resolvedPlaceholder = PropertyPlaceholderResolver.resolveFrom(normalizedValue, properties);
         String normalizedResolved = normalizeNullable(resolvedPlaceholder);
         if (normalizedResolved == null) {
             throw new IllegalStateException("Placeholder '" + normalizedValue + "' for '" + fieldName + "' resolved to an empty or blank value");
@@ -239,7 +216,7 @@ final class TopLevelBlockRecipeSupport {
     }
 
 
-    static @Nullable String resolveOptionalFilterValue(@Nullable String value, String fieldName) {
+    static @Nullable String resolveOptionalFilterValue(@Nullable String value, String fieldName, PropertySource properties) {
         String normalizedValue = normalizeNullable(value);
         if (normalizedValue == null) {
             return null;
@@ -249,7 +226,7 @@ final class TopLevelBlockRecipeSupport {
             return normalizedValue;
         }
 
-        String resolved = PropertyPlaceholderResolver.resolve(normalizedValue);
+        String resolved = PropertyPlaceholderResolver.resolveFrom(normalizedValue, properties);
         String normalizedResolved = normalizeNullable(resolved);
         if (normalizedResolved == null) {
             throw new IllegalStateException(
@@ -260,46 +237,16 @@ final class TopLevelBlockRecipeSupport {
         return normalizedResolved;
     }
 
-    static @Nullable String resolveOptionalVersionFilterValue(@Nullable String value) {
-        String resolved = resolveOptionalFilterValue(value, "version");
-        if (resolved != null && !VersionConstraintMatcher.isValidConstraint(resolved)) {
-            throw new IllegalStateException(VersionConstraintMatcher.INVALID_CONSTRAINT_MESSAGE);
-        }
-        return resolved;
-    }
-
-    static boolean containsMatchingModule(Hcl.ConfigFile configFile,
-                                          @Nullable String moduleName,
-                                          @Nullable String source,
-                                          @Nullable String version) {
-        for (BodyContent bodyContent : configFile.getBody()) {
-            if (!(bodyContent instanceof Hcl.Block)) {
-                continue;
-            }
-
-            if (matchesModuleFilters((Hcl.Block) bodyContent, moduleName, source, version)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    static boolean matchesModuleFilters(Hcl.Block block,
-                                        @Nullable String moduleName,
-                                        @Nullable String source,
-                                        @Nullable String version) {
-        Hcl.Identifier type = block.getType();
-        if (type == null || !"module".equalsIgnoreCase(type.getName())) {
-            return false;
-        }
-        if (!ModuleBlockPredicates.matchesModuleName(block, moduleName)) {
-            return false;
+    static @Nullable CompiledConstraint resolveOptionalVersionFilter(@Nullable String value, PropertySource properties) {
+        String resolved = resolveOptionalFilterValue(value, "version", properties);
+        if (resolved == null) {
+            return null;
         }
-        if (source != null && !source.equals(ModuleBlockPredicates.getAttributeValue(block, "source"))) {
-            return false;
+        try {
+            return VersionConstraintMatcher.compile(resolved);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(VersionConstraintMatcher.INVALID_CONSTRAINT_MESSAGE);
         }
-        return version == null || VersionConstraintMatcher.matches(version, ModuleBlockPredicates.getAttributeValue(block, "version"));
     }
 
     static String quoteHclString(String value) {
@@ -378,48 +325,47 @@ final class TopLevelBlockRecipeSupport {
     }
 
     private static boolean containsCommentSyntaxOutsideStrings(String value) {
+        // Strings nest inside template sequences, e.g. module.foo["${lookup(m, "#")}"], so each
+        // open ${ or %{ records the brace depth at which it closes and the string resumes.
+        int[] templates = new int[value.length()];
+        int openTemplates = 0;
+        int braces = 0;
         boolean inString = false;
-        boolean escaped = false;
-
         for (int i = 0; i < value.length(); i++) {
             char c = value.charAt(i);
-
-            if (escaped) {
-                escaped = false;
-                continue;
-            }
-
-            if (c == '\\' && inString) {
-                escaped = true;
-                continue;
-            }
-
-            if (c == '"') {
-                inString = !inString;
-                continue;
-            }
-
+            char next = i + 1 < value.length() ? value.charAt(i + 1) : '\0';
             if (inString) {
-                continue;
-            }
-
-            if (c == '#') {
-                return true;
-            }
-
-            if (c == '/' && i + 1 < value.length()) {
-                char next = value.charAt(i + 1);
-                if (next == '/' || next == '*') {
-                    return true;
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                } else if ((c == '$' || c == '%') && next == c) {
+                    // $${ and %%{ are escaped, literal template markers.
+                    i++;
+                } else if ((c == '$' || c == '%') && next == '{') {
+                    templates[openTemplates++] = braces++;
+                    inString = false;
+                    i++;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                braces++;
+            } else if (c == '}') {
+                braces--;
+                if (openTemplates > 0 && templates[openTemplates - 1] == braces) {
+                    openTemplates--;
+                    inString = true;
                 }
+            } else if (c == '#' || c == '/' && (next == '/' || next == '*')) {
+                return true;
             }
         }
-
         return false;
     }
 
-    private static Hcl.Block parseBlock(HclParser parser, String blockText) {
-        SourceFile sourceFile = parser
+    private static Hcl.Block parseBlock(String blockText) {
+        SourceFile sourceFile = HclParser.builder().build()
             .parse(blockText)
             .findFirst()
             .orElseThrow(() -> new IllegalStateException("Could not parse generated top-level block"));
@@ -440,95 +386,12 @@ final class TopLevelBlockRecipeSupport {
         return (Hcl.Block) firstBodyItem;
     }
 
-    /**
-     * Normalizes HCL text for idempotency comparison by removing whitespace and comments
-     * outside quoted string literals. Whitespace and comment-like content inside strings
-     * is preserved so values like {@code "a b"} and {@code "ab"} remain distinct.
-     *
-     * <p>This implementation carefully handles escape sequences to ensure the normalized
-     * output is semantically equivalent to the input.</p>
-     */
-    private static String normalizeHcl(String hclText) {
-        StringBuilder result = new StringBuilder(hclText.length());
-        boolean inString = false;
-        boolean escaped = false;
-        boolean inLineComment = false;
-        boolean inBlockComment = false;
-
-        for (int i = 0; i < hclText.length(); i++) {
-            char c = hclText.charAt(i);
-
-            // Handle end of line comment
-            if (inLineComment) {
-                if (c == '\n' || c == '\r') {
-                    inLineComment = false;
-                }
-                continue;
-            }
-
-            // Handle end of block comment
-            if (inBlockComment) {
-                if (c == '*' && i + 1 < hclText.length() && hclText.charAt(i + 1) == '/') {
-                    inBlockComment = false;
-                    i++; // Skip the '/'
-                }
-                continue;
-            }
-
-            // Handle escaped character within string
-            if (escaped) {
-                result.append(c);
-                escaped = false;
-                continue;
-            }
-
-            // Detect escape sequence start within string
-            if (c == '\\' && inString) {
-                result.append(c);
-                escaped = true;
-                continue;
-            }
-
-            // Toggle string state
-            if (c == '"') {
-                inString = !inString;
-                result.append(c);
-                continue;
-            }
-
-            // Detect comments only outside strings
-            if (!inString) {
-                if (c == '#') {
-                    inLineComment = true;
-                    continue;
-                }
-                if (c == '/' && i + 1 < hclText.length()) {
-                    char next = hclText.charAt(i + 1);
-                    if (next == '/') {
-                        inLineComment = true;
-                        i++; // Skip the second '/'
-                        continue;
-                    }
-                    if (next == '*') {
-                        inBlockComment = true;
-                        i++; // Skip the '*'
-                        continue;
-                    }
-                }
-            }
-
-            // Skip whitespace outside strings
-            if (!inString && Character.isWhitespace(c)) {
-                continue;
-            }
-
-            result.append(c);
-        }
-
-        return result.toString().trim();
+    private static String candidateTypeOf(Hcl.Block block) {
+        Hcl.Identifier type = block.getType();
+        return type == null ? "" : type.getName();
     }
 
-    private static String renderBlockText(String rawBlockType, String rawBlockBody) {
+    private static String renderBlockText(String rawBlockType, String rawBlockBody, HclStyle style) {
         String normalizedType = rawBlockType.toLowerCase(Locale.ROOT).trim();
         String normalizedBody = rawBlockBody.trim();
         String[] lines = normalizedBody.split("\\R");
@@ -537,9 +400,41 @@ final class TopLevelBlockRecipeSupport {
             if (i > 0) {
                 indentedBody.append('\n');
             }
-            indentedBody.append("  ").append(lines[i]);
+            indentedBody.append(style.getIndentUnit()).append(lines[i]);
         }
 
-        return normalizedType + " {\n" + indentedBody + "\n}\n";
+        return style.withNewlines(normalizedType + " {\n" + indentedBody + "\n}\n");
+    }
+
+    private static final class ResolvedBlockOptions {
+        private final String blockType;
+        private final String blockBody;
+        private final String blockText;
+        private final String candidateType;
+        private final long candidateFingerprint;
+        private final ModuleMatcher moduleMatcher;
+
+        private ResolvedBlockOptions(String blockType,
+                                     String blockBody,
+                                     String blockText,
+                                     String candidateType,
+                                     long candidateFingerprint,
+                                     ModuleMatcher moduleMatcher) {
+            this.blockType = blockType;
+            this.blockBody = blockBody;
+            this.blockText = blockText;
+            this.candidateType = candidateType;
+            this.candidateFingerprint = candidateFingerprint;
+            this.moduleMatcher = moduleMatcher;
+        }
+
+        /**
+         * @return the block rendered in the given file style; the default rendering is reused
+         */
+        private String blockText(HclStyle style) {
+            boolean defaultLayout = HclStyle.DEFAULT.getIndentUnit().equals(style.getIndentUnit()) &&
+                                    HclStyle.DEFAULT.getNewline().equals(style.getNewline());
+            return defaultLayout ? blockText : renderBlockText(blockType, blockBody, style);
+        }
     }
 }
@@ -0,0 +1,168 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.hcl.tree.BodyContent;
+import org.openrewrite.hcl.tree.Expression;
+import org.openrewrite.hcl.tree.Hcl;
+
+import java.util.List;
+
+/**
+ * Unquoted values of the attributes of a block, collected in a single pass over its body.
+ * <p>
+ * Indexes are cached per block instance, so callers making many lookups on the same block
+ * extract its values once rather than once per lookup. Callers reading one or two attributes, such
+ * as {@link ModuleMatcher}, scan the body directly instead, which is cheaper than the cache lookup.
+ * A block edited by a recipe keeps its id but is a new tree instance and is indexed again. The
+ * cache holds blocks weakly, so indexes are freed with the trees they were built for.
+ */
+public final class AttributeIndex {
+
+    private static final WeakIdentityCache<Hcl.Block, AttributeIndex> INDEXES = new WeakIdentityCache<>();
+
+    private static final String[] NO_STRINGS = new String[0];
+
+    private static final AttributeIndex EMPTY = new AttributeIndex(NO_STRINGS, NO_STRINGS);
+
+    private final String[] names;
+    private final @Nullable String[] values;
+
+    private AttributeIndex(String[] names, @Nullable String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * Returns the attribute index of the block, building and caching it on first use.
+     *
+     * @param block the block to index
+     * @return the attribute index
+     */
+    public static AttributeIndex of(Hcl.Block block) {
+        AttributeIndex index = INDEXES.getIfPresent(block);
+        if (index != null) {
+            return index;
+        }
+        index = build(block);
+        if (index != EMPTY) {
+            INDEXES.put(block, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param name the simple attribute name
+     * @return {@code true} if the block declares the attribute
+     */
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Returns the value of an attribute with surrounding quotes removed.
+     *
+     * @param name the simple attribute name
+     * @return the attribute value, or {@code null} if the attribute is missing or its value is not
+     * a literal or a quoted string
+     */
+    public @Nullable String get(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? values[index] : null;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static AttributeIndex build(Hcl.Block block) {
+        List<BodyContent> body = block.getBody();
+        int count = 0;
+        for (int i = 0; i < body.size(); i++) {
+            if (body.get(i) instanceof Hcl.Attribute) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        String[] names = new String[count];
+        String[] values = new String[count];
+        int size = 0;
+        for (int i = 0; i < body.size(); i++) {
+            BodyContent content = body.get(i);
+            if (!(content instanceof Hcl.Attribute)) {
+                continue;
+            }
+            Hcl.Attribute attribute = (Hcl.Attribute) content;
+            String name = attribute.getSimpleName();
+            if (indexOf(names, size, name) >= 0) {
+                // Lookups return the first declaration.
+                continue;
+            }
+            names[size] = name;
+            values[size] = valueOf(block, attribute);
+            size++;
+        }
+        if (size < count) {
+            String[] trimmedNames = new String[size];
+            String[] trimmedValues = new String[size];
+            System.arraycopy(names, 0, trimmedNames, 0, size);
+            System.arraycopy(values, 0, trimmedValues, 0, size);
+            names = trimmedNames;
+            values = trimmedValues;
+        }
+        return new AttributeIndex(names, values);
+    }
+
+    private static int indexOf(String[] names, int size, String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param block     the block declaring the attribute
+     * @param attribute an attribute of the block
+     * @return the unquoted attribute value, or {@code null} if it is not a literal or a quoted string
+     */
+    static @Nullable String valueOf(Hcl.Block block, Hcl.Attribute attribute) {
+        String name = attribute.getSimpleName();
+        Expression value = attribute.getValue();
+        if (value instanceof Hcl.Literal) {
+            return ModuleBlockPredicates.removeQuotes(((Hcl.Literal) value).getValueSource());
+        }
+        if (value instanceof Hcl.QuotedTemplate) {
+            List<Expression> parts = ((Hcl.QuotedTemplate) value).getExpressions();
+            if (parts.size() == 1 && parts.get(0) instanceof Hcl.Literal) {
+                return ModuleBlockPredicates.removeQuotes(((Hcl.Literal) parts.get(0)).getValueSource());
+            }
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < parts.size(); i++) {
+                if (!(parts.get(i) instanceof Hcl.Literal)) {
+                    return fallbackValueOf(block, name);
+                }
+                text.append(((Hcl.Literal) parts.get(i)).getValueSource());
+            }
+            return ModuleBlockPredicates.removeQuotes(text.toString());
+        }
+        return fallbackValueOf(block, name);
+    }
+
+    private static @Nullable String fallbackValueOf(Hcl.Block block, String name) {
+        Object value = block.getAttributeValue(name);
+        return value instanceof String ? ModuleBlockPredicates.removeQuotes((String) value) : null;
+    }
+}
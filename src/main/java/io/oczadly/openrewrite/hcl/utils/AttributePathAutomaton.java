@@ -0,0 +1,350 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deterministic automaton matching the attributes and list elements of an HCL value against a
+ * set of attribute paths such as {@code records.*.value}, {@code zones.*.ips[*]} or
+ * {@code **.value}.
+ * <p>
+ * A path is a dot-separated list of steps matched from the root of a value:
+ * <ul>
+ *     <li>{@code name} or {@code "quoted.name"} matches the object key {@code name}</li>
+ *     <li>{@code *} matches any object key</li>
+ *     <li>{@code **} matches any number of object keys and list elements, including none</li>
+ *     <li>{@code [*]} and {@code [n]}, after a step or at the start of the path, match any list
+ *     element and the element at index {@code n}</li>
+ * </ul>
+ * All paths are compiled into one automaton up front, so a single walk of a value finds the nodes
+ * matched by any of the paths, and the walk can skip subtrees that no path reaches.
+ */
+public final class AttributePathAutomaton {
+
+    private static final int MAX_STATES = 4096;
+
+    private final State start;
+
+    private AttributePathAutomaton(State start) {
+        this.start = start;
+    }
+
+    /**
+     * @param paths the attribute paths
+     * @return the automaton matching any of the paths
+     * @throws IllegalArgumentException if a path is invalid or the paths are too complex to compile
+     */
+    public static AttributePathAutomaton compile(List<String> paths) {
+        List<Step[]> parsed = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            parsed.add(parse(path));
+        }
+        return new AttributePathAutomaton(new Builder(parsed).build());
+    }
+
+    /**
+     * @param path the attribute path
+     * @return {@code null} if the path is valid, otherwise the reason it is not
+     */
+    public static @Nullable String validate(String path) {
+        try {
+            parse(path);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * @return the state matching the root of a value
+     */
+    public State start() {
+        return start;
+    }
+
+    /**
+     * A set of positions in the compiled paths.
+     */
+    public static final class State {
+        private Map<String, State> keys = Collections.emptyMap();
+        private @Nullable State otherKey;
+        private Map<Integer, State> elements = Collections.emptyMap();
+        private @Nullable State otherElement;
+        private int acceptedPath = -1;
+
+        private State() {
+        }
+
+        /**
+         * @param key the unquoted object key
+         * @return the state of the attribute with the key, or {@code null} if no path continues
+         * through it
+         */
+        public @Nullable State onKey(String key) {
+            State next = keys.get(key);
+            return next != null ? next : otherKey;
+        }
+
+        /**
+         * @param index the list index
+         * @return the state of the list element, or {@code null} if no path continues through it
+         */
+        public @Nullable State onElement(int index) {
+            State next = elements.isEmpty() ? null : elements.get(index);
+            return next != null ? next : otherElement;
+        }
+
+        /**
+         * @return the index of the first path ending at this state, or {@code -1} if none does
+         */
+        public int acceptedPath() {
+            return acceptedPath;
+        }
+    }
+
+    private enum StepKind {
+        KEY,
+        ANY_KEY,
+        ANY_DEPTH,
+        ELEMENT,
+        ANY_ELEMENT
+    }
+
+    private static final class Step {
+        private static final Step ANY_KEY = new Step(StepKind.ANY_KEY, null, -1);
+        private static final Step ANY_DEPTH = new Step(StepKind.ANY_DEPTH, null, -1);
+        private static final Step ANY_ELEMENT = new Step(StepKind.ANY_ELEMENT, null, -1);
+
+        private final StepKind kind;
+        private final @Nullable String key;
+        private final int index;
+
+        private Step(StepKind kind, @Nullable String key, int index) {
+            this.kind = kind;
+            this.key = key;
+            this.index = index;
+        }
+    }
+
+    private static Step[] parse(String path) {
+        List<Step> steps = new ArrayList<>();
+        int length = path.length();
+        if (length == 0) {
+            throw invalid(path, "the path is empty");
+        }
+
+        int i = 0;
+        while (true) {
+            int stepStart = steps.size();
+            if (path.charAt(i) == '"') {
+                StringBuilder key = new StringBuilder();
+                i++;
+                while (i < length && path.charAt(i) != '"') {
+                    if (path.charAt(i) == '\\' && i + 1 < length) {
+                        i++;
+                    }
+                    key.append(path.charAt(i++));
+                }
+                if (i == length) {
+                    throw invalid(path, "unterminated quoted key");
+                }
+                i++;
+                steps.add(new Step(StepKind.KEY, key.toString(), -1));
+            } else if (path.startsWith("**", i)) {
+                steps.add(Step.ANY_DEPTH);
+                i += 2;
+            } else if (path.charAt(i) == '*') {
+                steps.add(Step.ANY_KEY);
+                i++;
+            } else {
+                int keyStart = i;
+                while (i < length && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                    char c = path.charAt(i);
+                    if (c == '*' || c == '"' || c == ']' || Character.isWhitespace(c)) {
+                        throw invalid(path, "unexpected '" + c + "' at offset " + i);
+                    }
+                    i++;
+                }
+                if (i > keyStart) {
+                    steps.add(new Step(StepKind.KEY, path.substring(keyStart, i), -1));
+                }
+            }
+
+            while (i < length && path.charAt(i) == '[') {
+                i++;
+                if (i < length && path.charAt(i) == '*') {
+                    steps.add(Step.ANY_ELEMENT);
+                    i++;
+                } else {
+                    int indexStart = i;
+                    while (i < length && path.charAt(i) >= '0' && path.charAt(i) <= '9') {
+                        i++;
+                    }
+                    if (i == indexStart || i - indexStart > 9) {
+                        throw invalid(path, "expected '*' or a list index at offset " + indexStart);
+                    }
+                    steps.add(new Step(StepKind.ELEMENT, null, Integer.parseInt(path.substring(indexStart, i))));
+                }
+                if (i == length || path.charAt(i) != ']') {
+                    throw invalid(path, "expected ']' at offset " + i);
+                }
+                i++;
+            }
+
+            if (steps.size() == stepStart) {
+                throw invalid(path, "empty step at offset " + i);
+            }
+            if (i == length) {
+                break;
+            }
+            if (path.charAt(i) != '.') {
+                throw invalid(path, "expected '.' at offset " + i);
+            }
+            if (++i == length) {
+                throw invalid(path, "the path ends with '.'");
+            }
+        }
+        return steps.toArray(new Step[0]);
+    }
+
+    private static IllegalArgumentException invalid(String path, String reason) {
+        return new IllegalArgumentException("Invalid attribute path '" + path + "': " + reason + ".");
+    }
+
+    /**
+     * Subset construction over the positions of all paths. Position {@code offsets[p] + i} is
+     * before step {@code i} of path {@code p}; {@code offsets[p] + steps.length} is its end.
+     */
+    private static final class Builder {
+        private final Step[][] steps;
+        private final int[] offsets;
+        private final int[] pathOf;
+        private final Map<BitSet, State> states = new HashMap<>();
+        private final Deque<BitSet> pending = new ArrayDeque<>();
+
+        private Builder(List<Step[]> paths) {
+            steps = paths.toArray(new Step[0][]);
+            offsets = new int[steps.length];
+            int positions = 0;
+            for (int p = 0; p < steps.length; p++) {
+                offsets[p] = positions;
+                positions += steps[p].length + 1;
+            }
+            pathOf = new int[positions];
+            for (int p = 0; p < steps.length; p++) {
+                for (int i = 0; i <= steps[p].length; i++) {
+                    pathOf[offsets[p] + i] = p;
+                }
+            }
+        }
+
+        private State build() {
+            BitSet initial = new BitSet();
+            for (int offset : offsets) {
+                initial.set(offset);
+            }
+            State start = stateOf(closure(initial));
+            while (!pending.isEmpty()) {
+                BitSet positions = pending.pop();
+                link(positions, states.get(positions));
+            }
+            return start;
+        }
+
+        private void link(BitSet positions, State state) {
+            Set<String> keys = new LinkedHashSet<>();
+            Set<Integer> indexes = new LinkedHashSet<>();
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                Step step = stepAt(position);
+                if (step == null) {
+                    if (state.acceptedPath < 0) {
+                        state.acceptedPath = pathOf[position];
+                    }
+                } else if (step.kind == StepKind.KEY) {
+                    keys.add(step.key);
+                } else if (step.kind == StepKind.ELEMENT) {
+                    indexes.add(step.index);
+                }
+            }
+
+            if (!keys.isEmpty()) {
+                state.keys = new HashMap<>();
+                for (String key : keys) {
+                    state.keys.put(key, next(positions, step -> step.kind == StepKind.KEY && key.equals(step.key) || step.kind == StepKind.ANY_KEY));
+                }
+            }
+            state.otherKey = next(positions, step -> step.kind == StepKind.ANY_KEY);
+            if (!indexes.isEmpty()) {
+                state.elements = new HashMap<>();
+                for (Integer index : indexes) {
+                    state.elements.put(index, next(positions, step -> step.kind == StepKind.ELEMENT && step.index == index || step.kind == StepKind.ANY_ELEMENT));
+                }
+            }
+            state.otherElement = next(positions, step -> step.kind == StepKind.ANY_ELEMENT);
+        }
+
+        /**
+         * @return the state after an edge advancing the positions whose step matches it; positions
+         * before {@code **} match every edge and stay where they are
+         */
+        private @Nullable State next(BitSet positions, StepMatcher matcher) {
+            BitSet next = new BitSet();
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                Step step = stepAt(position);
+                if (step == null) {
+                    continue;
+                }
+                if (step.kind == StepKind.ANY_DEPTH) {
+                    next.set(position);
+                } else if (matcher.matches(step)) {
+                    next.set(position + 1);
+                }
+            }
+            return next.isEmpty() ? null : stateOf(closure(next));
+        }
+
+        private BitSet closure(BitSet positions) {
+            // A ** step may match nothing, so the position after it is reachable as well.
+            for (int position = positions.nextSetBit(0); position >= 0; position = positions.nextSetBit(position + 1)) {
+                Step step = stepAt(position);
+                if (step != null && step.kind == StepKind.ANY_DEPTH) {
+                    positions.set(position + 1);
+                }
+            }
+            return positions;
+        }
+
+        private State stateOf(BitSet positions) {
+            State state = states.get(positions);
+            if (state == null) {
+                if (states.size() == MAX_STATES) {
+                    throw new IllegalArgumentException("Attribute paths are too complex to compile.");
+                }
+                state = new State();
+                states.put(positions, state);
+                pending.push(positions);
+            }
+            return state;
+        }
+
+        private @Nullable Step stepAt(int position) {
+            int path = pathOf[position];
+            int index = position - offsets[path];
+            return index < steps[path].length ? steps[path][index] : null;
+        }
+    }
+
+    private interface StepMatcher {
+        boolean matches(Step step);
+    }
+}
@@ -0,0 +1,166 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.hcl.tree.BodyContent;
+import org.openrewrite.hcl.tree.Expression;
+import org.openrewrite.hcl.tree.Hcl;
+import org.openrewrite.hcl.tree.Label;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Order-insensitive 64-bit structural hash of a block, used to detect whether a file already has
+ * a block equivalent to the one a recipe would add.
+ * <p>
+ * Two blocks have the same fingerprint when they have the same type and labels and the same
+ * attributes and nested blocks in any order; attribute and block type names are compared
+ * case-insensitively. Literals, identifiers, quoted strings, tuples and objects are hashed
+ * straight from the tree, so whitespace and comments between tokens are ignored while string
+ * contents are not, e.g. {@code "a b"} and {@code "ab"} differ. Other expressions, such as
+ * function calls and heredocs, are hashed from their {@link CanonicalHclWriter canonical form}.
+ * If an attribute is declared twice, the last declaration counts.
+ * <p>
+ * An instance reuses its canonical writer across blocks and is not thread-safe.
+ */
+public final class BlockFingerprint {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final long ATTRIBUTE = 0x6a09e667f3bcc909L;
+    private static final long BLOCK = 0xbb67ae8584caa73bL;
+    private static final long OTHER = 0x3c6ef372fe94f82bL;
+    private static final long LITERAL = 0xa54ff53a5f1d36f1L;
+    private static final long IDENTIFIER = 0x510e527fade682d1L;
+    private static final long TEMPLATE = 0x9b05688c2b3e6c1fL;
+    private static final long TUPLE = 0x1f83d9abfb41bd6bL;
+    private static final long OBJECT = 0x5be0cd19137e2179L;
+    private static final long CANONICAL = 0xcbbb9d5dc1059ed8L;
+
+    // Created on the first expression that is not hashed from the tree.
+    private @Nullable CanonicalHclWriter writer;
+
+    /**
+     * @param block the block
+     * @return the fingerprint of the block
+     */
+    public static long of(Hcl.Block block) {
+        return new BlockFingerprint().fingerprint(block);
+    }
+
+    /**
+     * @param block the block
+     * @return the fingerprint of the block
+     */
+    public long fingerprint(Hcl.Block block) {
+        long hash = mix(FNV_OFFSET, hash(typeOf(block)));
+        List<Label> labels = block.getLabels();
+        hash = mix(hash, labels.size());
+        for (int i = 0; i < labels.size(); i++) {
+            hash = mix(hash, hashTree(labels.get(i)));
+        }
+
+        // Elements are summed so that their order does not matter.
+        List<BodyContent> body = block.getBody();
+        long elements = 0;
+        int count = 0;
+        for (int i = 0; i < body.size(); i++) {
+            BodyContent content = body.get(i);
+            if (content instanceof Hcl.Attribute) {
+                Hcl.Attribute attribute = (Hcl.Attribute) content;
+                String name = attribute.getSimpleName();
+                if (isRedeclared(body, i, name)) {
+                    continue;
+                }
+                long value = hashTree(attribute.getValue());
+                elements += finish(mix(mix(ATTRIBUTE, hash(name.toLowerCase(Locale.ROOT))), value));
+            } else if (content instanceof Hcl.Block) {
+                elements += finish(mix(BLOCK, fingerprint((Hcl.Block) content)));
+            } else {
+                elements += finish(mix(OTHER, hashTree(content)));
+            }
+            count++;
+        }
+        return finish(mix(mix(hash, count), elements));
+    }
+
+    private long hashTree(Hcl tree) {
+        if (tree instanceof Hcl.Literal) {
+            return mix(LITERAL, hash(((Hcl.Literal) tree).getValueSource()));
+        }
+        if (tree instanceof Hcl.Identifier) {
+            return mix(IDENTIFIER, hash(((Hcl.Identifier) tree).getName()));
+        }
+        if (tree instanceof Hcl.VariableExpression) {
+            return mix(IDENTIFIER, hash(((Hcl.VariableExpression) tree).getName().getName()));
+        }
+        if (tree instanceof Hcl.QuotedTemplate) {
+            return hashSequence(TEMPLATE, ((Hcl.QuotedTemplate) tree).getExpressions());
+        }
+        if (tree instanceof Hcl.Tuple) {
+            return hashSequence(TUPLE, ((Hcl.Tuple) tree).getValues());
+        }
+        if (tree instanceof Hcl.ObjectValue) {
+            List<Expression> attributes = ((Hcl.ObjectValue) tree).getAttributes();
+            long hash = mix(OBJECT, attributes.size());
+            for (int i = 0; i < attributes.size(); i++) {
+                Expression element = attributes.get(i);
+                if (element instanceof Hcl.Attribute) {
+                    Hcl.Attribute attribute = (Hcl.Attribute) element;
+                    hash = mix(mix(hash, hashTree(attribute.getName())), hashTree(attribute.getValue()));
+                } else {
+                    hash = mix(hash, hashTree(element));
+                }
+            }
+            return hash;
+        }
+        CanonicalHclWriter canonical = writer;
+        if (canonical == null) {
+            canonical = writer = new CanonicalHclWriter();
+        }
+        return mix(CANONICAL, hash(canonical.write(tree)));
+    }
+
+    private long hashSequence(long kind, List<Expression> expressions) {
+        long hash = mix(kind, expressions.size());
+        for (int i = 0; i < expressions.size(); i++) {
+            hash = mix(hash, hashTree(expressions.get(i)));
+        }
+        return hash;
+    }
+
+    private static boolean isRedeclared(List<BodyContent> body, int index, String name) {
+        for (int i = index + 1; i < body.size(); i++) {
+            BodyContent content = body.get(i);
+            if (content instanceof Hcl.Attribute && ((Hcl.Attribute) content).getSimpleName().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String typeOf(Hcl.Block block) {
+        Hcl.Identifier type = block.getType();
+        return type == null ? "" : type.getName().toLowerCase(Locale.ROOT);
+    }
+
+    private static long hash(CharSequence text) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ finish(value)) * FNV_PRIME;
+    }
+
+    // SplitMix64 finalizer.
+    private static long finish(long value) {
+        value = (value ^ value >>> 30) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ value >>> 27) * 0x94d049bb133111ebL;
+        return value ^ value >>> 31;
+    }
+}
@@ -0,0 +1,72 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.PrintOutputCapture;
+import org.openrewrite.hcl.internal.HclPrinter;
+import org.openrewrite.hcl.tree.Hcl;
+import org.openrewrite.hcl.tree.Space;
+
+/**
+ * Writes the canonical form of an HCL tree: its tokens as printed, without the whitespace and
+ * comments between them. String and heredoc contents are kept as written, so {@code "a b"} and
+ * {@code "ab"} have different canonical forms.
+ * <p>
+ * The tree is written straight into a buffer that is reused across calls, so comparing or hashing
+ * trees does not print them to strings first. A writer is not thread-safe, and the text returned
+ * by {@link #write(Hcl)} is only valid until the next call.
+ */
+public final class CanonicalHclWriter {
+
+    private final StringBuilder buffer = new StringBuilder(256);
+    private final Capture capture = new Capture();
+
+    private final HclPrinter<Integer> printer = new HclPrinter<Integer>() {
+        @Override
+        public Space visitSpace(Space space, Space.Location loc, PrintOutputCapture<Integer> p) {
+            return space;
+        }
+    };
+
+    /**
+     * @param tree the tree to write
+     * @return the canonical form of the tree, backed by the reused buffer of this writer
+     */
+    public CharSequence write(Hcl tree) {
+        buffer.setLength(0);
+        printer.visit(tree, capture);
+        return buffer;
+    }
+
+    /**
+     * @param tree the tree to write
+     * @param text the text to look for
+     * @return {@code true} if the canonical form of the tree contains the text
+     */
+    public boolean contains(Hcl tree, String text) {
+        write(tree);
+        return buffer.indexOf(text) >= 0;
+    }
+
+    /**
+     * Routes printer output into the reused buffer.
+     */
+    private final class Capture extends PrintOutputCapture<Integer> {
+        private Capture() {
+            super(0);
+        }
+
+        @Override
+        public PrintOutputCapture<Integer> append(@Nullable String text) {
+            if (text != null) {
+                buffer.append(text);
+            }
+            return this;
+        }
+
+        @Override
+        public PrintOutputCapture<Integer> append(char c) {
+            buffer.append(c);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded concurrent cache with CLOCK (second-chance) eviction.
+ * <p>
+ * Lookups are lock-free and only flag the entry as recently used. Insertions and evictions are
+ * serialized on a single lock: the clock hand sweeps a fixed ring of slots, clearing the flag of
+ * recently used entries and evicting the first entry that was not used since the previous sweep.
+ * The cache is safe to share between threads, e.g. under OpenRewrite's parallel visiting.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class ClockCache<K, V> {
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Entry<K, V>> entries;
+    private final Object[] ring;
+    private final Object lock = new Object();
+    private int hand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ClockCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.ring = new Object[capacity];
+    }
+
+    /**
+     * Returns the cached value for the key, computing and caching it on a miss.
+     * <p>
+     * The function runs outside the cache lock and may be invoked more than once for the same
+     * key when threads race; only the first result is kept.
+     *
+     * @param key    the cache key
+     * @param loader computes the value for a missing key; must not return {@code null}
+     * @return the cached or freshly computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        return insert(key, value);
+    }
+
+    /**
+     * Associates the value with the key, replacing any cached value.
+     *
+     * @param key   the cache key
+     * @param value the value; must not be {@code null}
+     */
+    public void put(K key, V value) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            entry.value = value;
+            entry.referenced = true;
+            return;
+        }
+        synchronized (lock) {
+            entry = entries.get(key);
+            if (entry != null) {
+                entry.value = value;
+                return;
+            }
+            int slot = findFreeSlot();
+            entry = new Entry<>(key, value);
+            ring[slot] = entry;
+            entries.put(key, entry);
+        }
+    }
+
+    public @Nullable V getIfPresent(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return entry.value;
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            entries.clear();
+            for (int i = 0; i < ring.length; i++) {
+                ring[i] = null;
+            }
+            hand = 0;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ClockCache{size=" + size() + ", capacity=" + capacity +
+            ", hits=" + hitCount() + ", misses=" + missCount() + ", evictions=" + evictionCount() + "}";
+    }
+
+    private V insert(K key, V value) {
+        synchronized (lock) {
+            Entry<K, V> existing = entries.get(key);
+            if (existing != null) {
+                return existing.value;
+            }
+            int slot = findFreeSlot();
+            Entry<K, V> entry = new Entry<>(key, value);
+            ring[slot] = entry;
+            entries.put(key, entry);
+            return value;
+        }
+    }
+
+    private int findFreeSlot() {
+        while (true) {
+            int slot = hand;
+            hand = slot + 1 == capacity ? 0 : slot + 1;
+            @SuppressWarnings("unchecked")
+            Entry<K, V> candidate = (Entry<K, V>) ring[slot];
+            if (candidate == null) {
+                return slot;
+            }
+            if (candidate.referenced) {
+                candidate.referenced = false;
+                continue;
+            }
+            entries.remove(candidate.key, candidate);
+            evictions.increment();
+            return slot;
+        }
+    }
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private volatile V value;
+        private volatile boolean referenced;
+
+        private Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Evaluates one module version against many recipe version constraints at once.
+ * <p>
+ * The interval endpoints of all constraints split the version line into elementary segments,
+ * and the set of constraints covering each segment is precomputed. Matching a concrete version
+ * is then a single binary search over the sorted endpoints, i.e. {@code O(log N)} in the number
+ * of constraints, plus copying the precomputed bit set. Instances are immutable and may be shared
+ * between threads.
+ *
+ * <pre>{@code
+ * ConstraintSet constraints = ConstraintSet.of(List.of("~> 0.10", ">= 0.11.0", "!= 0.10.4"));
+ * BitSet matching = constraints.matching("0.10.4"); // {0}
+ * }</pre>
+ */
+public final class ConstraintSet {
+
+    private final CompiledConstraint[] constraints;
+    // boundaries[k] is the first version of segment k; segments before boundaries[0] match nothing.
+    private final long[] boundaries;
+    private final BitSet[] segments;
+
+    private ConstraintSet(CompiledConstraint[] constraints, long[] boundaries, BitSet[] segments) {
+        this.constraints = constraints;
+        this.boundaries = boundaries;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles the given constraint expressions into a set. Bit {@code i} of a match result
+     * refers to the {@code i}-th expression.
+     *
+     * @param constraints the constraint expressions
+     * @return the constraint set
+     * @throws IllegalArgumentException if any expression is not a valid constraint
+     */
+    public static ConstraintSet of(List<String> constraints) {
+        List<CompiledConstraint> compiled = new ArrayList<>(constraints.size());
+        for (String constraint : constraints) {
+            compiled.add(VersionConstraintMatcher.compile(constraint));
+        }
+        return ofCompiled(compiled);
+    }
+
+    /**
+     * Builds a set from already compiled constraints. Bit {@code i} of a match result refers to
+     * the {@code i}-th constraint.
+     *
+     * @param constraints the compiled constraints
+     * @return the constraint set
+     */
+    public static ConstraintSet ofCompiled(List<CompiledConstraint> constraints) {
+        CompiledConstraint[] compiled = constraints.toArray(new CompiledConstraint[0]);
+
+        int endpointCount = 0;
+        for (CompiledConstraint constraint : compiled) {
+            endpointCount += constraint.intervals().length;
+        }
+        long[] endpoints = new long[endpointCount];
+        int size = 0;
+        for (CompiledConstraint constraint : compiled) {
+            long[] intervals = constraint.intervals();
+            for (int i = 0; i < intervals.length; i += 2) {
+                endpoints[size++] = intervals[i];
+                // An interval ending at the largest ordinal has no exclusive upper boundary.
+                if (intervals[i + 1] != VersionConstraintMatcher.MAX_VERSION_ORDINAL) {
+                    endpoints[size++] = intervals[i + 1] + 1;
+                }
+            }
+        }
+        long[] boundaries = distinctSorted(endpoints, size);
+
+        BitSet[] segments = new BitSet[boundaries.length];
+        for (int k = 0; k < segments.length; k++) {
+            segments[k] = new BitSet(compiled.length);
+        }
+        for (int c = 0; c < compiled.length; c++) {
+            long[] intervals = compiled[c].intervals();
+            for (int i = 0; i < intervals.length; i += 2) {
+                int first = Arrays.binarySearch(boundaries, intervals[i]);
+                int last = intervals[i + 1] == VersionConstraintMatcher.MAX_VERSION_ORDINAL
+                    ? boundaries.length
+                    : Arrays.binarySearch(boundaries, intervals[i + 1] + 1);
+                for (int k = first; k < last; k++) {
+                    segments[k].set(c);
+                }
+            }
+        }
+        return new ConstraintSet(compiled, boundaries, segments);
+    }
+
+    public int size() {
+        return constraints.length;
+    }
+
+    public CompiledConstraint get(int index) {
+        return constraints[index];
+    }
+
+    /**
+     * Returns the constraints matched by a module {@code version} attribute value, using the same
+     * rules as {@link CompiledConstraint#matches(CharSequence)}.
+     *
+     * @param moduleVersionValue the module version value, may be {@code null}
+     * @return a new bit set with bit {@code i} set when the {@code i}-th constraint matches
+     */
+    public BitSet matching(@Nullable CharSequence moduleVersionValue) {
+        BitSet result = new BitSet(constraints.length);
+        if (moduleVersionValue == null) {
+            return result;
+        }
+        long[] moduleVersion = VersionConstraintMatcher.moduleVersionIntervals(moduleVersionValue);
+        for (int i = 0; i < moduleVersion.length; i += 2) {
+            int first = segmentOf(moduleVersion[i]);
+            int last = segmentOf(moduleVersion[i + 1]);
+            for (int k = Math.max(first, 0); k <= last; k++) {
+                result.or(segments[k]);
+            }
+        }
+        return result;
+    }
+
+    private int segmentOf(long version) {
+        int index = Arrays.binarySearch(boundaries, version);
+        // For a miss, the segment is the one starting at the greatest boundary below the version.
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static long[] distinctSorted(long[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+}
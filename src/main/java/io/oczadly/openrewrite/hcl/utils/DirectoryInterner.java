@@ -0,0 +1,144 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+
+import java.nio.file.Path;
+
+/**
+ * Assigns each source directory a dense {@code int} id, once per recipe run.
+ * <p>
+ * Scanning recipes record directories as ids in a {@link DirectorySet} or {@link DirectoryMap}
+ * instead of keeping the directory path strings of every scanned file. The interner of a run is
+ * shared by all recipes through the {@link ExecutionContext}, so each directory is interned once.
+ * Id {@code 0} is the directory of source paths without a parent.
+ * <p>
+ * Directories are looked up by the leading part of the source path string, up to the last name
+ * separator, so a lookup does not resolve the parent {@link Path} or allocate a key. Lookups read
+ * the table without locking; interning a new directory is serialized.
+ */
+public final class DirectoryInterner {
+
+    static final String RUN_INTERNER_KEY = "io.oczadly.openrewrite.hcl.directoryInterner";
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Open-addressing table, replaced as a whole when it grows.
+    private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+    private int size = 1;
+
+    /**
+     * Returns the interner of the run, creating it on first use.
+     *
+     * @param ctx the execution context of the run, or {@code null} outside a run
+     * @return the interner shared by the run
+     */
+    public static DirectoryInterner forRun(@Nullable ExecutionContext ctx) {
+        if (ctx == null) {
+            return new DirectoryInterner();
+        }
+        return ctx.computeMessageIfAbsent(RUN_INTERNER_KEY, key -> new DirectoryInterner());
+    }
+
+    /**
+     * @param sourcePath the source path of a file
+     * @return the id of the directory containing the file
+     */
+    public int idOf(Path sourcePath) {
+        String path = sourcePath.toString();
+        int end = directoryEnd(path, sourcePath.getFileSystem().getSeparator().charAt(0));
+        if (end < 0) {
+            return 0;
+        }
+        int hash = hash(path, end);
+        Entry[] entries = table;
+        int mask = entries.length - 1;
+        for (int slot = hash & mask; ; slot = slot + 1 & mask) {
+            Entry entry = entries[slot];
+            if (entry == null) {
+                // Not interned yet, or inserted by another thread and not visible here yet.
+                return intern(path, end, hash);
+            }
+            if (entry.matches(path, end, hash)) {
+                return entry.id;
+            }
+        }
+    }
+
+    /**
+     * @return the number of interned directories
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int intern(String path, int end, int hash) {
+        Entry[] entries = table;
+        int mask = entries.length - 1;
+        int slot = hash & mask;
+        for (Entry entry = entries[slot]; entry != null; entry = entries[slot]) {
+            if (entry.matches(path, end, hash)) {
+                return entry.id;
+            }
+            slot = slot + 1 & mask;
+        }
+
+        int id = size++;
+        entries[slot] = new Entry(path.substring(0, end), hash, id);
+        if (size * 2 > entries.length) {
+            entries = grow(entries);
+        }
+        // Publishes the new entry to lock-free lookups.
+        table = entries;
+        return id;
+    }
+
+    private static Entry[] grow(Entry[] entries) {
+        Entry[] grown = new Entry[entries.length * 2];
+        int mask = grown.length - 1;
+        for (Entry entry : entries) {
+            if (entry == null) {
+                continue;
+            }
+            int slot = entry.hash & mask;
+            while (grown[slot] != null) {
+                slot = slot + 1 & mask;
+            }
+            grown[slot] = entry;
+        }
+        return grown;
+    }
+
+    /**
+     * @return the length of the directory part of the path, or {@code -1} if it has none
+     */
+    private static int directoryEnd(String path, char separator) {
+        int end = path.lastIndexOf(separator);
+        // The parent of a file in the root directory is the root itself.
+        return end == 0 ? 1 : end;
+    }
+
+    private static int hash(String path, int end) {
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private static final class Entry {
+        private final String directory;
+        private final int hash;
+        private final int id;
+
+        private Entry(String directory, int hash, int id) {
+            this.directory = directory;
+            this.hash = hash;
+            this.id = id;
+        }
+
+        private boolean matches(String path, int end, int hash) {
+            return this.hash == hash && directory.length() == end && path.regionMatches(0, directory, 0, end);
+        }
+    }
+}
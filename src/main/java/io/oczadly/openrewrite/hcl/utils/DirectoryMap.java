@@ -0,0 +1,65 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe map from directory ids assigned by {@link DirectoryInterner} to values, stored in an
+ * array indexed by id.
+ * <p>
+ * Lookups are lock-free. Insertions and growing the array are serialized on a lock, so concurrent
+ * {@link #computeIfAbsent(int, Supplier)} calls for the same id return the same value.
+ *
+ * @param <V> value type
+ */
+public final class DirectoryMap<V> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<V> values = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    /**
+     * @param id the directory id
+     * @return the value of the directory, or {@code null} if there is none
+     */
+    public @Nullable V get(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Directory id must not be negative: " + id);
+        }
+        AtomicReferenceArray<V> current = values;
+        return id < current.length() ? current.get(id) : null;
+    }
+
+    /**
+     * Returns the value of the directory, creating and storing it on first use.
+     *
+     * @param id      the directory id
+     * @param factory creates the value of a directory without one
+     * @return the existing or created value
+     */
+    public V computeIfAbsent(int id, Supplier<? extends V> factory) {
+        V value = get(id);
+        if (value != null) {
+            return value;
+        }
+        synchronized (this) {
+            AtomicReferenceArray<V> current = values;
+            if (id < current.length() && (value = current.get(id)) != null) {
+                return value;
+            }
+            if (id >= current.length()) {
+                AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(Math.max(id + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                current = grown;
+            }
+            value = factory.get();
+            current.set(id, value);
+            values = current;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe set of directory ids assigned by {@link DirectoryInterner}, stored as a bitset.
+ * <p>
+ * Lookups are lock-free. Insertions of a new id and growing the bitset are serialized on a lock,
+ * so an id is never lost while the bitset is copied.
+ */
+public final class DirectorySet {
+
+    private static final int INITIAL_WORDS = 4;
+
+    private volatile AtomicLongArray words = new AtomicLongArray(INITIAL_WORDS);
+
+    /**
+     * @param id the directory id
+     */
+    public void add(int id) {
+        if (contains(id)) {
+            return;
+        }
+        synchronized (this) {
+            int word = id >>> 6;
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                current = grown;
+            }
+            current.set(word, current.get(word) | 1L << id);
+            words = current;
+        }
+    }
+
+    /**
+     * @param id the directory id
+     * @return {@code true} if the set contains the id
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Directory id must not be negative: " + id);
+        }
+        AtomicLongArray current = words;
+        int word = id >>> 6;
+        return word < current.length() && (current.get(word) & 1L << id) != 0;
+    }
+
+    /**
+     * @return {@code true} if the set contains no id
+     */
+    public boolean isEmpty() {
+        AtomicLongArray current = words;
+        for (int i = 0; i < current.length(); i++) {
+            if (current.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,467 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled {@code glob:} pattern matching source paths split into segments.
+ * <p>
+ * Matchers are compiled once per pattern and cached, and match with the semantics of the default
+ * file system's {@code glob:} {@link PathMatcher}: {@code *}, {@code ?} and {@code [...]} stay
+ * within a segment, a {@code **} segment spans one or more segments and {@code {a,b}} selects an
+ * alternative. Like the recipes always did, a pattern starting with {@code **}{@code /} also matches
+ * paths without a parent directory, e.g. {@code **}{@code /main.tf} matches {@code main.tf}.
+ * <p>
+ * Patterns whose wildcards cross segment boundaries, e.g. {@code a**} or {@code {a/b,c}}, and all
+ * patterns on file systems not separating names with {@code /}, are delegated to the JDK matcher.
+ */
+public final class GlobMatcher {
+
+    private static final int CACHE_CAPACITY = 256;
+
+    private static final ClockCache<String, GlobMatcher> MATCHERS = new ClockCache<>(CACHE_CAPACITY);
+
+    private static final String ROOT_PREFIX = "**/";
+
+    private static final int MAX_ALTERNATIVES = 256;
+
+    private static final int ANY_CHAR = -1;
+    private static final int ANY_CHARS = -2;
+    private static final int FIRST_CLASS = -3;
+
+    private final String pattern;
+    private final PathMatcher pathMatcher;
+    // Null if the pattern is delegated to pathMatcher.
+    private final Segment @Nullable [] segments;
+    private final @Nullable GlobMatcher rootMatcher;
+
+    private GlobMatcher(String pattern, boolean rootFallback) {
+        // Also validates the pattern, failing with the JDK's PatternSyntaxException.
+        this.pattern = pattern;
+        this.pathMatcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        this.segments = File.separatorChar == '/' ? new Parser(pattern).parse() : null;
+        this.rootMatcher = rootFallback && pattern.startsWith(ROOT_PREFIX) ?
+            new GlobMatcher(pattern.substring(ROOT_PREFIX.length()), false) : null;
+    }
+
+    /**
+     * Returns the compiled matcher of the pattern, compiling and caching it on first use.
+     *
+     * @param pattern the glob pattern, without the {@code glob:} prefix
+     * @return the compiled matcher
+     * @throws java.util.regex.PatternSyntaxException if the pattern is invalid
+     */
+    public static GlobMatcher of(String pattern) {
+        return MATCHERS.computeIfAbsent(pattern, p -> new GlobMatcher(p, true));
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @param path the path, separated by {@code /}
+     * @return {@code true} if the pattern matches the path
+     */
+    public boolean matches(String path) {
+        return matches(segmentsOf(path));
+    }
+
+    /**
+     * Matches a path split by {@link #segmentsOf(String)}, so callers matching the same path against
+     * several patterns split it once.
+     *
+     * @param path the path segments
+     * @return {@code true} if the pattern matches the path
+     */
+    public boolean matches(String[] path) {
+        if (matchesPath(path)) {
+            return true;
+        }
+        return rootMatcher != null && hasNoParent(path) && rootMatcher.matchesPath(path);
+    }
+
+    private boolean matchesPath(String[] path) {
+        Segment[] compiled = segments;
+        if (compiled == null) {
+            return pathMatcher.matches(Paths.get(String.join("/", path)));
+        }
+        return matchSegments(compiled, 0, path, 0);
+    }
+
+    /**
+     * Splits a path into its segments the way the default file system normalizes it: redundant and
+     * trailing {@code /} are ignored and an absolute path starts with an empty segment.
+     *
+     * @param path the path, separated by {@code /}
+     * @return the path segments
+     * @throws InvalidPathException if the path contains a NUL character
+     */
+    public static String[] segmentsOf(String path) {
+        if (path.indexOf('\0') >= 0) {
+            throw new InvalidPathException(path, "Nul character not allowed");
+        }
+        boolean absolute = path.startsWith("/");
+        int count = absolute ? 1 : 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) != '/' && (i == 0 || path.charAt(i - 1) == '/')) {
+                count++;
+            }
+        }
+        if (count == 0 || absolute && count == 1) {
+            // The empty path, or the root "/" itself.
+            return absolute ? new String[]{"", ""} : new String[]{""};
+        }
+
+        String[] segments = new String[count];
+        int size = 0;
+        if (absolute) {
+            segments[size++] = "";
+        }
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                segments[size++] = path.substring(start, end);
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static boolean hasNoParent(String[] path) {
+        return path.length == 1 || path.length == 2 && path[0].isEmpty() && path[1].isEmpty();
+    }
+
+    private static boolean matchSegments(Segment[] pattern, int p, String[] path, int s) {
+        while (p < pattern.length) {
+            Segment segment = pattern[p];
+            if (segment.anySegments) {
+                // "**" is ".*": one or more whole segments, none containing a line terminator.
+                for (int next = s + 1; next <= path.length; next++) {
+                    if (hasLineTerminator(path[next - 1])) {
+                        return false;
+                    }
+                    if (matchSegments(pattern, p + 1, path, next)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (s == path.length || !segment.matches(path[s])) {
+                return false;
+            }
+            p++;
+            s++;
+        }
+        return s == path.length;
+    }
+
+    private static boolean hasLineTerminator(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "GlobMatcher{" + pattern + "}";
+    }
+
+    private static final class Segment {
+        private static final Segment ANY_SEGMENTS = new Segment(true, new int[0][], new char[0][]);
+
+        private final boolean anySegments;
+        // Alternatives of the segment; each is a sequence of characters, ANY_CHAR, ANY_CHARS or classes.
+        private final int[][] alternatives;
+        // Character classes referenced by FIRST_CLASS - index: optional '!', then pairs of range bounds.
+        private final char[][] classes;
+
+        private Segment(boolean anySegments, int[][] alternatives, char[][] classes) {
+            this.anySegments = anySegments;
+            this.alternatives = alternatives;
+            this.classes = classes;
+        }
+
+        private boolean matches(String name) {
+            for (int[] alternative : alternatives) {
+                if (matches(alternative, name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Greedy matching backtracking to the last '*'; '?' and classes consume a code point, as in the
+        // JDK's regex, while literals are never surrogates (such patterns are delegated).
+        private boolean matches(int[] ops, String name) {
+            int p = 0;
+            int n = 0;
+            int starP = -1;
+            int starN = 0;
+            while (n < name.length()) {
+                if (p < ops.length && ops[p] == ANY_CHARS) {
+                    starP = p++;
+                    starN = n;
+                    continue;
+                }
+                if (p < ops.length) {
+                    int c = name.codePointAt(n);
+                    if (matchesCodePoint(ops[p], c)) {
+                        p++;
+                        n += Character.charCount(c);
+                        continue;
+                    }
+                }
+                if (starP < 0) {
+                    return false;
+                }
+                p = starP + 1;
+                starN += Character.charCount(name.codePointAt(starN));
+                n = starN;
+            }
+            while (p < ops.length && ops[p] == ANY_CHARS) {
+                p++;
+            }
+            return p == ops.length;
+        }
+
+        private boolean matchesCodePoint(int op, int c) {
+            if (op >= 0) {
+                return op == c;
+            }
+            if (op == ANY_CHAR) {
+                return true;
+            }
+            char[] characterClass = classes[FIRST_CLASS - op];
+            boolean negated = characterClass.length % 2 == 1;
+            boolean found = false;
+            for (int i = negated ? 1 : 0; i < characterClass.length; i += 2) {
+                if (c >= characterClass[i] && c <= characterClass[i + 1]) {
+                    found = true;
+                    break;
+                }
+            }
+            return found != negated;
+        }
+    }
+
+    /**
+     * Translates a pattern already validated by the JDK into segments, mirroring the JDK's glob to
+     * regex translation, or returns {@code null} for patterns to delegate.
+     */
+    private static final class Parser {
+        private final String pattern;
+        private final List<char[]> classes = new ArrayList<>();
+        private int index;
+
+        private Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        private Segment @Nullable [] parse() {
+            List<Segment> segments = new ArrayList<>();
+            int start = 0;
+            while (true) {
+                int end = segmentEnd(start);
+                if (end == -1) {
+                    return null;
+                }
+                String text = pattern.substring(start, end);
+                Segment segment;
+                if ("**".equals(text)) {
+                    segment = Segment.ANY_SEGMENTS;
+                } else if (text.contains("**")) {
+                    return null;
+                } else {
+                    classes.clear();
+                    segment = parseSegment(text);
+                    if (segment == null) {
+                        return null;
+                    }
+                }
+                segments.add(segment);
+                if (end == pattern.length()) {
+                    return segments.toArray(new Segment[0]);
+                }
+                start = end + 1;
+            }
+        }
+
+        // Returns the index of the '/' ending the segment, the pattern length, or -1 if a separator
+        // is escaped or inside a group.
+        private int segmentEnd(int start) {
+            boolean inGroup = false;
+            int i = start;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i++);
+                if (c == '\\') {
+                    if (i < pattern.length() && pattern.charAt(i) == '/') {
+                        return -1;
+                    }
+                    i++;
+                } else if (c == '[') {
+                    i = classEnd(i);
+                } else if (c == '{') {
+                    inGroup = true;
+                } else if (c == '}') {
+                    inGroup = false;
+                } else if (c == '/') {
+                    return inGroup ? -1 : i - 1;
+                }
+            }
+            return pattern.length();
+        }
+
+        private int classEnd(int i) {
+            int end = pattern.indexOf(']', i);
+            return end < 0 ? pattern.length() : end + 1;
+        }
+
+        private @Nullable Segment parseSegment(String text) {
+            List<List<Integer>> alternatives = new ArrayList<>();
+            alternatives.add(new ArrayList<>());
+            index = 0;
+            while (index < text.length()) {
+                if (text.charAt(index) == '{') {
+                    index++;
+                    List<List<Integer>> group = parseGroup(text);
+                    if (group == null || (long) alternatives.size() * group.size() > MAX_ALTERNATIVES) {
+                        return null;
+                    }
+                    List<List<Integer>> expanded = new ArrayList<>(alternatives.size() * group.size());
+                    for (List<Integer> alternative : alternatives) {
+                        for (List<Integer> option : group) {
+                            List<Integer> combined = new ArrayList<>(alternative);
+                            combined.addAll(option);
+                            expanded.add(combined);
+                        }
+                    }
+                    alternatives = expanded;
+                } else {
+                    Integer op = parseOp(text);
+                    if (op == null) {
+                        return null;
+                    }
+                    for (List<Integer> alternative : alternatives) {
+                        alternative.add(op);
+                    }
+                }
+            }
+            int[][] compiled = new int[alternatives.size()][];
+            for (int i = 0; i < compiled.length; i++) {
+                List<Integer> alternative = alternatives.get(i);
+                compiled[i] = new int[alternative.size()];
+                for (int j = 0; j < compiled[i].length; j++) {
+                    compiled[i][j] = alternative.get(j);
+                }
+            }
+            return new Segment(false, compiled, classes.toArray(new char[0][]));
+        }
+
+        private @Nullable List<List<Integer>> parseGroup(String text) {
+            List<List<Integer>> options = new ArrayList<>();
+            List<Integer> current = new ArrayList<>();
+            while (index < text.length()) {
+                char c = text.charAt(index);
+                if (c == '}') {
+                    index++;
+                    options.add(current);
+                    return options;
+                }
+                if (c == ',') {
+                    index++;
+                    options.add(current);
+                    current = new ArrayList<>();
+                    continue;
+                }
+                if (c == '{') {
+                    return null;
+                }
+                Integer op = parseOp(text);
+                if (op == null) {
+                    return null;
+                }
+                current.add(op);
+            }
+            return null;
+        }
+
+        private @Nullable Integer parseOp(String text) {
+            char c = text.charAt(index++);
+            switch (c) {
+                case '\\':
+                    return index < text.length() ? literal(text.charAt(index++)) : null;
+                case '*':
+                    return ANY_CHARS;
+                case '?':
+                    return ANY_CHAR;
+                case '[':
+                    return parseClass(text);
+                default:
+                    return literal(c);
+            }
+        }
+
+        private static @Nullable Integer literal(char c) {
+            return Character.isSurrogate(c) ? null : (int) c;
+        }
+
+        // Mirrors the JDK: a leading '!' negates, a leading '^' is literal, '-' is literal at the
+        // start or end, and the class ends at the first ']'.
+        private @Nullable Integer parseClass(String text) {
+            StringBuilder ranges = new StringBuilder();
+            boolean negated = false;
+            if (index < text.length() && text.charAt(index) == '^') {
+                ranges.append('^').append('^');
+                index++;
+            } else {
+                if (index < text.length() && text.charAt(index) == '!') {
+                    negated = true;
+                    index++;
+                }
+                if (index < text.length() && text.charAt(index) == '-') {
+                    ranges.append('-').append('-');
+                    index++;
+                }
+            }
+            boolean closed = false;
+            while (index < text.length()) {
+                char c = text.charAt(index++);
+                if (Character.isSurrogate(c)) {
+                    return null;
+                }
+                if (c == ']') {
+                    closed = true;
+                    break;
+                }
+                if (index < text.length() - 1 && text.charAt(index) == '-' && text.charAt(index + 1) != ']') {
+                    ranges.append(c).append(text.charAt(index + 1));
+                    index += 2;
+                } else {
+                    ranges.append(c).append(c);
+                }
+            }
+            if (!closed || ranges.length() == 0) {
+                return null;
+            }
+            String bounds = negated ? "!" + ranges : ranges.toString();
+            classes.add(bounds.toCharArray());
+            return FIRST_CLASS - (classes.size() - 1);
+        }
+    }
+}
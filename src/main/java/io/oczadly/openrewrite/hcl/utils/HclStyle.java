@@ -0,0 +1,114 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Formatting conventions of an HCL file, as detected by {@link HclStyleDetector}. Recipes use it to
+ * render inserted blocks and attributes the way the surrounding file is written.
+ */
+public final class HclStyle {
+
+    /**
+     * Conventions of {@code tofu fmt}/{@code terraform fmt}: two-space indentation, {@code \n}
+     * newlines, aligned {@code =} and a blank line between top-level blocks.
+     */
+    public static final HclStyle DEFAULT = new HclStyle("  ", "\n", true, true);
+
+    private final String indentUnit;
+    private final String newline;
+    private final boolean alignAssignments;
+    private final boolean blankLineBetweenBlocks;
+
+    HclStyle(String indentUnit, String newline, boolean alignAssignments, boolean blankLineBetweenBlocks) {
+        this.indentUnit = indentUnit;
+        this.newline = newline;
+        this.alignAssignments = alignAssignments;
+        this.blankLineBetweenBlocks = blankLineBetweenBlocks;
+    }
+
+    /**
+     * @return the indentation added per nesting level, e.g. two spaces or a tab
+     */
+    public String getIndentUnit() {
+        return indentUnit;
+    }
+
+    /**
+     * @return the line separator, {@code \n} or {@code \r\n}
+     */
+    public String getNewline() {
+        return newline;
+    }
+
+    /**
+     * @return {@code true} if the {@code =} of consecutive attributes are aligned
+     */
+    public boolean isAlignAssignments() {
+        return alignAssignments;
+    }
+
+    /**
+     * @return {@code true} if top-level blocks are separated by a blank line
+     */
+    public boolean isBlankLineBetweenBlocks() {
+        return blankLineBetweenBlocks;
+    }
+
+    /**
+     * @return the prefix of a top-level block appended after existing content
+     */
+    public String topLevelBlockSeparator() {
+        return blankLineBetweenBlocks ? newline + newline : newline;
+    }
+
+    /**
+     * Converts text rendered with {@code \n} line breaks to the newline style of the file.
+     *
+     * @param text the rendered text
+     * @return the text with this style's newlines
+     */
+    public String withNewlines(String text) {
+        return "\n".equals(newline) ? text : text.replace("\n", newline);
+    }
+
+    /**
+     * Returns the indentation of the line an element starts on.
+     *
+     * @param whitespace the prefix whitespace of the element
+     * @return the whitespace after the last line break, or {@code null} if the prefix has no line break
+     */
+    public static @Nullable String indentationOf(String whitespace) {
+        int newline = whitespace.lastIndexOf('\n');
+        return newline >= 0 ? whitespace.substring(newline + 1) : null;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HclStyle)) {
+            return false;
+        }
+        HclStyle that = (HclStyle) o;
+        return alignAssignments == that.alignAssignments &&
+               blankLineBetweenBlocks == that.blankLineBetweenBlocks &&
+               indentUnit.equals(that.indentUnit) &&
+               newline.equals(that.newline);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = indentUnit.hashCode();
+        result = 31 * result + newline.hashCode();
+        result = 31 * result + (alignAssignments ? 1 : 0);
+        return 31 * result + (blankLineBetweenBlocks ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "HclStyle{indentUnit='" + indentUnit.replace("\t", "\\t") + "', newline='" +
+            newline.replace("\r", "\\r").replace("\n", "\\n") + "', alignAssignments=" + alignAssignments +
+            ", blankLineBetweenBlocks=" + blankLineBetweenBlocks + "}";
+    }
+}
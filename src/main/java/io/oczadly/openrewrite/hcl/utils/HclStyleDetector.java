@@ -0,0 +1,153 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.openrewrite.hcl.tree.BodyContent;
+import org.openrewrite.hcl.tree.Hcl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects the {@link HclStyle} of a file in a single walk over its blocks and attributes.
+ * <p>
+ * Each convention is decided by majority over the evidence in the file, falling back to
+ * {@link HclStyle#DEFAULT} when there is none, e.g. the alignment of {@code =} is only decided by
+ * blocks with at least two attributes of different name lengths.
+ * <p>
+ * Results are cached per file instance, so every recipe editing the same file in a run reuses one
+ * detection; once a recipe edits the file, the edited instance is detected again. The cache holds
+ * files weakly, so styles are freed with their files.
+ */
+public final class HclStyleDetector {
+
+    private static final WeakIdentityCache<Hcl.ConfigFile, HclStyle> STYLES = new WeakIdentityCache<>();
+
+    private HclStyleDetector() {
+    }
+
+    /**
+     * Returns the style of the file, detecting and caching it on first use.
+     *
+     * @param configFile the file
+     * @return the detected style
+     */
+    public static HclStyle detect(Hcl.ConfigFile configFile) {
+        HclStyle style = STYLES.getIfPresent(configFile);
+        if (style != null) {
+            return style;
+        }
+        style = new Votes().collect(configFile);
+        STYLES.put(configFile, style);
+        return style;
+    }
+
+    private static final class Votes {
+        private final Map<String, Integer> indentUnits = new HashMap<>();
+        private int lf;
+        private int crlf;
+        private int aligned;
+        private int unaligned;
+        private int blankLines;
+        private int noBlankLines;
+
+        private HclStyle collect(Hcl.ConfigFile configFile) {
+            List<BodyContent> body = configFile.getBody();
+            for (int i = 0; i < body.size(); i++) {
+                BodyContent content = body.get(i);
+                String whitespace = content.getPrefix().getWhitespace();
+                countNewlines(whitespace);
+                if (i > 0 && content instanceof Hcl.Block) {
+                    if (lineBreaks(whitespace) >= 2) {
+                        blankLines++;
+                    } else {
+                        noBlankLines++;
+                    }
+                }
+                if (content instanceof Hcl.Block) {
+                    String indentation = HclStyle.indentationOf(whitespace);
+                    collect((Hcl.Block) content, indentation != null ? indentation : "");
+                }
+            }
+
+            HclStyle fallback = HclStyle.DEFAULT;
+            return new HclStyle(
+                indentUnit(fallback.getIndentUnit()),
+                crlf > lf ? "\r\n" : fallback.getNewline(),
+                aligned == unaligned ? fallback.isAlignAssignments() : aligned > unaligned,
+                blankLines == noBlankLines ? fallback.isBlankLineBetweenBlocks() : blankLines > noBlankLines
+            );
+        }
+
+        private void collect(Hcl.Block block, String blockIndentation) {
+            List<BodyContent> body = block.getBody();
+            int attributes = 0;
+            int nameLength = -1;
+            boolean differentNameLengths = false;
+            boolean paddedAssignment = false;
+
+            for (int i = 0; i < body.size(); i++) {
+                BodyContent content = body.get(i);
+                String whitespace = content.getPrefix().getWhitespace();
+                countNewlines(whitespace);
+
+                String indentation = HclStyle.indentationOf(whitespace);
+                if (indentation != null && indentation.length() > blockIndentation.length() && indentation.startsWith(blockIndentation)) {
+                    indentUnits.merge(indentation.substring(blockIndentation.length()), 1, Integer::sum);
+                }
+
+                if (content instanceof Hcl.Attribute) {
+                    Hcl.Attribute attribute = (Hcl.Attribute) content;
+                    int length = attribute.getSimpleName().length();
+                    differentNameLengths |= nameLength >= 0 && nameLength != length;
+                    nameLength = length;
+                    paddedAssignment |= attribute.getPadding().getType().getBefore().getWhitespace().length() > 1;
+                    attributes++;
+                } else if (content instanceof Hcl.Block) {
+                    collect((Hcl.Block) content, indentation != null ? indentation : blockIndentation);
+                }
+            }
+
+            if (attributes >= 2 && differentNameLengths) {
+                if (paddedAssignment) {
+                    aligned++;
+                } else {
+                    unaligned++;
+                }
+            }
+        }
+
+        private String indentUnit(String fallback) {
+            String unit = fallback;
+            int votes = 0;
+            for (Map.Entry<String, Integer> candidate : indentUnits.entrySet()) {
+                if (candidate.getValue() > votes || candidate.getValue() == votes && candidate.getKey().length() < unit.length()) {
+                    unit = candidate.getKey();
+                    votes = candidate.getValue();
+                }
+            }
+            return unit;
+        }
+
+        private void countNewlines(String whitespace) {
+            int index = whitespace.indexOf('\n');
+            while (index >= 0) {
+                if (index > 0 && whitespace.charAt(index - 1) == '\r') {
+                    crlf++;
+                } else {
+                    lf++;
+                }
+                index = whitespace.indexOf('\n', index + 1);
+            }
+        }
+
+        private static int lineBreaks(String whitespace) {
+            int count = 0;
+            for (int i = 0; i < whitespace.length(); i++) {
+                if (whitespace.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
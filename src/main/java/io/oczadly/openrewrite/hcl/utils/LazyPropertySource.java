@@ -0,0 +1,57 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Property source whose values are loaded into a flat map on the first lookup. Loading happens
+ * once, even under concurrent lookups; afterwards reads are plain map lookups.
+ */
+final class LazyPropertySource implements PropertySource {
+
+    private final Supplier<Map<String, String>> loader;
+    private volatile @Nullable Map<String, String> values;
+
+    LazyPropertySource(Supplier<Map<String, String>> loader) {
+        this.loader = loader;
+    }
+
+    static PropertySource environment(Map<String, String> variables) {
+        LazyPropertySource values = new LazyPropertySource(() -> new HashMap<>(variables));
+        return key -> {
+            String value = values.getProperty(key);
+            return value != null ? value : values.getProperty(environmentVariableName(key));
+        };
+    }
+
+    static String environmentVariableName(String key) {
+        StringBuilder name = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            name.append(Character.isLetterOrDigit(c) ? Character.toUpperCase(c) : '_');
+        }
+        return name.toString();
+    }
+
+    @Override
+    public @Nullable String getProperty(String key) {
+        return values().get(key);
+    }
+
+    private Map<String, String> values() {
+        Map<String, String> loaded = values;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = values;
+                if (loaded == null) {
+                    loaded = loader.get();
+                    values = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+}
@@ -11,8 +11,6 @@ public class ModuleBlockPredicates {
 
     private static final String MODULE_BLOCK_TYPE = "module";
 
-    private static final String QUOTE_REGEX = "^\"|\"$";
-
     /**
      * Checks if the HCL block is a {@code module} block with the specified name.
      * <p>
@@ -26,22 +24,12 @@ public class ModuleBlockPredicates {
      *
      * @param block the HCL block to check
      * @return {@code true} if the block matches, {@code false} otherwise
+     * @see ModuleMatcher for matching many blocks against the same filters
      */
     public static boolean matchesModuleName(Hcl.Block block, @Nullable String moduleName) {
         if (moduleName == null) return true;
 
-        return block.getLabels().stream()
-            .anyMatch(label -> {
-                if (label instanceof Hcl.QuotedTemplate) {
-                    return ((Hcl.QuotedTemplate) label).getExpressions().stream()
-                        .anyMatch(e -> e instanceof Hcl.Literal &&
-                            ((Hcl.Literal) e).getValueSource().equals("\"" + moduleName + "\""));
-                } else if (label instanceof Hcl.Literal) {
-                    String value = ((Hcl.Literal) label).getValueSource();
-                    return value.equals("\"" + moduleName + "\"") || value.equals(moduleName);
-                }
-                return false;
-            });
+        return ModuleMatcher.matchesName(block.getLabels(), moduleName, "\"" + moduleName + "\"");
     }
 
 
@@ -51,15 +39,12 @@ public class ModuleBlockPredicates {
      * @param block         the HCL block to search
      * @param attributeName the name of the attribute to retrieve
      * @return the attribute value as a string, or {@code null} if not found
+     * @see AttributeIndex for many lookups on the same block
      */
     public static @Nullable String getAttributeValue(Hcl.Block block, String attributeName) {
         for (BodyContent content : block.getBody()) {
-            if (content instanceof Hcl.Attribute) {
-                Hcl.Attribute attribute = (Hcl.Attribute) content;
-                if (attribute.getSimpleName().equals(attributeName)) {
-                    String value = block.getAttributeValue(attributeName);
-                    return value != null ? removeQuotes(value) : null;
-                }
+            if (content instanceof Hcl.Attribute && attributeName.equals(((Hcl.Attribute) content).getSimpleName())) {
+                return AttributeIndex.valueOf(block, (Hcl.Attribute) content);
             }
         }
         return null;
@@ -71,7 +56,9 @@ public class ModuleBlockPredicates {
      * @return the unquoted string
      */
     public static String removeQuotes(String value) {
-        return value.replaceAll(QUOTE_REGEX, "");
+        int start = !value.isEmpty() && value.charAt(0) == '"' ? 1 : 0;
+        int end = value.length() > start && value.charAt(value.length() - 1) == '"' ? value.length() - 1 : value.length();
+        return start == 0 && end == value.length() ? value : value.substring(start, end);
     }
 
     /**
@@ -81,18 +68,26 @@ public class ModuleBlockPredicates {
      * @return the detected indentation string (e.g., spaces or tabs)
      */
     public static String detectIndentation(Hcl.Block block) {
+        return detectIndentation(block, HclStyle.DEFAULT.getIndentUnit());
+    }
+
+    /**
+     * Detects the indentation style used in the given HCL block.
+     *
+     * @param block    the HCL block to analyze
+     * @param fallback the indentation to use if the block has no attributes on their own line
+     * @return the detected indentation string (e.g., spaces or tabs)
+     */
+    public static String detectIndentation(Hcl.Block block, String fallback) {
         for (BodyContent content : block.getBody()) {
             if (content instanceof Hcl.Attribute) {
-                Hcl.Attribute attribute = (Hcl.Attribute) content;
-
-                String prefix = attribute.getPrefix().getWhitespace();
-                int lastNewline = prefix.lastIndexOf('\n');
-                if (lastNewline >= 0) {
-                    return prefix.substring(lastNewline + 1);
+                String indentation = HclStyle.indentationOf(content.getPrefix().getWhitespace());
+                if (indentation != null) {
+                    return indentation;
                 }
             }
         }
-        return "  "; // Default to two spaces if no attributes are present
+        return fallback;
     }
 
     private ModuleBlockPredicates() {}
@@ -0,0 +1,165 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.hcl.tree.BodyContent;
+import org.openrewrite.hcl.tree.Expression;
+import org.openrewrite.hcl.tree.Hcl;
+import org.openrewrite.hcl.tree.Label;
+
+import java.util.List;
+
+/**
+ * Matches {@code module} blocks against resolved module name, source and version filters.
+ * <p>
+ * A matcher is built once per recipe run and reused for every block. Checks run from the cheapest
+ * and most selective to the most expensive: block type, module name label, {@code source}
+ * attribute and finally the {@code version} constraint. Filters that are {@code null} match any
+ * module. Instances are immutable and may be shared between threads.
+ *
+ * <pre>{@code
+ * ModuleMatcher matcher = ModuleMatcher.of("vnet", "Azure/avm-res-network-virtualnetwork/azurerm",
+ *     VersionConstraintMatcher.compile("~> 0.10"));
+ * boolean matches = matcher.matches(block);
+ * }</pre>
+ */
+public final class ModuleMatcher {
+
+    private static final String MODULE_BLOCK_TYPE = "module";
+    private static final String SOURCE_ATTRIBUTE = "source";
+    private static final String VERSION_ATTRIBUTE = "version";
+
+    private static final ModuleMatcher ANY = new ModuleMatcher(null, null, null);
+
+    private final @Nullable String moduleName;
+    // The module name as it appears in a quoted label's source, compared without concatenating per label.
+    private final @Nullable String quotedModuleName;
+    private final @Nullable String source;
+    private final @Nullable CompiledConstraint version;
+
+    private ModuleMatcher(@Nullable String moduleName, @Nullable String source, @Nullable CompiledConstraint version) {
+        this.moduleName = moduleName;
+        this.quotedModuleName = moduleName == null ? null : "\"" + moduleName + "\"";
+        this.source = source;
+        this.version = version;
+    }
+
+    /**
+     * @param moduleName the module name filter, or {@code null} to match any name
+     * @param source     the exact module source filter, or {@code null} to match any source
+     * @param version    the module version filter, or {@code null} to match any version
+     * @return the matcher
+     */
+    public static ModuleMatcher of(@Nullable String moduleName, @Nullable String source, @Nullable CompiledConstraint version) {
+        if (moduleName == null && source == null && version == null) {
+            return ANY;
+        }
+        return new ModuleMatcher(moduleName, source, version);
+    }
+
+    /**
+     * @return {@code true} if at least one of the name, source and version filters is set
+     */
+    public boolean hasFilters() {
+        return this != ANY;
+    }
+
+    /**
+     * @return {@code true} if the version filter can never be satisfied, so no block can match
+     */
+    public boolean isUnsatisfiable() {
+        return version != null && version.isEmpty();
+    }
+
+    /**
+     * Checks a single block.
+     *
+     * @param block the block to check
+     * @return {@code true} if the block is a {@code module} block matching every configured filter
+     */
+    public boolean matches(Hcl.Block block) {
+        Hcl.Identifier type = block.getType();
+        if (type == null || !MODULE_BLOCK_TYPE.equalsIgnoreCase(type.getName())) {
+            return false;
+        }
+        if (moduleName != null && !matchesName(block.getLabels(), moduleName, quotedModuleName)) {
+            return false;
+        }
+        if (source == null && version == null) {
+            return true;
+        }
+
+        // Module blocks have a handful of attributes, so one scan of the body is cheaper than an
+        // index. As in AttributeIndex, the first declaration of an attribute counts.
+        String sourceFilter = source;
+        boolean sourceFound = sourceFilter == null;
+        boolean versionFound = version == null;
+        String blockVersion = null;
+        List<BodyContent> body = block.getBody();
+        for (int i = 0; i < body.size() && !(sourceFound && versionFound); i++) {
+            if (!(body.get(i) instanceof Hcl.Attribute)) {
+                continue;
+            }
+            Hcl.Attribute attribute = (Hcl.Attribute) body.get(i);
+            String name = attribute.getSimpleName();
+            if (!sourceFound && SOURCE_ATTRIBUTE.equals(name)) {
+                if (!sourceFilter.equals(AttributeIndex.valueOf(block, attribute))) {
+                    return false;
+                }
+                sourceFound = true;
+            } else if (!versionFound && VERSION_ATTRIBUTE.equals(name)) {
+                blockVersion = AttributeIndex.valueOf(block, attribute);
+                versionFound = true;
+            }
+        }
+        if (!sourceFound) {
+            return false;
+        }
+        return version == null || version.matches(blockVersion);
+    }
+
+    /**
+     * Checks the top-level blocks of a file.
+     *
+     * @param configFile the file to check
+     * @return {@code true} if no filter is configured or any top-level block matches
+     */
+    public boolean matchesAny(Hcl.ConfigFile configFile) {
+        if (!hasFilters()) {
+            return true;
+        }
+        List<Hcl.Block> modules = TopLevelBlockIndex.of(configFile).blocks("module");
+        for (int i = 0; i < modules.size(); i++) {
+            if (matches(modules.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean matchesName(List<Label> labels, String moduleName, @Nullable String quotedModuleName) {
+        for (int i = 0; i < labels.size(); i++) {
+            Label label = labels.get(i);
+            if (label instanceof Hcl.QuotedTemplate) {
+                List<Expression> expressions = ((Hcl.QuotedTemplate) label).getExpressions();
+                for (int j = 0; j < expressions.size(); j++) {
+                    Expression expression = expressions.get(j);
+                    if (expression instanceof Hcl.Literal && ((Hcl.Literal) expression).getValueSource().equals(quotedModuleName)) {
+                        return true;
+                    }
+                }
+            } else if (label instanceof Hcl.Literal) {
+                String value = ((Hcl.Literal) label).getValueSource();
+                if (value.equals(quotedModuleName) || value.equals(moduleName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleMatcher{moduleName=" + moduleName + ", source=" + source + ", version=" + version + "}";
+    }
+}
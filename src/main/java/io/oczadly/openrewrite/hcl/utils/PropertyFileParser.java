@@ -0,0 +1,178 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLParser;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reads property files into flat key-value maps.
+ * <p>
+ * Nested YAML and JSON keys are joined with {@code .} and list elements are addressed as
+ * {@code key[0]}, so the file below defines {@code avm.vnet.location} and {@code avm.zones[1]}.
+ * Scalars are kept as text, and {@code null} values are left undefined.
+ *
+ * <pre>{@code
+ * avm:
+ *   vnet:
+ *     location: eastus2
+ *   zones:
+ *     - "1"
+ *     - "2"
+ * }</pre>
+ * <p>
+ * YAML and JSON are read with Jackson. Decimal numbers keep their digits, so {@code 1.10} stays
+ * {@code 1.10} rather than becoming {@code 1.1}. Jackson's tree model does not expand YAML aliases,
+ * so files using an alias such as {@code *name} are rejected rather than read with the wrong value.
+ */
+final class PropertyFileParser {
+
+    enum Format {
+        PROPERTIES,
+        YAML,
+        JSON
+    }
+
+    private static final ObjectMapper JSON_MAPPER = JsonMapper.builder()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, DeserializationFeature.FAIL_ON_TRAILING_TOKENS)
+        .disable(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES)
+        .build();
+
+    private static final ObjectMapper YAML_MAPPER = YAMLMapper.builder()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+        .disable(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES)
+        .build();
+
+    private PropertyFileParser() {
+    }
+
+    static Format formatOf(Path file) {
+        String name = file.getFileName() == null ? "" : file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".properties")) {
+            return Format.PROPERTIES;
+        }
+        if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+            return Format.YAML;
+        }
+        if (name.endsWith(".json")) {
+            return Format.JSON;
+        }
+        throw new IllegalArgumentException("Unsupported property file type: '" + file + "'. Expected .properties, .yaml, .yml or .json.");
+    }
+
+    static Map<String, String> parse(Path file, Format format) {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read property file: '" + file + "'", e);
+        }
+        try {
+            return parse(content, format);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("Failed to parse property file: '" + file + "'. " + e.getMessage(), e);
+        }
+    }
+
+    static Map<String, String> parse(String content, Format format) {
+        switch (format) {
+            case PROPERTIES:
+                return parseProperties(new StringReader(content));
+            case YAML:
+                Map<String, String> values = parseTree(content, YAML_MAPPER, "YAML");
+                rejectAliases(content);
+                return values;
+            default:
+                return parseTree(content, JSON_MAPPER, "JSON");
+        }
+    }
+
+    private static Map<String, String> parseProperties(Reader reader) {
+        Properties properties = new Properties();
+        try {
+            properties.load(reader);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        return values;
+    }
+
+    private static Map<String, String> parseTree(String content, ObjectMapper mapper, String formatName) {
+        JsonNode root;
+        try {
+            root = mapper.readTree(content);
+        } catch (JsonProcessingException e) {
+            throw malformed(formatName, e);
+        }
+
+        Map<String, String> values = new HashMap<>();
+        if (root == null || root.isMissingNode() || root.isNull()) {
+            return values;
+        }
+        if (!root.isObject()) {
+            throw new IllegalStateException("Malformed " + formatName + ": expected an object at the top level.");
+        }
+        flatten("", root, values);
+        return values;
+    }
+
+    /**
+     * Fails on the first alias of well-formed YAML content.
+     */
+    private static void rejectAliases(String content) {
+        try (YAMLParser parser = (YAMLParser) YAML_MAPPER.createParser(content)) {
+            while (parser.nextToken() != null) {
+                if (parser.isCurrentAlias()) {
+                    throw new IllegalStateException("Malformed YAML" + at(parser.currentTokenLocation()) + ": aliases are not supported.");
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw malformed("YAML", e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static IllegalStateException malformed(String formatName, JsonProcessingException e) {
+        return new IllegalStateException("Malformed " + formatName + at(e.getLocation()) + ": " + e.getOriginalMessage(), e);
+    }
+
+    private static String at(@Nullable JsonLocation location) {
+        return location != null ? " at line " + location.getLineNr() + ", column " + location.getColumnNr() : "";
+    }
+
+    private static void flatten(String key, JsonNode node, Map<String, String> values) {
+        if (node.isObject()) {
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                flatten(key.isEmpty() ? field.getKey() : key + "." + field.getKey(), field.getValue(), values);
+            }
+        } else if (node.isArray()) {
+            for (int i = 0; i < node.size(); i++) {
+                flatten(key + "[" + i + "]", node.get(i), values);
+            }
+        } else if (!node.isNull() && !node.isMissingNode()) {
+            values.put(key, node.isBigDecimal() ? node.decimalValue().toPlainString() : node.asText());
+        }
+    }
+}
@@ -7,7 +7,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
-import java.util.UUID;
 
 /**
  * Utility for resolving placeholders in recipe configuration fields.
@@ -21,239 +20,332 @@ public final class PropertyPlaceholderResolver {
     private PropertyPlaceholderResolver() {
     }
 
+    private static final int TEMPLATE_CACHE_CAPACITY = 1024;
+
+    private static final ClockCache<String, Template> TEMPLATES = new ClockCache<>(TEMPLATE_CACHE_CAPACITY);
+
     public static @Nullable String resolve(@Nullable String value) {
         return resolve(value, null);
     }
 
     public static @Nullable String resolve(@Nullable String value, @Nullable Properties properties) {
+        return resolveFrom(value, PropertySource.of(properties != null ? properties : System.getProperties()));
+    }
+
+    /**
+     * Resolves placeholders in a value against the given property source, typically the run
+     * snapshot from {@link PropertySource#forRun(org.openrewrite.ExecutionContext)}.
+     *
+     * @param value      the value to resolve, may be {@code null}
+     * @param properties the property source to resolve against
+     * @return the resolved value, or the value itself if it is {@code null} or blank
+     * @throws IllegalStateException if the value is malformed or a required placeholder cannot be resolved
+     */
+    public static @Nullable String resolveFrom(@Nullable String value, PropertySource properties) {
         if (value == null || value.trim().isEmpty()) {
             return value;
         }
+        return TEMPLATES.computeIfAbsent(value, PropertyPlaceholderResolver::compile).resolve(properties);
+    }
 
-        Properties effectiveProperties = properties != null ? properties : System.getProperties();
+    /**
+     * Parses a value into a reusable template of literal and placeholder segments.
+     * <p>
+     * Syntax errors such as unclosed or empty placeholders are reported here, once, rather than
+     * on every resolution.
+     *
+     * @param value the value to compile
+     * @return the compiled template
+     * @throws IllegalStateException if the value is not a valid placeholder expression
+     */
+    public static Template compile(String value) {
+        return new Template(value, new TemplateParser(value).parse(0, value.length()));
+    }
 
-        if (!value.contains("${{")) {
-            ResolutionResult result = resolvePlaceholders(value, effectiveProperties, true);
-            if (!result.unresolvedKeys.isEmpty()) {
+    private static boolean isValidKey(String key) {
+        return !key.isEmpty() && !key.contains("${") && !key.contains("}");
+    }
+
+    /**
+     * A value compiled by {@link #compile(String)}. Resolving it appends each segment once, in order.
+     * Instances are immutable and may be shared between threads.
+     */
+    public static final class Template {
+        private final String source;
+        private final Segment[] segments;
+        private final @Nullable String constant;
+
+        private Template(String source, Segment[] segments) {
+            this.source = source;
+            this.segments = segments;
+            this.constant = constantOf(segments);
+        }
+
+        /**
+         * @return {@code true} if the template contains at least one property placeholder
+         */
+        public boolean hasPlaceholders() {
+            return constant == null;
+        }
+
+        /**
+         * Resolves the template against system properties.
+         *
+         * @return the resolved value
+         * @throws IllegalStateException if a placeholder without a default cannot be resolved
+         */
+        public String resolve() {
+            return resolve(PropertySource.of(System.getProperties()));
+        }
+
+        /**
+         * Resolves the template against the given property source.
+         *
+         * @param properties the property source to resolve against
+         * @return the resolved value
+         * @throws IllegalStateException if a placeholder without a default cannot be resolved
+         */
+        public String resolve(PropertySource properties) {
+            if (constant != null) {
+                return constant;
+            }
+
+            StringBuilder resolved = new StringBuilder(source.length());
+            Set<String> unresolvedKeys = appendResolved(segments, properties, resolved, true, null);
+            if (unresolvedKeys != null) {
                 throw new IllegalStateException(
-                    "Failed to resolve property placeholders in: '" + value + "' (unresolved keys: " + String.join(", ", result.unresolvedKeys) + ")"
+                    "Failed to resolve property placeholders in: '" + source + "' (unresolved keys: " + String.join(", ", unresolvedKeys) + ")"
                 );
             }
-            return result.resolved;
+            return resolved.toString();
         }
 
-        LiteralEscapeResult escapedValue = escapeLiteralTerraformPlaceholders(value);
-
-        ResolutionResult result = resolvePlaceholders(escapedValue.escapedInput, effectiveProperties, true);
-        if (!result.unresolvedKeys.isEmpty()) {
-            throw new IllegalStateException(
-                "Failed to resolve property placeholders in: '" + value + "' (unresolved keys: " + String.join(", ", result.unresolvedKeys) + ")"
-            );
+        @Override
+        public String toString() {
+            return source;
         }
-        return restoreLiteralTerraformPlaceholders(result.resolved, escapedValue.literals);
-    }
 
-    private static LiteralEscapeResult escapeLiteralTerraformPlaceholders(String input) {
-        StringBuilder escaped = new StringBuilder(input.length());
-        List<LiteralPlaceholder> literals = new ArrayList<>();
-        String tokenPrefix = createUniqueLiteralTokenPrefix(input);
-        int i = 0;
-
-        while (i < input.length()) {
-            if (input.startsWith("${{", i)) {
-                int end = findLiteralTerraformPlaceholderEnd(input, i);
-                if (end < 0) {
-                    throw new IllegalStateException("Failed to resolve property placeholders in: '" + input + "'");
+        private static @Nullable String constantOf(Segment[] segments) {
+            StringBuilder constant = new StringBuilder();
+            for (Segment segment : segments) {
+                if (segment.key != null) {
+                    return null;
                 }
-
-                String literalBody = input.substring(i + 3, end);
-                String token = tokenPrefix + literals.size() + "__";
-                literals.add(new LiteralPlaceholder(token, "${" + literalBody + "}"));
-                escaped.append(token);
-                i = end + 2;
-                continue;
+                constant.append(segment.text);
             }
-
-            escaped.append(input.charAt(i));
-            i++;
+            return constant.toString();
         }
 
-        return new LiteralEscapeResult(escaped.toString(), literals);
-    }
+        private static @Nullable Set<String> appendResolved(Segment[] segments,
+                                                            PropertySource properties,
+                                                            StringBuilder resolved,
+                                                            boolean failOnUnresolved,
+                                                            @Nullable Set<String> unresolvedKeys) {
+            for (Segment segment : segments) {
+                if (segment.key == null) {
+                    resolved.append(segment.text);
+                    continue;
+                }
 
-    private static int findLiteralTerraformPlaceholderEnd(String input, int start) {
-        int nesting = 1;
-        for (int i = start + 3; i < input.length() - 1; i++) {
-            if (input.startsWith("${{", i)) {
-                nesting++;
-                i += 2;
-                continue;
-            }
-            if (input.startsWith("}}", i)) {
-                nesting--;
-                if (nesting == 0) {
-                    return i;
+                String propertyValue = properties.getProperty(segment.key);
+                if (propertyValue != null) {
+                    resolved.append(propertyValue);
+                } else if (segment.defaultSegments != null) {
+                    // Resolve placeholders in defaults opportunistically; unresolved ${...}
+                    // literals are preserved for Terraform-style expressions.
+                    appendResolved(segment.defaultSegments, properties, resolved, false, null);
+                } else {
+                    if (failOnUnresolved) {
+                        if (unresolvedKeys == null) {
+                            unresolvedKeys = new LinkedHashSet<>();
+                        }
+                        unresolvedKeys.add(segment.key);
+                    }
+                    resolved.append(segment.text);
                 }
-                i++;
             }
+            return unresolvedKeys;
         }
-        return -1;
     }
 
-    private static String restoreLiteralTerraformPlaceholders(String resolved, List<LiteralPlaceholder> literals) {
-        String restored = resolved;
-        for (LiteralPlaceholder literal : literals) {
-            restored = restored.replace(literal.token, literal.literalValue);
+    /**
+     * Either a literal ({@code key == null}) or a placeholder, whose {@code text} is the raw
+     * placeholder kept when it cannot be resolved.
+     */
+    private static final class Segment {
+        private final String text;
+        private final @Nullable String key;
+        private final Segment @Nullable [] defaultSegments;
+
+        private Segment(String text, @Nullable String key, Segment @Nullable [] defaultSegments) {
+            this.text = text;
+            this.key = key;
+            this.defaultSegments = defaultSegments;
         }
-        return restored;
     }
 
-    private static String createUniqueLiteralTokenPrefix(String input) {
-        String tokenPrefix;
-        do {
-            tokenPrefix = "__ORHCL_LITERAL_" + UUID.randomUUID().toString().replace('-', '_') + "_";
-        } while (input.contains(tokenPrefix));
-        return tokenPrefix;
-    }
+    /**
+     * Single left-to-right pass over the input. Terraform literals {@code ${{...}}} are opaque to
+     * placeholder parsing and are emitted as {@code ${...}} wherever they occur, including inside
+     * defaults, so no substitution or restoring pass is needed.
+     */
+    private static final class TemplateParser {
+        private final String input;
+
+        private TemplateParser(String input) {
+            this.input = input;
+        }
 
-    private static ResolutionResult resolvePlaceholders(String input, Properties properties, boolean failOnUnresolved) {
-        StringBuilder resolved = new StringBuilder(input.length());
-        Set<String> unresolvedKeys = new LinkedHashSet<>();
+        private Segment[] parse(int start, int end) {
+            List<Segment> segments = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
 
-        int cursor = 0;
-        while (cursor < input.length()) {
-            int placeholderStart = input.indexOf("${", cursor);
-            if (placeholderStart < 0) {
-                resolved.append(input.substring(cursor));
-                break;
-            }
+            int cursor = start;
+            while (cursor < end) {
+                int dollar = input.indexOf('$', cursor);
+                if (dollar < 0 || dollar >= end) {
+                    literal.append(input, cursor, end);
+                    break;
+                }
+                literal.append(input, cursor, dollar);
+                cursor = dollar;
 
-            resolved.append(input, cursor, placeholderStart);
+                if (input.startsWith("${{", cursor)) {
+                    cursor = appendTerraformLiteral(literal, cursor);
+                    continue;
+                }
+                if (!input.startsWith("${", cursor)) {
+                    literal.append('$');
+                    cursor++;
+                    continue;
+                }
 
-            int placeholderEnd = findPlaceholderEnd(input, placeholderStart);
-            if (placeholderEnd < 0) {
-                throw new IllegalStateException("Failed to resolve property placeholders in: '" + input + "'");
-            }
+                int placeholderEnd = findPlaceholderEnd(cursor, end);
+                if (placeholderEnd < 0) {
+                    throw failure(start, end);
+                }
+                int separator = findTopLevelSeparator(cursor + 2, placeholderEnd);
+                String key = input.substring(cursor + 2, separator < 0 ? placeholderEnd : separator).trim();
+                if (!isValidKey(key)) {
+                    throw failure(start, end);
+                }
+                Segment[] defaultSegments = separator < 0 ? null : parse(separator + 1, placeholderEnd);
 
-            String placeholderBody = input.substring(placeholderStart + 2, placeholderEnd);
-            PlaceholderParts parts = splitPlaceholderParts(placeholderBody);
-            if (!isValidKey(parts.key)) {
-                throw new IllegalStateException("Failed to resolve property placeholders in: '" + input + "'");
-            }
-            String propertyValue = properties.getProperty(parts.key);
-
-            if (propertyValue != null) {
-                resolved.append(propertyValue);
-            } else if (parts.defaultValue != null) {
-                // Resolve placeholders in defaults opportunistically; unresolved ${...}
-                // literals are preserved for Terraform-style expressions.
-                ResolutionResult defaultResolution = resolvePlaceholders(parts.defaultValue, properties, false);
-                resolved.append(defaultResolution.resolved);
-            } else {
-                if (failOnUnresolved) {
-                    unresolvedKeys.add(parts.key);
+                if (literal.length() > 0) {
+                    segments.add(new Segment(literal.toString(), null, null));
+                    literal.setLength(0);
                 }
-                resolved.append(input, placeholderStart, placeholderEnd + 1);
+                segments.add(new Segment(raw(cursor, placeholderEnd + 1), key, defaultSegments));
+                cursor = placeholderEnd + 1;
             }
 
-            cursor = placeholderEnd + 1;
+            if (literal.length() > 0) {
+                segments.add(new Segment(literal.toString(), null, null));
+            }
+            return segments.toArray(new Segment[0]);
         }
 
-        return new ResolutionResult(resolved.toString(), new ArrayList<>(unresolvedKeys));
-    }
+        /**
+         * Appends the Terraform literal starting at {@code start} as {@code ${...}}.
+         *
+         * @return the index just past its closing {@code }}}
+         */
+        private int appendTerraformLiteral(StringBuilder out, int start) {
+            int end = findTerraformLiteralEnd(start);
+            out.append("${").append(input, start + 3, end).append('}');
+            return end + 2;
+        }
 
-    private static int findPlaceholderEnd(String input, int start) {
-        int nesting = 0;
-        for (int i = start + 2; i < input.length(); i++) {
-            if (input.startsWith("${", i)) {
-                nesting++;
-                i++;
-                continue;
-            }
-            if (input.charAt(i) == '}') {
-                if (nesting == 0) {
-                    return i;
+        private int findTerraformLiteralEnd(int start) {
+            int nesting = 1;
+            for (int i = start + 3; i < input.length() - 1; i++) {
+                if (input.startsWith("${{", i)) {
+                    nesting++;
+                    i += 2;
+                    continue;
+                }
+                if (input.startsWith("}}", i)) {
+                    nesting--;
+                    if (nesting == 0) {
+                        return i;
+                    }
+                    i++;
                 }
-                nesting--;
             }
+            // An unclosed literal makes the whole value unreadable, so report it verbatim.
+            throw failure(input);
         }
-        return -1;
-    }
-
-    private static PlaceholderParts splitPlaceholderParts(String placeholderBody) {
-        int separator = findTopLevelSeparator(placeholderBody);
-        if (separator < 0) {
-            return new PlaceholderParts(placeholderBody.trim(), null);
-        }
-        String key = placeholderBody.substring(0, separator).trim();
-        String defaultValue = placeholderBody.substring(separator + 1);
-        return new PlaceholderParts(key, defaultValue);
-    }
 
-    private static int findTopLevelSeparator(String placeholderBody) {
-        int nesting = 0;
-        for (int i = 0; i < placeholderBody.length(); i++) {
-            if (placeholderBody.startsWith("${", i)) {
-                nesting++;
-                i++;
-                continue;
-            }
-            char current = placeholderBody.charAt(i);
-            if (current == '}') {
-                if (nesting > 0) {
+        private int findPlaceholderEnd(int start, int end) {
+            int nesting = 0;
+            for (int i = start + 2; i < end; i++) {
+                if (input.startsWith("${{", i)) {
+                    i = findTerraformLiteralEnd(i) + 1;
+                    continue;
+                }
+                if (input.startsWith("${", i)) {
+                    nesting++;
+                    i++;
+                    continue;
+                }
+                if (input.charAt(i) == '}') {
+                    if (nesting == 0) {
+                        return i;
+                    }
                     nesting--;
                 }
-                continue;
-            }
-            if (current == ':' && nesting == 0) {
-                return i;
             }
+            return -1;
         }
-        return -1;
-    }
-
-    private static boolean isValidKey(String key) {
-        return !key.trim().isEmpty() && !key.contains("${") && !key.contains("}");
-    }
-
-    private static final class PlaceholderParts {
-        private final String key;
-        private final @Nullable String defaultValue;
 
-        private PlaceholderParts(String key, @Nullable String defaultValue) {
-            this.key = key;
-            this.defaultValue = defaultValue;
+        private int findTopLevelSeparator(int start, int end) {
+            int nesting = 0;
+            for (int i = start; i < end; i++) {
+                if (input.startsWith("${{", i)) {
+                    i = findTerraformLiteralEnd(i) + 1;
+                    continue;
+                }
+                if (input.startsWith("${", i)) {
+                    nesting++;
+                    i++;
+                    continue;
+                }
+                char current = input.charAt(i);
+                if (current == '}') {
+                    if (nesting > 0) {
+                        nesting--;
+                    }
+                    continue;
+                }
+                if (current == ':' && nesting == 0) {
+                    return i;
+                }
+            }
+            return -1;
         }
-    }
-
-    private static final class LiteralPlaceholder {
-        private final String token;
-        private final String literalValue;
 
-        private LiteralPlaceholder(String token, String literalValue) {
-            this.token = token;
-            this.literalValue = literalValue;
+        /**
+         * @return the placeholder text kept when it cannot be resolved, with Terraform literals unescaped
+         */
+        private String raw(int start, int end) {
+            StringBuilder raw = new StringBuilder(end - start);
+            int cursor = start;
+            while (cursor < end) {
+                if (input.startsWith("${{", cursor)) {
+                    cursor = appendTerraformLiteral(raw, cursor);
+                } else {
+                    raw.append(input.charAt(cursor++));
+                }
+            }
+            return raw.toString();
         }
-    }
 
-    private static final class LiteralEscapeResult {
-        private final String escapedInput;
-        private final List<LiteralPlaceholder> literals;
-
-        private LiteralEscapeResult(String escapedInput, List<LiteralPlaceholder> literals) {
-            this.escapedInput = escapedInput;
-            this.literals = literals;
+        private IllegalStateException failure(int start, int end) {
+            return failure(raw(start, end));
         }
-    }
 
-    private static final class ResolutionResult {
-        private final String resolved;
-        private final List<String> unresolvedKeys;
-
-        private ResolutionResult(String resolved, List<String> unresolvedKeys) {
-            this.resolved = resolved;
-            this.unresolvedKeys = unresolvedKeys;
+        private static IllegalStateException failure(String displayed) {
+            return new IllegalStateException("Failed to resolve property placeholders in: '" + displayed + "'");
         }
     }
 }
-
@@ -0,0 +1,175 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Source of property values for placeholder resolution.
+ * <p>
+ * Recipes resolve placeholders against {@link #forRun(ExecutionContext)}, an immutable snapshot of
+ * the system properties taken once per recipe run. Reads from the snapshot are lock-free, and
+ * changes to system properties made while a run is in progress are not observed by that run.
+ * <p>
+ * Further sources can be layered behind the system properties with the {@value #SOURCES_PROPERTY}
+ * system property, a comma-separated list of {@code .properties}, {@code .yaml}/{@code .yml} and
+ * {@code .json} files and the keyword {@code env} for environment variables. Earlier entries take
+ * precedence, and each source is read on its first lookup, once per run:
+ *
+ * <pre>{@code
+ * -Dio.oczadly.openrewrite.hcl.propertySources=migration/prod.yaml,migration/defaults.properties,env
+ * }</pre>
+ */
+public interface PropertySource {
+
+    /**
+     * Execution context message under which the property source of a run is stored. Putting a
+     * source there before the run starts replaces the system property snapshot.
+     */
+    String RUN_SNAPSHOT_KEY = "io.oczadly.openrewrite.hcl.propertySource";
+
+    /**
+     * System property listing the sources layered behind the system properties of a run.
+     */
+    String SOURCES_PROPERTY = "io.oczadly.openrewrite.hcl.propertySources";
+
+    /**
+     * Keyword in {@link #SOURCES_PROPERTY} that stands for {@link #environment()}.
+     */
+    String ENVIRONMENT_SOURCE = "env";
+
+    /**
+     * @param key the property key
+     * @return the property value, or {@code null} if the property is not defined
+     */
+    @Nullable String getProperty(String key);
+
+    /**
+     * Returns a live view of the given properties; later changes to them are visible.
+     *
+     * @param properties the properties to read from
+     * @return the property source
+     */
+    static PropertySource of(Properties properties) {
+        return properties::getProperty;
+    }
+
+    /**
+     * Returns an immutable copy of the string properties defined in the given properties.
+     *
+     * @param properties the properties to copy
+     * @return the property source
+     */
+    static PropertySource snapshot(Properties properties) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        Map<String, String> snapshot = Collections.unmodifiableMap(values);
+        return snapshot::get;
+    }
+
+    /**
+     * @return an immutable copy of the current system properties
+     */
+    static PropertySource systemSnapshot() {
+        return snapshot(System.getProperties());
+    }
+
+    /**
+     * Returns a source that asks the given sources in order and returns the first defined value.
+     *
+     * @param sources the sources, highest precedence first
+     * @return the layered property source
+     */
+    static PropertySource layered(List<PropertySource> sources) {
+        PropertySource[] layers = sources.toArray(new PropertySource[0]);
+        return key -> {
+            for (PropertySource layer : layers) {
+                String value = layer.getProperty(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Returns a source backed by a {@code .properties}, {@code .yaml}/{@code .yml} or {@code .json}
+     * file. The file is read and flattened on the first lookup; nested YAML and JSON keys are joined
+     * with {@code .}, and list elements are addressed as {@code key[0]}.
+     *
+     * @param file the property file
+     * @return the property source
+     * @throws IllegalArgumentException if the file type is not supported
+     */
+    static PropertySource fromFile(Path file) {
+        PropertyFileParser.Format format = PropertyFileParser.formatOf(file);
+        return new LazyPropertySource(() -> PropertyFileParser.parse(file, format));
+    }
+
+    /**
+     * Returns a source backed by the environment variables, read on the first lookup. A key that is
+     * not defined as is also matches its conventional variable name, so {@code avm.vnet.parent_id}
+     * matches {@code AVM_VNET_PARENT_ID}.
+     *
+     * @return the property source
+     */
+    static PropertySource environment() {
+        return LazyPropertySource.environment(System.getenv());
+    }
+
+    /**
+     * Returns the given system properties followed by the sources they list in
+     * {@link #SOURCES_PROPERTY}, or just the system properties if none are listed.
+     *
+     * @param systemProperties the system properties of the run
+     * @return the property source of the run
+     * @throws IllegalArgumentException if a listed file type is not supported
+     */
+    static PropertySource configured(PropertySource systemProperties) {
+        String configuredSources = systemProperties.getProperty(SOURCES_PROPERTY);
+        if (configuredSources == null || configuredSources.trim().isEmpty()) {
+            return systemProperties;
+        }
+
+        List<PropertySource> layers = new ArrayList<>();
+        layers.add(systemProperties);
+        for (String entry : configuredSources.split(",")) {
+            String source = entry.trim();
+            if (source.isEmpty()) {
+                continue;
+            }
+            layers.add(ENVIRONMENT_SOURCE.equals(source.toLowerCase(Locale.ROOT)) ? environment() : fromFile(Paths.get(source)));
+        }
+        return layered(layers);
+    }
+
+    /**
+     * Returns the property source of the current recipe run, creating it on first use and storing
+     * it in the execution context so every recipe and visitor of the run sees the same values.
+     * It is the system property snapshot, followed by the sources listed in {@link #SOURCES_PROPERTY}.
+     *
+     * @param ctx the execution context of the run, or {@code null} to create a fresh source
+     * @return the property source of the run
+     */
+    static PropertySource forRun(@Nullable ExecutionContext ctx) {
+        if (ctx == null) {
+            return configured(systemSnapshot());
+        }
+        return ctx.computeMessageIfAbsent(RUN_SNAPSHOT_KEY, key -> configured(systemSnapshot()));
+    }
+}
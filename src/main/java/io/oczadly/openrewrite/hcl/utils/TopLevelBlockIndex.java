@@ -0,0 +1,236 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.hcl.tree.BodyContent;
+import org.openrewrite.hcl.tree.Expression;
+import org.openrewrite.hcl.tree.Hcl;
+import org.openrewrite.hcl.tree.Label;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Top-level blocks of a file by lower-cased type and by type and first label, e.g.
+ * {@code terraform}, {@code module "vnet"} or {@code provider "azurerm"}, plus the
+ * {@code required_providers} block of the first {@code terraform} block.
+ * <p>
+ * The {@link BlockFingerprint}s of the blocks of a type are hashed into a set on first use, so
+ * recipes adding a block check whether an equivalent block exists in constant time.
+ * <p>
+ * Indexes are built on first lookup and cached per body instance, so every recipe visiting the
+ * same file looks blocks up without scanning its body again, and a recipe replacing the body of the
+ * file gets a new index. The cache holds bodies weakly, so indexes are freed with their files.
+ */
+public final class TopLevelBlockIndex {
+
+    private static final WeakIdentityCache<List<BodyContent>, TopLevelBlockIndex> INDEXES = new WeakIdentityCache<>();
+
+    private final Map<String, List<Hcl.Block>> byType;
+    private final Map<String, List<Hcl.Block>> byTypeAndLabel;
+    private final Hcl.@Nullable Block requiredProviders;
+    private final ConcurrentHashMap<String, FingerprintSet> fingerprints = new ConcurrentHashMap<>();
+
+    private TopLevelBlockIndex(Map<String, List<Hcl.Block>> byType,
+                               Map<String, List<Hcl.Block>> byTypeAndLabel,
+                               Hcl.@Nullable Block requiredProviders) {
+        this.byType = byType;
+        this.byTypeAndLabel = byTypeAndLabel;
+        this.requiredProviders = requiredProviders;
+    }
+
+    /**
+     * Returns the index of the file, building and caching it on first use.
+     *
+     * @param configFile the file to index
+     * @return the top-level block index
+     */
+    public static TopLevelBlockIndex of(Hcl.ConfigFile configFile) {
+        List<BodyContent> body = configFile.getBody();
+        TopLevelBlockIndex index = INDEXES.getIfPresent(body);
+        if (index != null) {
+            return index;
+        }
+        index = build(body);
+        INDEXES.put(body, index);
+        return index;
+    }
+
+    /**
+     * @param type the block type, matched case-insensitively
+     * @return the top-level blocks of the type in file order
+     */
+    public List<Hcl.Block> blocks(String type) {
+        List<Hcl.Block> blocks = byType.get(type.toLowerCase(Locale.ROOT));
+        return blocks != null ? blocks : Collections.emptyList();
+    }
+
+    /**
+     * @param type  the block type, matched case-insensitively
+     * @param label the unquoted first label
+     * @return the top-level blocks of the type with the first label in file order
+     */
+    public List<Hcl.Block> blocks(String type, String label) {
+        List<Hcl.Block> blocks = byTypeAndLabel.get(key(type.toLowerCase(Locale.ROOT), label));
+        return blocks != null ? blocks : Collections.emptyList();
+    }
+
+    /**
+     * @param type the block type, matched case-insensitively
+     * @return the first top-level block of the type, or {@code null} if there is none
+     */
+    public Hcl.@Nullable Block first(String type) {
+        List<Hcl.Block> blocks = blocks(type);
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    /**
+     * @param type  the block type, matched case-insensitively
+     * @param label the unquoted first label
+     * @return {@code true} if the file has a top-level block of the type with the first label
+     */
+    public boolean contains(String type, String label) {
+        return !blocks(type, label).isEmpty();
+    }
+
+    /**
+     * @param type        the block type, matched case-insensitively
+     * @param fingerprint the {@link BlockFingerprint} of a block
+     * @return {@code true} if the file has a top-level block of the type with the fingerprint
+     */
+    public boolean containsFingerprint(String type, long fingerprint) {
+        return fingerprints
+            .computeIfAbsent(type.toLowerCase(Locale.ROOT), t -> new FingerprintSet(blocks(t)))
+            .contains(fingerprint);
+    }
+
+    /**
+     * @return the first {@code required_providers} block of the first {@code terraform} block, or
+     * {@code null} if there is none
+     */
+    public Hcl.@Nullable Block requiredProviders() {
+        return requiredProviders;
+    }
+
+    /**
+     * Returns the first label of a block with surrounding quotes removed.
+     *
+     * @param block the block
+     * @return the unquoted first label, or {@code null} if the block has no label or the label is
+     * an interpolated template
+     */
+    public static @Nullable String firstLabel(Hcl.Block block) {
+        if (block.getLabels().isEmpty()) {
+            return null;
+        }
+        Label label = block.getLabels().get(0);
+        if (label instanceof Hcl.Literal) {
+            return ModuleBlockPredicates.removeQuotes(((Hcl.Literal) label).getValueSource());
+        }
+        if (label instanceof Hcl.QuotedTemplate) {
+            List<Expression> expressions = ((Hcl.QuotedTemplate) label).getExpressions();
+            if (expressions.size() == 1 && expressions.get(0) instanceof Hcl.Literal) {
+                return ModuleBlockPredicates.removeQuotes(((Hcl.Literal) expressions.get(0)).getValueSource());
+            }
+        }
+        return null;
+    }
+
+    private static TopLevelBlockIndex build(List<BodyContent> body) {
+        Map<String, List<Hcl.Block>> byType = new HashMap<>();
+        Map<String, List<Hcl.Block>> byTypeAndLabel = new HashMap<>();
+        for (int i = 0; i < body.size(); i++) {
+            if (!(body.get(i) instanceof Hcl.Block)) {
+                continue;
+            }
+            Hcl.Block block = (Hcl.Block) body.get(i);
+            String type = typeOf(block);
+            byType.computeIfAbsent(type, k -> new ArrayList<>(1)).add(block);
+            String label = firstLabel(block);
+            if (label != null) {
+                byTypeAndLabel.computeIfAbsent(key(type, label), k -> new ArrayList<>(1)).add(block);
+            }
+        }
+
+        Hcl.Block requiredProviders = null;
+        List<Hcl.Block> terraformBlocks = byType.get("terraform");
+        if (terraformBlocks != null) {
+            for (BodyContent content : terraformBlocks.get(0).getBody()) {
+                if (content instanceof Hcl.Block && "required_providers".equals(typeOf((Hcl.Block) content))) {
+                    requiredProviders = (Hcl.Block) content;
+                    break;
+                }
+            }
+        }
+        return new TopLevelBlockIndex(unmodifiable(byType), unmodifiable(byTypeAndLabel), requiredProviders);
+    }
+
+    private static String typeOf(Hcl.Block block) {
+        Hcl.Identifier type = block.getType();
+        return type == null ? "" : type.getName().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String type, String label) {
+        return type + '\0' + label;
+    }
+
+    private static Map<String, List<Hcl.Block>> unmodifiable(Map<String, List<Hcl.Block>> blocks) {
+        for (Map.Entry<String, List<Hcl.Block>> entry : blocks.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(blocks);
+    }
+
+    /**
+     * Open-addressing hash set of block fingerprints.
+     */
+    private static final class FingerprintSet {
+        private final long[] table;
+        private final int mask;
+        // 0 marks empty slots, so a zero fingerprint is tracked separately.
+        private final boolean containsZero;
+
+        private FingerprintSet(List<Hcl.Block> blocks) {
+            int capacity = Integer.highestOneBit(Math.max(1, blocks.size()) * 2 - 1) << 1;
+            table = new long[capacity];
+            mask = capacity - 1;
+            boolean zero = false;
+            BlockFingerprint fingerprints = new BlockFingerprint();
+            for (int i = 0; i < blocks.size(); i++) {
+                long fingerprint = fingerprints.fingerprint(blocks.get(i));
+                if (fingerprint == 0) {
+                    zero = true;
+                    continue;
+                }
+                int slot = slotOf(fingerprint);
+                while (table[slot] != 0 && table[slot] != fingerprint) {
+                    slot = slot + 1 & mask;
+                }
+                table[slot] = fingerprint;
+            }
+            containsZero = zero;
+        }
+
+        private boolean contains(long fingerprint) {
+            if (fingerprint == 0) {
+                return containsZero;
+            }
+            int slot = slotOf(fingerprint);
+            while (table[slot] != 0) {
+                if (table[slot] == fingerprint) {
+                    return true;
+                }
+                slot = slot + 1 & mask;
+            }
+            return false;
+        }
+
+        private int slotOf(long fingerprint) {
+            return (int) (fingerprint ^ fingerprint >>> 32) & mask;
+        }
+    }
+}
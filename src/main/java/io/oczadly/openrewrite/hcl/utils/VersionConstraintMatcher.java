@@ -2,8 +2,7 @@ package io.oczadly.openrewrite.hcl.utils;
 
 import org.jspecify.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Minimal Terraform/OpenTofu-style semantic version constraint matcher.
@@ -11,22 +10,33 @@ import java.util.List;
 public final class VersionConstraintMatcher {
 
     public static final String INVALID_CONSTRAINT_MESSAGE = "'version' must be a valid semantic version constraint.";
+    public static final String UNSATISFIABLE_CONSTRAINT_MESSAGE = "'version' constraint can never be satisfied by any module version.";
+
+    // Largest ordinal a version can take; interval sets are bounded by it.
+    static final long MAX_VERSION_ORDINAL = Long.MAX_VALUE >>> 2;
+
+    private static final int MODULE_VERSION_CACHE_CAPACITY = 4096;
+
+    // Large estates repeat the same few hundred version strings across many module blocks, so
+    // parsed module versions are memoized by their raw attribute text.
+    private static final ClockCache<String, long[]> MODULE_VERSIONS = new ClockCache<>(MODULE_VERSION_CACHE_CAPACITY);
 
     private VersionConstraintMatcher() {
     }
 
-    public static boolean matches(String recipeConstraint, @Nullable String moduleVersionValue) {
-        Version moduleVersion = Version.parseModuleVersion(moduleVersionValue);
-        if (moduleVersion == null) {
-            return false;
-        }
+    public static boolean matches(String recipeConstraint, @Nullable CharSequence moduleVersionValue) {
+        return compile(recipeConstraint).matches(moduleVersionValue);
+    }
 
-        for (Constraint constraint : parseConstraints(recipeConstraint)) {
-            if (!constraint.matches(moduleVersion)) {
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Parses a recipe version constraint once so it can be evaluated against many module versions.
+     *
+     * @param recipeConstraint the constraint expression, e.g. {@code >= 0.10.0, < 0.11.0}
+     * @return the compiled constraint
+     * @throws IllegalArgumentException if the expression is not a valid constraint
+     */
+    public static CompiledConstraint compile(String recipeConstraint) {
+        return new CompiledConstraint(recipeConstraint, parseConstraints(recipeConstraint, 0, recipeConstraint.length()));
     }
 
     public static boolean isValidConstraint(@Nullable String recipeConstraint) {
@@ -34,223 +44,438 @@ public final class VersionConstraintMatcher {
             return false;
         }
         try {
-            parseConstraints(recipeConstraint);
+            parseConstraints(recipeConstraint, 0, recipeConstraint.length());
             return true;
         } catch (IllegalArgumentException e) {
             return false;
         }
     }
 
-    private static List<Constraint> parseConstraints(String expression) {
-        String[] parts = expression.split(",", -1);
-        List<Constraint> constraints = new ArrayList<>(parts.length);
-        for (String part : parts) {
-            String trimmed = part.trim();
-            if (trimmed.isEmpty()) {
-                throw new IllegalArgumentException("Empty version constraint");
-            }
-            constraints.addAll(parseConstraint(trimmed));
-        }
-        return constraints;
+    /**
+     * Checks whether a valid constraint admits at least one version, e.g. {@code >= 1.0.0, < 1.0.0} does not.
+     *
+     * @param recipeConstraint the constraint expression
+     * @return {@code true} if the expression is valid and some version satisfies it
+     */
+    public static boolean isSatisfiableConstraint(@Nullable String recipeConstraint) {
+        return isValidConstraint(recipeConstraint) && !compile(recipeConstraint).isEmpty();
     }
 
-    private static List<Constraint> parseConstraint(String expression) {
-        String operator;
-        String version;
-        if (expression.startsWith("~>")) {
-            operator = "~>";
-            version = expression.substring(2).trim();
-        } else if (expression.startsWith(">=") || expression.startsWith("<=") || expression.startsWith("!=")) {
-            operator = expression.substring(0, 2);
-            version = expression.substring(2).trim();
-        } else if (expression.startsWith(">") || expression.startsWith("<") || expression.startsWith("=")) {
-            operator = expression.substring(0, 1);
-            version = expression.substring(1).trim();
-        } else {
-            operator = "=";
-            version = expression;
-        }
-
-        Version parsedVersion = Version.parseConstraintVersion(version);
-        if (parsedVersion == null) {
-            throw new IllegalArgumentException("Invalid version constraint");
+    /**
+     * Returns the cache of parsed module {@code version} attribute values, e.g. to inspect its
+     * hit and miss counters.
+     *
+     * @return the shared module version cache
+     */
+    public static ClockCache<String, ?> moduleVersionCache() {
+        return MODULE_VERSIONS;
+    }
+
+    /**
+     * Returns the memoized interval set of a module {@code version} attribute value as flat
+     * inclusive {@code [low, high]} ordinal pairs. The returned array must not be modified.
+     */
+    static long[] moduleVersionIntervals(CharSequence moduleVersionValue) {
+        return MODULE_VERSIONS.computeIfAbsent(moduleVersionValue.toString(), VersionConstraintMatcher::parseModuleVersion);
+    }
+
+    /**
+     * Parses a module {@code version} attribute value into the versions it admits: a single point
+     * for a concrete version, the constraint's intervals for a value starting with an operator,
+     * and nothing for anything else.
+     */
+    private static long[] parseModuleVersion(String value) {
+        int start = Version.skipLeadingWhitespace(value, 0, value.length());
+        int end = Version.skipTrailingWhitespace(value, start, value.length());
+        if (start < end && value.charAt(start) == '"') {
+            start++;
         }
+        if (start < end && value.charAt(end - 1) == '"') {
+            end--;
+        }
+        start = Version.skipLeadingWhitespace(value, start, end);
+        end = Version.skipTrailingWhitespace(value, start, end);
 
-        List<Constraint> constraints = new ArrayList<>();
-        switch (operator) {
-            case "=":
-                constraints.add(new Constraint(Operator.EQUAL, parsedVersion));
-                break;
-            case "!=":
-                constraints.add(new Constraint(Operator.NOT_EQUAL, parsedVersion));
-                break;
-            case ">":
-                constraints.add(new Constraint(Operator.GREATER_THAN, parsedVersion));
-                break;
-            case ">=":
-                constraints.add(new Constraint(Operator.GREATER_THAN_OR_EQUAL, parsedVersion));
-                break;
-            case "<":
-                constraints.add(new Constraint(Operator.LESS_THAN, parsedVersion));
-                break;
-            case "<=":
-                constraints.add(new Constraint(Operator.LESS_THAN_OR_EQUAL, parsedVersion));
-                break;
-            case "~>":
-                constraints.add(new Constraint(Operator.GREATER_THAN_OR_EQUAL, parsedVersion));
-                constraints.add(new Constraint(Operator.LESS_THAN, parsedVersion.nextPessimisticUpperBound()));
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported version constraint operator");
-        }
-        return constraints;
+        long concrete = Version.parse(value, start, end);
+        if (concrete != Version.INVALID && Version.specifiedSegments(concrete) == 3) {
+            long ordinal = Version.ordinal(concrete);
+            return IntervalSet.of(ordinal, ordinal);
+        }
+        if (start >= end || !isOperatorStart(value.charAt(start))) {
+            return IntervalSet.EMPTY;
+        }
+        try {
+            return parseConstraints(value, start, end);
+        } catch (IllegalArgumentException e) {
+            return IntervalSet.EMPTY;
+        }
     }
 
-    private enum Operator {
-        EQUAL,
-        NOT_EQUAL,
-        GREATER_THAN,
-        GREATER_THAN_OR_EQUAL,
-        LESS_THAN,
-        LESS_THAN_OR_EQUAL
+    private static boolean isOperatorStart(char c) {
+        return c == '~' || c == '>' || c == '<' || c == '=' || c == '!';
     }
 
-    private static final class Constraint {
-        private final Operator operator;
-        private final Version version;
-
-        private Constraint(Operator operator, Version version) {
-            this.operator = operator;
-            this.version = version;
-        }
-
-        private boolean matches(Version candidate) {
-            int comparison = candidate.compareTo(version);
-            switch (operator) {
-                case EQUAL:
-                    return comparison == 0;
-                case NOT_EQUAL:
-                    return comparison != 0;
-                case GREATER_THAN:
-                    return comparison > 0;
-                case GREATER_THAN_OR_EQUAL:
-                    return comparison >= 0;
-                case LESS_THAN:
-                    return comparison < 0;
-                case LESS_THAN_OR_EQUAL:
-                    return comparison <= 0;
-                default:
-                    throw new IllegalStateException("Unhandled version constraint operator: " + operator);
+    private static long[] parseConstraints(CharSequence expression, int start, int end) {
+        long[] intervals = IntervalSet.ALL;
+        int partStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || expression.charAt(i) == ',') {
+                intervals = IntervalSet.intersect(intervals, parseConstraint(expression, partStart, i));
+                partStart = i + 1;
             }
         }
+        return intervals;
     }
 
-    private static final class Version implements Comparable<Version> {
-        private final int major;
-        private final int minor;
-        private final int patch;
-        private final int specifiedSegments;
+    private static long[] parseConstraint(CharSequence expression, int start, int end) {
+        start = Version.skipLeadingWhitespace(expression, start, end);
+        end = Version.skipTrailingWhitespace(expression, start, end);
+        if (start >= end) {
+            throw new IllegalArgumentException("Empty version constraint");
+        }
+
+        char first = expression.charAt(start);
+        char second = start + 1 < end ? expression.charAt(start + 1) : 0;
+        int operatorLength = Version.constraintOperatorLength(expression, start, end);
+        if (operatorLength == 0 && first == '!' && second == '=') {
+            operatorLength = 2;
+        }
+
+        long parsedVersion = Version.parse(expression, start + operatorLength, end);
+        if (parsedVersion == Version.INVALID) {
+            throw new IllegalArgumentException("Invalid version constraint");
+        }
 
-        private Version(int major, int minor, int patch, int specifiedSegments) {
-            this.major = major;
-            this.minor = minor;
-            this.patch = patch;
-            this.specifiedSegments = specifiedSegments;
+        long version = Version.ordinal(parsedVersion);
+        if (operatorLength == 0 || first == '=') {
+            return IntervalSet.of(version, version);
+        }
+        if (first == '!') {
+            return IntervalSet.union(IntervalSet.below(version), IntervalSet.above(version));
         }
+        if (first == '~') {
+            return IntervalSet.of(version, Version.ordinal(Version.nextPessimisticUpperBound(parsedVersion)) - 1);
+        }
+        if (first == '>') {
+            return operatorLength == 2 ? IntervalSet.of(version, IntervalSet.MAX) : IntervalSet.above(version);
+        }
+        return operatorLength == 2 ? IntervalSet.of(IntervalSet.MIN, version) : IntervalSet.below(version);
+    }
 
-        private static @Nullable Version parseConcrete(@Nullable String value) {
-            Version version = parseVersion(value);
-            return version != null && version.specifiedSegments == 3 ? version : null;
+    /**
+     * A recipe version constraint parsed by {@link #compile(String)}.
+     * <p>
+     * The constraint is normalized into a sorted set of disjoint version intervals, so checking
+     * a concrete version is a binary search and constraints can be intersected and compared for
+     * overlap. Instances are immutable and may be shared between threads; module version values
+     * are parsed once and memoized in {@link VersionConstraintMatcher#moduleVersionCache()}.
+     */
+    public static final class CompiledConstraint {
+        private final String expression;
+        private final long[] intervals;
+
+        private CompiledConstraint(String expression, long[] intervals) {
+            this.expression = expression;
+            this.intervals = intervals;
         }
 
         /**
-         * Parses a module version value used for matching against recipe constraints.
+         * Checks whether a module {@code version} attribute value satisfies this constraint.
          * <p>
-         * Accepted inputs are either a concrete version (e.g., {@code 0.3.5}) or selected
-         * single operator-prefixed values (for example {@code ~> 0.3.5}, {@code >= 0.3},
-         * {@code = 0.3.5}). For those supported prefixes, the operator is stripped and only the
-         * numeric part is parsed as the candidate version. Unsupported operators such as
-         * {@code !=} are treated as non-matching.
+         * A concrete version such as {@code 0.3.5} matches when it lies inside the constraint.
+         * A module version that is itself a constraint, such as {@code ~> 0.3} or
+         * {@code >= 0.3.0, < 0.4.0}, matches when at least one version satisfies both. The value
+         * may be passed either unquoted or as the raw literal source including the surrounding
+         * double quotes.
+         *
+         * @param moduleVersionValue the module version value, may be {@code null}
+         * @return {@code true} if the module version matches, {@code false} otherwise
          */
-        private static @Nullable Version parseModuleVersion(@Nullable String value) {
-            if (value == null) {
-                return null;
+        public boolean matches(@Nullable CharSequence moduleVersionValue) {
+            if (moduleVersionValue == null) {
+                return false;
+            }
+            long[] moduleVersion = moduleVersionIntervals(moduleVersionValue);
+            if (moduleVersion.length == 2 && moduleVersion[0] == moduleVersion[1]) {
+                return IntervalSet.contains(intervals, moduleVersion[0]);
             }
-            String trimmed = value.trim();
-            // Try concrete version first (e.g. "0.3.5")
-            Version concrete = parseConcrete(trimmed);
-            if (concrete != null) {
-                return concrete;
+            return IntervalSet.overlaps(intervals, moduleVersion);
+        }
+
+        /**
+         * @return {@code true} if no version can satisfy this constraint
+         */
+        public boolean isEmpty() {
+            return intervals.length == 0;
+        }
+
+        /**
+         * @param other another compiled constraint
+         * @return {@code true} if at least one version satisfies both constraints
+         */
+        public boolean overlaps(CompiledConstraint other) {
+            return IntervalSet.overlaps(intervals, other.intervals);
+        }
+
+        /**
+         * @param other another compiled constraint
+         * @return a constraint satisfied exactly by the versions satisfying both constraints
+         */
+        public CompiledConstraint intersect(CompiledConstraint other) {
+            return new CompiledConstraint(expression + ", " + other.expression, IntervalSet.intersect(intervals, other.intervals));
+        }
+
+        @Override
+        public String toString() {
+            return expression;
+        }
+
+        /**
+         * @return the normalized intervals as flat inclusive {@code [low, high]} ordinal pairs; must not be modified
+         */
+        long[] intervals() {
+            return intervals;
+        }
+    }
+
+    /**
+     * Operations on normalized interval sets over version ordinals. A set is stored as a flat
+     * array of inclusive {@code [low, high]} pairs, sorted, disjoint and non-adjacent.
+     */
+    private static final class IntervalSet {
+        private static final long MIN = 0L;
+        private static final long MAX = MAX_VERSION_ORDINAL;
+        private static final long[] EMPTY = new long[0];
+        private static final long[] ALL = {MIN, MAX};
+
+        private IntervalSet() {
+        }
+
+        private static long[] of(long low, long high) {
+            return low > high ? EMPTY : new long[]{low, high};
+        }
+
+        private static long[] below(long version) {
+            return version == MIN ? EMPTY : of(MIN, version - 1);
+        }
+
+        private static long[] above(long version) {
+            return version == MAX ? EMPTY : of(version + 1, MAX);
+        }
+
+        private static boolean contains(long[] intervals, long version) {
+            // Find the first interval whose upper bound is not below the version.
+            int low = 0;
+            int high = intervals.length / 2 - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (intervals[2 * mid + 1] < version) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
             }
-            // Strip a single constraint operator (e.g. "~> 0.3.5" -> "0.3.5", ">= 0.3" -> "0.3")
-            String stripped = stripConstraintOperator(trimmed);
-            if (stripped != null) {
-                return parseVersion(stripped.trim());
+            return low < intervals.length / 2 && intervals[2 * low] <= version;
+        }
+
+        private static long[] intersect(long[] left, long[] right) {
+            long[] result = new long[left.length + right.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.length && j < right.length) {
+                long low = Math.max(left[i], right[j]);
+                long high = Math.min(left[i + 1], right[j + 1]);
+                if (low <= high) {
+                    result[size++] = low;
+                    result[size++] = high;
+                }
+                if (left[i + 1] < right[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
             }
-            return null;
+            return size == 0 ? EMPTY : Arrays.copyOf(result, size);
         }
 
-        private static @Nullable String stripConstraintOperator(String value) {
-            if (value.startsWith("~>") || value.startsWith(">=") || value.startsWith("<=")) {
-                return value.substring(2).trim();
+        private static long[] union(long[] left, long[] right) {
+            long[] result = new long[left.length + right.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.length || j < right.length) {
+                long low;
+                long high;
+                if (j >= right.length || i < left.length && left[i] <= right[j]) {
+                    low = left[i];
+                    high = left[i + 1];
+                    i += 2;
+                } else {
+                    low = right[j];
+                    high = right[j + 1];
+                    j += 2;
+                }
+                if (size > 0 && low <= result[size - 1] + 1) {
+                    result[size - 1] = Math.max(result[size - 1], high);
+                } else {
+                    result[size++] = low;
+                    result[size++] = high;
+                }
             }
-            if (value.startsWith(">") || value.startsWith("<") || value.startsWith("=")) {
-                return value.substring(1).trim();
+            return Arrays.copyOf(result, size);
+        }
+
+        private static boolean overlaps(long[] left, long[] right) {
+            int i = 0;
+            int j = 0;
+            while (i < left.length && j < right.length) {
+                if (Math.max(left[i], right[j]) <= Math.min(left[i + 1], right[j + 1])) {
+                    return true;
+                }
+                if (left[i + 1] < right[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
             }
-            return null;
+            return false;
         }
+    }
 
-        private static @Nullable Version parseConstraintVersion(@Nullable String value) {
-            return parseVersion(value);
+    /**
+     * Versions are packed into a single non-negative {@code long}:
+     * <pre>
+     * bit 63      62       61..42   41..22   21..2    1..0
+     *     sign=0  carry    major    minor    patch    specified segments
+     * </pre>
+     * Dropping the two low bits yields the ordinal used for ordering, so two versions compare
+     * with one primitive comparison. Each segment holds values up to {@value #MAX_SEGMENT_VALUE};
+     * the carry bit leaves room for the pessimistic upper bound of the largest major version.
+     */
+    private static final class Version {
+        private static final long INVALID = -1L;
+
+        private static final int SEGMENT_BITS = 20;
+        private static final int MAX_SEGMENT_VALUE = (1 << SEGMENT_BITS) - 1;
+        private static final int SPECIFIED_BITS = 2;
+        private static final int PATCH_SHIFT = SPECIFIED_BITS;
+        private static final int MINOR_SHIFT = PATCH_SHIFT + SEGMENT_BITS;
+        private static final int MAJOR_SHIFT = MINOR_SHIFT + SEGMENT_BITS;
+        private static final long SEGMENT_MASK = MAX_SEGMENT_VALUE;
+        private static final long SPECIFIED_MASK = (1L << SPECIFIED_BITS) - 1;
+
+        private Version() {
         }
 
-        private static @Nullable Version parseVersion(@Nullable String value) {
-            if (value == null) {
-                return null;
+        private static long pack(long major, long minor, long patch, int specifiedSegments) {
+            // Addition rather than bitwise OR lets an incremented segment carry into the next one.
+            return (major << MAJOR_SHIFT) + (minor << MINOR_SHIFT) + (patch << PATCH_SHIFT) + specifiedSegments;
+        }
+
+        private static long ordinal(long version) {
+            return version >>> SPECIFIED_BITS;
+        }
+
+        private static int specifiedSegments(long version) {
+            return (int) (version & SPECIFIED_MASK);
+        }
+
+        private static int constraintOperatorLength(CharSequence value, int start, int end) {
+            if (start >= end) {
+                return 0;
+            }
+            char first = value.charAt(start);
+            char second = start + 1 < end ? value.charAt(start + 1) : 0;
+            if (first == '~' && second == '>' || (first == '>' || first == '<') && second == '=') {
+                return 2;
             }
-            String trimmed = value.trim();
-            if (trimmed.isEmpty()) {
-                return null;
+            if (first == '>' || first == '<' || first == '=') {
+                return 1;
             }
+            return 0;
+        }
 
-            String[] segments = trimmed.split("\\.", -1);
-            if (segments.length < 1 || segments.length > 3) {
-                return null;
+        /**
+         * Scans {@code major[.minor[.patch]]} from the given range, ignoring surrounding whitespace.
+         * Segments must be {@code 0} or start with a non-zero digit.
+         *
+         * @return the packed version, or {@link #INVALID} if the range is not a valid version
+         */
+        private static long parse(CharSequence value, int start, int end) {
+            start = skipLeadingWhitespace(value, start, end);
+            end = skipTrailingWhitespace(value, start, end);
+            if (start >= end) {
+                return INVALID;
             }
 
-            int[] parsed = new int[]{0, 0, 0};
-            for (int i = 0; i < segments.length; i++) {
-                String segment = segments[i];
-                if (segment.isEmpty() || !segment.matches("0|[1-9][0-9]*")) {
-                    return null;
+            long major = 0;
+            long minor = 0;
+            long patch = 0;
+            int segments = 0;
+            int i = start;
+            while (true) {
+                if (segments == 3 || i >= end) {
+                    return INVALID;
+                }
+                int segmentStart = i;
+                long segment = 0;
+                while (i < end) {
+                    char c = value.charAt(i);
+                    if (c < '0' || c > '9') {
+                        break;
+                    }
+                    segment = segment * 10 + (c - '0');
+                    if (segment > MAX_SEGMENT_VALUE) {
+                        return INVALID;
+                    }
+                    i++;
+                }
+                int digits = i - segmentStart;
+                if (digits == 0 || digits > 1 && value.charAt(segmentStart) == '0') {
+                    return INVALID;
+                }
+
+                if (segments == 0) {
+                    major = segment;
+                } else if (segments == 1) {
+                    minor = segment;
+                } else {
+                    patch = segment;
+                }
+                segments++;
+
+                if (i == end) {
+                    return pack(major, minor, patch, segments);
                 }
-                try {
-                    parsed[i] = Integer.parseInt(segment);
-                } catch (NumberFormatException e) {
-                    return null;
+                if (value.charAt(i) != '.') {
+                    return INVALID;
                 }
+                i++;
             }
-            return new Version(parsed[0], parsed[1], parsed[2], segments.length);
         }
 
-        private Version nextPessimisticUpperBound() {
-            if (specifiedSegments == 3) {
-                return new Version(major, minor + 1, 0, 3);
+        private static long nextPessimisticUpperBound(long version) {
+            long major = (version >>> MAJOR_SHIFT) & SEGMENT_MASK;
+            long minor = (version >>> MINOR_SHIFT) & SEGMENT_MASK;
+            if (specifiedSegments(version) == 3) {
+                return pack(major, minor + 1, 0, 3);
             }
-            return new Version(major + 1, 0, 0, 3);
+            return pack(major + 1, 0, 0, 3);
         }
 
-        @Override
-        public int compareTo(Version other) {
-            int majorComparison = Integer.compare(major, other.major);
-            if (majorComparison != 0) {
-                return majorComparison;
+        private static int skipLeadingWhitespace(CharSequence value, int start, int end) {
+            while (start < end && value.charAt(start) <= ' ') {
+                start++;
             }
-            int minorComparison = Integer.compare(minor, other.minor);
-            if (minorComparison != 0) {
-                return minorComparison;
+            return start;
+        }
+
+        private static int skipTrailingWhitespace(CharSequence value, int start, int end) {
+            while (end > start && value.charAt(end - 1) <= ' ') {
+                end--;
             }
-            return Integer.compare(patch, other.patch);
+            return end;
         }
     }
 }
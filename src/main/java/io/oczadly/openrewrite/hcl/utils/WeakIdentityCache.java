@@ -0,0 +1,113 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.jspecify.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent cache keyed by the identity of weakly referenced keys.
+ * <p>
+ * Meant for values derived from LST elements: a tree edited by a recipe keeps its id and compares
+ * equal to the original, but is a different instance and must not see the value computed for the
+ * original. An entry lives as long as its key is reachable elsewhere, so values computed during a
+ * run are freed with the trees they were computed for. Values must not reference their key,
+ * otherwise the key is never freed.
+ * <p>
+ * Lookups only read the map, probing it with a plain key object rather than a weak reference.
+ * Entries of freed keys are removed on the next insertion.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class WeakIdentityCache<K, V> {
+
+    private final ConcurrentHashMap<Object, V> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> collected = new ReferenceQueue<>();
+
+    /**
+     * @param key the cache key
+     * @return the cached value for this key instance, or {@code null} if there is none
+     */
+    public @Nullable V getIfPresent(K key) {
+        return entries.get(new Lookup(key));
+    }
+
+    /**
+     * Associates the value with this key instance, replacing any cached value.
+     *
+     * @param key   the cache key
+     * @param value the value; must not reference the key
+     */
+    public void put(K key, V value) {
+        expunge();
+        entries.put(new IdentityKey<>(key, collected), value);
+    }
+
+    /**
+     * @return the number of entries whose key has not been freed yet
+     */
+    public int size() {
+        expunge();
+        return entries.size();
+    }
+
+    private void expunge() {
+        Reference<? extends K> reference;
+        while ((reference = collected.poll()) != null) {
+            entries.remove(reference);
+        }
+    }
+
+    private static final class IdentityKey<K> extends WeakReference<K> {
+        private final int hash;
+
+        private IdentityKey(K key, ReferenceQueue<? super K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            Object key = get();
+            if (key == null) {
+                return false;
+            }
+            if (o instanceof Lookup) {
+                return key == ((Lookup) o).key;
+            }
+            return o instanceof IdentityKey && key == ((IdentityKey<?>) o).get();
+        }
+    }
+
+    /**
+     * Probe key of lookups, equal to the stored key of the same instance.
+     */
+    private static final class Lookup {
+        private final Object key;
+
+        private Lookup(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey<?>) o).get() == key;
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package io.oczadly.openrewrite.hcl;
 
+import io.oczadly.openrewrite.hcl.utils.ModuleMatcher;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
+import io.oczadly.openrewrite.hcl.utils.VersionConstraintMatcher.CompiledConstraint;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.openrewrite.DocumentExample;
+import org.openrewrite.InMemoryExecutionContext;
 import org.openrewrite.Validated;
 import org.openrewrite.test.RecipeSpec;
 import org.openrewrite.test.RewriteTest;
 
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static io.oczadly.openrewrite.hcl.utils.SystemPropertyTestSupport.restoreSystemProperty;
@@ -424,6 +431,83 @@ public class AddImportBlockTest implements RewriteTest {
         }
     }
 
+    @Test
+    void shouldResolvePlaceholdersFromRunPropertySource() {
+        InMemoryExecutionContext ctx = new InMemoryExecutionContext();
+        ctx.putMessage(PropertySource.RUN_SNAPSHOT_KEY, PropertySource.snapshot(runProperties()));
+
+        rewriteRun(
+            spec -> spec
+                .recipe(new AddImportBlock(
+                    "module.${avm.import.run.moduleName}.azapi_resource.private_dns_zone",
+                    "${avm.import.run.id}",
+                    null
+                ))
+                .recipeExecutionContext(ctx),
+            hcl(
+                """
+                module "private_dns_zone" {
+                  source = "Azure/avm-res-network-privatednszone/azurerm"
+                }
+                """,
+                """
+                module "private_dns_zone" {
+                  source = "Azure/avm-res-network-privatednszone/azurerm"
+                }
+
+                import {
+                  to = module.private_dns_zone.azapi_resource.private_dns_zone
+                  id = "resource-id"
+                }
+                """
+            )
+        );
+    }
+
+    @Test
+    void shouldResolveOptionsOncePerRunAcrossFiles() {
+        AtomicInteger lookups = new AtomicInteger();
+        InMemoryExecutionContext ctx = new InMemoryExecutionContext();
+        ctx.putMessage(PropertySource.RUN_SNAPSHOT_KEY, (PropertySource) key -> {
+            lookups.incrementAndGet();
+            return "avm.import.run.id".equals(key) ? "resource-id" : null;
+        });
+        String before = """
+            module "vnet" {
+            }
+            """;
+        String after = """
+            module "vnet" {
+            }
+
+            import {
+              to = module.vnet.azurerm_virtual_network.this
+              id = "resource-id"
+            }
+            """;
+
+        rewriteRun(
+            spec -> spec
+                .recipe(new AddImportBlock("module.vnet.azurerm_virtual_network.this", "${avm.import.run.id}", null))
+                .recipeExecutionContext(ctx)
+                .cycles(1)
+                .expectedCyclesThatMakeChanges(1),
+            hcl(before, after, sourceSpecs -> sourceSpecs.path("env/prod/main.tf")),
+            hcl(before, after, sourceSpecs -> sourceSpecs.path("env/dev/main.tf")),
+            hcl(before, after, sourceSpecs -> sourceSpecs.path("env/test/main.tf"))
+        );
+
+        // The visitor is created for every file, but the placeholder is resolved once per run.
+        assertThat(lookups).hasValue(1);
+    }
+
+    private static Properties runProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("avm.import.run.moduleName", "private_dns_zone");
+        properties.setProperty("avm.import.run.id", "resource-id");
+        return properties;
+    }
+
     @Test
     void shouldThrowExceptionWhenPlaceholderIsNotSet() {
         String missingKey = "avm.import.to.missing";
@@ -630,6 +714,63 @@ public class AddImportBlockTest implements RewriteTest {
         assertThat(validated.failures().getFirst().getMessage()).isEqualTo("'version' must be a valid semantic version constraint.");
     }
 
+    @Test
+    void shouldRejectUnsatisfiableVersionConstraintModuleFilter() {
+        AddImportBlock recipe = new AddImportBlock(
+            "private_dns_zone",
+            "Azure/avm-res-network-privatednszone/azurerm",
+            "~> 0.3.0, >= 0.4.0",
+            "module.private_dns_zone.azapi_resource.private_dns_zone",
+            "resource-id",
+            null
+        );
+
+        Validated<Object> validated = recipe.validate();
+
+        assertThat(validated.isValid()).isFalse();
+        assertThat(validated.failures()).hasSize(1);
+        assertThat(validated.failures().getFirst().getMessage()).isEqualTo("'version' constraint can never be satisfied by any module version.");
+    }
+
+    @Test
+    void shouldNotVisitFilesWhenResolvedVersionFilterIsUnsatisfiable() {
+        String versionKey = "avm.import.filter.unsatisfiable.version";
+        String previousVersion = System.getProperty(versionKey);
+        System.setProperty(versionKey, "~> 0.3.0, >= 0.4.0");
+
+        try {
+            // The resolved filter is what makes the visitor return files without visiting them.
+            CompiledConstraint resolvedVersion = TopLevelBlockRecipeSupport.resolveOptionalVersionFilter(
+                "${" + versionKey + "}",
+                PropertySource.systemSnapshot()
+            );
+            assertThat(ModuleMatcher.of(null, "Azure/avm-res-network-privatednszone/azurerm", resolvedVersion).isUnsatisfiable())
+                .isTrue();
+
+            // The module matches the source and the first constraint, and is still left untouched.
+            rewriteRun(
+                spec -> spec.recipe(new AddImportBlock(
+                    null,
+                    "Azure/avm-res-network-privatednszone/azurerm",
+                    "${" + versionKey + "}",
+                    "module.private_dns_zone.azapi_resource.private_dns_zone",
+                    "resource-id",
+                    null
+                )),
+                hcl(
+                    """
+                    module "private_dns_zone" {
+                      source  = "Azure/avm-res-network-privatednszone/azurerm"
+                      version = "0.3.5"
+                    }
+                    """
+                )
+            );
+        } finally {
+            restoreSystemProperty(versionKey, previousVersion);
+        }
+    }
+
     @Test
     void shouldThrowExceptionWhenToIsQuotedStringLiteral() {
         AddImportBlock recipe = new AddImportBlock(
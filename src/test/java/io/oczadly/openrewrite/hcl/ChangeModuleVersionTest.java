@@ -225,7 +225,8 @@ public class ChangeModuleVersionTest implements RewriteTest {
             "\" \"|value|'version' cannot be blank or whitespace.",
             "0.10.0|\"\"|'newVersion' must be specified and cannot be empty.",
             "0.10.0|\" \"|'newVersion' must be specified and cannot be empty.",
-            "name|value|'version' must be a valid semantic version constraint."
+            "name|value|'version' must be a valid semantic version constraint.",
+            ">= 0.11.0, < 0.11.0|value|'version' constraint can never be satisfied by any module version."
         }
     )
     void shouldRejectInvalidOldVersionAndNewVersion(String version, String newVersion, String expectedMessage) {
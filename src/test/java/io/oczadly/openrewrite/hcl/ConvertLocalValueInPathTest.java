@@ -1,15 +1,34 @@
 package io.oczadly.openrewrite.hcl;
 
+import io.oczadly.openrewrite.hcl.utils.AttributePathAutomaton;
+import io.oczadly.openrewrite.hcl.utils.HclTestSupport;
+import io.oczadly.openrewrite.hcl.utils.PropertySource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.openrewrite.Cursor;
 import org.openrewrite.DocumentExample;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
 import org.openrewrite.Validated;
+import org.openrewrite.hcl.tree.Expression;
+import org.openrewrite.hcl.tree.Hcl;
 import org.openrewrite.test.RecipeSpec;
 import org.openrewrite.test.RewriteTest;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
 import static io.oczadly.openrewrite.hcl.utils.SystemPropertyTestSupport.restoreSystemProperty;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.openrewrite.hcl.Assertions.hcl;
 
 public class ConvertLocalValueInPathTest implements RewriteTest {
@@ -364,7 +383,7 @@ public class ConvertLocalValueInPathTest implements RewriteTest {
             null,
             null,
             "txt_records",
-            "records.*.ttl",
+            "records..value",
             "stringToList",
             null
         );
@@ -374,7 +393,93 @@ public class ConvertLocalValueInPathTest implements RewriteTest {
         assertThat(validated.isValid()).isFalse();
         assertThat(validated.failures()).hasSize(1);
         assertThat(validated.failures().getFirst().getMessage())
-            .isEqualTo("Unsupported attributePath. Supported values: records.*.value, *.records.*.value");
+            .isEqualTo("Invalid attribute path 'records..value': empty step at offset 8.");
+    }
+
+    @Test
+    void shouldPassValidationWithTargetsOnly() {
+        ConvertLocalValueInPath recipe = new ConvertLocalValueInPath(
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            List.of("txt_records:*.records.*.value:stringToList", "dns:\"a:b\".value:list-to-string")
+        );
+
+        assertThat(recipe.validate().isValid()).isTrue();
+    }
+
+    @ParameterizedTest(name = "''{0}''")
+    @CsvSource(delimiter = '|', quoteCharacter = '"', textBlock = """
+      txt_records                          | 'targets' entries must have the form localName:attributePath:transformation.
+      txt_records:stringToList             | 'targets' entries must have the form localName:attributePath:transformation.
+      :records.*.value:stringToList        | 'targets' entries must have the form localName:attributePath:transformation.
+      txt-records:records.*.value:stringToList | 'targets' local names must be valid HCL identifiers matching [A-Za-z_][A-Za-z0-9_]*.
+      txt_records:records.*.value:toUpper  | Unknown transformation type. Supported: stringToList, listToString
+      txt_records:records..value:stringToList | Invalid attribute path 'records..value': empty step at offset 8.
+      """)
+    void shouldFailValidationWhenTargetIsInvalid(String target, String message) {
+        ConvertLocalValueInPath recipe = new ConvertLocalValueInPath(
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            List.of(target)
+        );
+
+        Validated<Object> validated = recipe.validate();
+
+        assertThat(validated.isValid()).isFalse();
+        assertThat(validated.failures()).hasSize(1);
+        assertThat(validated.failures().getFirst().getMessage()).isEqualTo(message);
+    }
+
+    @ParameterizedTest(name = "''{0}''")
+    @CsvSource(delimiter = '|', quoteCharacter = '"', textBlock = """
+      txt_records:*.records.*.value:${clvp.run.value} | toUpper        | Unknown transformation type. Supported: stringToList, listToString
+      txt_records:${clvp.run.value}:stringToList      | records..value | Invalid attribute path 'records..value': empty step at offset 8.
+      ${clvp.run.value}:*.records.*.value:stringToList | txt-records    | 'targets' local names must be valid HCL identifiers matching [A-Za-z_][A-Za-z0-9_]*.
+      """)
+    void shouldFailRunWhenTargetIsInvalidOnceResolved(String target, String runValue, String message) {
+        ConvertLocalValueInPath recipe = new ConvertLocalValueInPath(
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            List.of(target)
+        );
+        InMemoryExecutionContext ctx = new InMemoryExecutionContext();
+        ctx.putMessage(PropertySource.RUN_SNAPSHOT_KEY, (PropertySource) key -> "clvp.run.value".equals(key) ? runValue : null);
+
+        // The run resolves the placeholder against its own property source and fails instead of changing nothing.
+        assertThatThrownBy(() -> recipe.getInitialValue(ctx))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessage(message);
+    }
+
+    @Test
+    void shouldNormalizeTransformationNamesLikeCamelCaseRegex() {
+        Pattern camelCaseBoundary = Pattern.compile("(?<=[a-z0-9])([A-Z])");
+        String alphabet = "aAzZ09-_ßé ";
+        Random random = new Random(42);
+        for (int n = 0; n < 10_000; n++) {
+            StringBuilder value = new StringBuilder();
+            for (int i = random.nextInt(10); i > 0; i--) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String expected = camelCaseBoundary.matcher(value).replaceAll("_$1").replace('-', '_').toUpperCase(Locale.ROOT);
+
+            assertThat(ConvertLocalValueInPath.normalizeTransformationValue(value.toString())).as(value.toString()).isEqualTo(expected);
+        }
     }
 
     @Test
@@ -1010,6 +1115,289 @@ public class ConvertLocalValueInPathTest implements RewriteTest {
         );
     }
 
+    @Test
+    void shouldTransformValuesMatchedByAnyDepthWildcard() {
+        rewriteRun(
+            recipeSpec -> recipeSpec.recipe(new ConvertLocalValueInPath(
+                null,
+                null,
+                null,
+                "dns",
+                "**.value",
+                "stringToList",
+                null
+            )),
+            hcl(
+                """
+                locals {
+                  dns = {
+                    value = "apex"
+                    zones = [
+                      {
+                        name  = "example.com"
+                        value = "zone"
+                      },
+                    ]
+                    "quoted" = {
+                      "value" = "quoted"
+                    }
+                  }
+                }
+                """,
+                """
+                locals {
+                  dns = {
+                    value = ["apex"]
+                    zones = [
+                      {
+                        name  = "example.com"
+                        value = ["zone"]
+                      },
+                    ]
+                    "quoted" = {
+                      "value" = ["quoted"]
+                    }
+                  }
+                }
+                """
+            )
+        );
+    }
+
+    @Test
+    void shouldTransformListElementsMatchedByIndexPath() {
+        rewriteRun(
+            recipeSpec -> recipeSpec.recipe(new ConvertLocalValueInPath(
+                null,
+                null,
+                null,
+                "servers",
+                "[*].addresses",
+                "listToString",
+                null
+            )),
+            hcl(
+                """
+                locals {
+                  servers = [
+                    {
+                      addresses = ["10.0.0.1"]
+                      names     = ["a"]
+                    },
+                    {
+                      addresses = ["10.0.0.2", "10.0.0.3"]
+                    },
+                  ]
+                }
+                """,
+                """
+                locals {
+                  servers = [
+                    {
+                      addresses = "10.0.0.1"
+                      names     = ["a"]
+                    },
+                    {
+                      addresses = ["10.0.0.2", "10.0.0.3"]
+                    },
+                  ]
+                }
+                """
+            )
+        );
+    }
+
+    @Test
+    void shouldApplyAllTargetsInOneRun() {
+        rewriteRun(
+            recipeSpec -> recipeSpec.recipe(new ConvertLocalValueInPath(
+                null,
+                null,
+                null,
+                "txt_records",
+                "*.records.*.value",
+                "stringToList",
+                null,
+                List.of(
+                    "ptr_records:*.records.*.value:listToString",
+                    "txt_records:*.records.*.ttl:stringToList"
+                )
+            )),
+            hcl(
+                """
+                locals {
+                  txt_records = {
+                    "zone" = {
+                      records = {
+                        "txt" = {
+                          ttl   = "300"
+                          value = "apple"
+                        }
+                      }
+                    }
+                  }
+                  ptr_records = {
+                    "zone" = {
+                      records = {
+                        "ptr" = {
+                          value = ["host.example.com"]
+                        }
+                      }
+                    }
+                  }
+                  cname_records = {
+                    "zone" = {
+                      records = {
+                        "www" = {
+                          value = "example.com"
+                        }
+                      }
+                    }
+                  }
+                }
+                """,
+                """
+                locals {
+                  txt_records = {
+                    "zone" = {
+                      records = {
+                        "txt" = {
+                          ttl   = ["300"]
+                          value = ["apple"]
+                        }
+                      }
+                    }
+                  }
+                  ptr_records = {
+                    "zone" = {
+                      records = {
+                        "ptr" = {
+                          value = "host.example.com"
+                        }
+                      }
+                    }
+                  }
+                  cname_records = {
+                    "zone" = {
+                      records = {
+                        "www" = {
+                          value = "example.com"
+                        }
+                      }
+                    }
+                  }
+                }
+                """
+            )
+        );
+    }
+
+    @Test
+    void shouldKeepEscapedQuotesAndInlineCommentsOfTransformedValues() {
+        rewriteRun(
+            recipeSpec -> recipeSpec.recipe(new ConvertLocalValueInPath(
+                null,
+                null,
+                null,
+                "txt_records",
+                "*.records.*.value",
+                "stringToList",
+                null
+            )),
+            hcl(
+                """
+                locals {
+                  txt_records = {
+                    "zone" = {
+                      records = {
+                        "a" = {
+                          value = "say \\"hi\\" # not a comment" # owner
+                        }
+                        "b" = {
+                          value = "x//y" // note
+                        }
+                      }
+                    }
+                  }
+                }
+                """,
+                """
+                locals {
+                  txt_records = {
+                    "zone" = {
+                      records = {
+                        "a" = {
+                          value = ["say \\"hi\\" # not a comment"] # owner
+                        }
+                        "b" = {
+                          value = ["x//y"] // note
+                        }
+                      }
+                    }
+                  }
+                }
+                """
+            )
+        );
+    }
+
+    @Test
+    void shouldNotConvertListToStringWhenCommentsInsideListWouldBeLost() {
+        rewriteRun(
+            recipeSpec -> recipeSpec.recipe(new ConvertLocalValueInPath(
+                null,
+                null,
+                null,
+                "txt_records",
+                "*.records.*.value",
+                "listToString",
+                null
+            )),
+            hcl(
+                """
+                locals {
+                  txt_records = {
+                    "zone" = {
+                      records = {
+                        "a" = {
+                          value = [/* keep */ "a"]
+                        }
+                        "b" = {
+                          value = ["b" # keep
+                          ]
+                        }
+                        "c" = {
+                          value = ["c\\"d"] # owner
+                        }
+                      }
+                    }
+                  }
+                }
+                """,
+                """
+                locals {
+                  txt_records = {
+                    "zone" = {
+                      records = {
+                        "a" = {
+                          value = [/* keep */ "a"]
+                        }
+                        "b" = {
+                          value = ["b" # keep
+                          ]
+                        }
+                        "c" = {
+                          value = "c\\"d" # owner
+                        }
+                      }
+                    }
+                  }
+                }
+                """
+            )
+        );
+    }
+
     @Test
     void shouldNotConvertMultiValueListToString() {
         rewriteRun(
@@ -1238,6 +1626,189 @@ public class ConvertLocalValueInPathTest implements RewriteTest {
             )
         );
     }
-}
 
+    @Test
+    void shouldOnlyRecordDirectoriesWithMatchingModuleAndCandidateLocals() {
+        ConvertLocalValueInPath recipe = new ConvertLocalValueInPath(
+            "private_dns_zones",
+            null,
+            null,
+            "txt_records",
+            "*.records.*.value",
+            "stringToList",
+            "**/locals.tf"
+        );
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        ConvertLocalValueInPath.ScanState acc = recipe.getInitialValue(ctx);
+        String module = "module \"private_dns_zones\" {\n  source = \"example\"\n}\n";
+        List<Hcl.ConfigFile> files = List.of(
+            configFile(module, "prod/main.tf"),
+            configFile("locals {\n  txt_records = {}\n}\n", "prod/locals.tf"),
+            configFile(module, "dev/main.tf"),
+            configFile("locals {\n  ptr_records = {}\n}\n", "dev/locals.tf"),
+            configFile(module, "test/main.tf"),
+            configFile("locals {\n  txt_records = {}\n}\n", "test/other.tf"),
+            configFile("locals {\n  txt_records = {}\n}\n", "stage/locals.tf")
+        );
 
+        for (Hcl.ConfigFile file : files) {
+            recipe.getScanner(acc).visit(file, ctx);
+        }
+
+        assertThat(acc.directoryMatches(files.get(1))).isTrue();
+        assertThat(acc.directoryMatches(files.get(3))).isFalse();
+        assertThat(acc.directoryMatches(files.get(5))).isFalse();
+        assertThat(acc.directoryMatches(files.get(6))).isFalse();
+    }
+
+    @Test
+    void shouldResolveOptionsOncePerRunAcrossFiles() {
+        AtomicInteger lookups = new AtomicInteger();
+        InMemoryExecutionContext ctx = new InMemoryExecutionContext();
+        ctx.putMessage(PropertySource.RUN_SNAPSHOT_KEY, (PropertySource) key -> {
+            lookups.incrementAndGet();
+            return null;
+        });
+        String before = """
+            locals {
+              txt_records = {
+                "zone" = {
+                  records = {
+                    "a" = {
+                      value = "apple"
+                    }
+                  }
+                }
+              }
+            }
+            """;
+        String after = """
+            locals {
+              txt_records = {
+                "zone" = {
+                  records = {
+                    "a" = {
+                      value = ["apple"]
+                    }
+                  }
+                }
+              }
+            }
+            """;
+        String module = """
+            module "private_dns_zones" {
+              source = "Azure/avm-res-network-privatednszone/azurerm"
+            }
+            """;
+
+        rewriteRun(
+            spec -> spec
+                .recipe(new ConvertLocalValueInPath(
+                    "private_dns_zones",
+                    null,
+                    null,
+                    "${clvp.run.localName:txt_records}",
+                    "*.records.*.value",
+                    "stringToList",
+                    null
+                ))
+                .recipeExecutionContext(ctx)
+                .cycles(1)
+                .expectedCyclesThatMakeChanges(1),
+            hcl(module, sourceSpecs -> sourceSpecs.path("env/prod/main.tf")),
+            hcl(before, after, sourceSpecs -> sourceSpecs.path("env/prod/locals.tf")),
+            hcl(module, sourceSpecs -> sourceSpecs.path("env/dev/main.tf")),
+            hcl(before, after, sourceSpecs -> sourceSpecs.path("env/dev/locals.tf"))
+        );
+
+        // The scanner and visitor are created for every file, but the targets are resolved once per run.
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void shouldTransformLargeLocalsValueInLinearTime() {
+        int zones = 50_000;
+        StringBuilder locals = new StringBuilder("locals {\n  txt_records = {\n");
+        for (int i = 0; i < zones; i++) {
+            locals.append("    \"zone").append(i).append("\" = {\n")
+                .append("      records = {\n")
+                .append("        \"txt\" = {\n")
+                .append("          value = \"v").append(i).append("\" # owner\n")
+                .append("        }\n")
+                .append("      }\n")
+                .append("    }\n");
+        }
+        locals.append("  }\n}\n");
+        Expression value = localValue(locals.toString());
+
+        // Rescanning from the start for every records object took minutes at this size.
+        Expression transformed = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> transform(
+            value,
+            "*.records.*.value",
+            ConvertLocalValueInPath.AttributeTransformation.STRING_TO_LIST
+        ));
+
+        assertThat(transformed.print(new Cursor(null, "root")))
+            .contains("value = [\"v0\"] # owner")
+            .contains("value = [\"v" + (zones - 1) + "\"] # owner")
+            .doesNotContain("value = \"v");
+    }
+
+    @Test
+    void shouldShareUnchangedNodesOfTransformedValue() {
+        Expression value = localValue("""
+            locals {
+              txt_records = {
+                "zone1" = {
+                  records = {
+                    "txt" = {
+                      value = "apple"
+                    }
+                  }
+                }
+                "zone2" = {
+                  records = {
+                    "txt" = {
+                      value = ["pear"]
+                    }
+                  }
+                }
+              }
+            }
+            """);
+
+        Hcl.ObjectValue transformed = (Hcl.ObjectValue) transform(
+            value,
+            "*.records.*.value",
+            ConvertLocalValueInPath.AttributeTransformation.STRING_TO_LIST
+        );
+
+        List<Expression> before = ((Hcl.ObjectValue) value).getAttributes();
+        assertThat(transformed).isNotSameAs(value);
+        assertThat(transformed.getAttributes().get(0)).isNotSameAs(before.get(0));
+        assertThat(transformed.getAttributes().get(1)).isSameAs(before.get(1));
+        assertThat(transform(
+            transformed,
+            "*.records.*.value",
+            ConvertLocalValueInPath.AttributeTransformation.STRING_TO_LIST
+        )).isSameAs(transformed);
+    }
+
+    private static Expression transform(Expression value, String attributePath, ConvertLocalValueInPath.AttributeTransformation transformation) {
+        List<String> paths = ConvertLocalValueInPath.attributePaths(attributePath);
+        return ConvertLocalValueInPath.transformValue(
+            value,
+            AttributePathAutomaton.compile(paths),
+            Collections.nCopies(paths.size(), transformation)
+        );
+    }
+
+    private static Hcl.ConfigFile configFile(String hcl, String path) {
+        return HclTestSupport.parse(hcl).withSourcePath(Path.of(path));
+    }
+
+    private static Expression localValue(String locals) {
+        Hcl.Block block = HclTestSupport.parseBlock(locals);
+        return ((Hcl.Attribute) block.getBody().get(0)).getValue();
+    }
+}
@@ -0,0 +1,34 @@
+package io.oczadly.openrewrite.hcl;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TopLevelBlockRecipeSupportTest {
+
+    @ParameterizedTest(name = "''{0}'' has comments = {1}")
+    @CsvSource(delimiter = '|', textBlock = """
+        module.foo                        | false
+        module.foo # note                 | true
+        module.foo // note                | true
+        module.foo /* note */             | true
+        module.foo["#a//b/*c*/"]          | false
+        module.foo["${"#"}"]              | false
+        module.foo["${lookup(m, "#")}"]   | false
+        module.foo["${x}"]#note           | true
+        module.foo["$${#}"]               | false
+        module.foo["a\\"#"]               | false
+        local.a/local.b                   | false
+        """)
+    void shouldRejectCommentSyntaxOutsideStrings(String value, boolean hasComments) {
+        if (hasComments) {
+            assertThatThrownBy(() -> TopLevelBlockRecipeSupport.validateHclTraversal(value, "to"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("contains comment syntax");
+        } else {
+            assertThatCode(() -> TopLevelBlockRecipeSupport.validateHclTraversal(value, "to")).doesNotThrowAnyException();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.openrewrite.hcl.tree.Hcl;
+
+import static io.oczadly.openrewrite.hcl.utils.HclTestSupport.parseBlock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AttributeIndexTest {
+
+    @Test
+    void shouldIndexUnquotedAttributeValues() {
+        Hcl.Block block = parseBlock("""
+            module "vnet" {
+              source    = "Azure/avm-res-network-virtualnetwork/azurerm"
+              version   = "0.10.4"
+              count     = 2
+              parent_id = var.parent_id
+            }
+            """);
+
+        AttributeIndex index = AttributeIndex.of(block);
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.get("source")).isEqualTo("Azure/avm-res-network-virtualnetwork/azurerm");
+        assertThat(index.get("version")).isEqualTo("0.10.4");
+        assertThat(index.get("count")).isEqualTo("2");
+        assertThat(index.contains("parent_id")).isTrue();
+        assertThat(index.contains("location")).isFalse();
+        assertThat(index.get("location")).isNull();
+    }
+
+    @Test
+    void shouldReuseIndexForSameBlockInstance() {
+        Hcl.Block block = parseBlock("""
+            module "vnet" {
+              version = "0.10.4"
+            }
+            """);
+
+        assertThat(AttributeIndex.of(block)).isSameAs(AttributeIndex.of(block));
+    }
+
+    @Test
+    void shouldReindexEditedBlockWithSameId() {
+        Hcl.Block block = parseBlock("""
+            module "vnet" {
+              version = "0.10.4"
+            }
+            """);
+        AttributeIndex original = AttributeIndex.of(block);
+
+        Hcl.Block edited = block.withAttributeValue("version", "0.11.0");
+
+        assertThat(edited.getId()).isEqualTo(block.getId());
+        assertThat(AttributeIndex.of(edited).get("version")).isEqualTo("0.11.0");
+        assertThat(original.get("version")).isEqualTo("0.10.4");
+    }
+
+    @ParameterizedTest(name = "removeQuotes(''{0}'') should be ''{1}''")
+    @CsvSource(delimiter = '|', quoteCharacter = '\'', textBlock = """
+        '"0.10.4"' | '0.10.4'
+        '0.10.4'   | '0.10.4'
+        '"0.10.4'  | '0.10.4'
+        '0.10.4"'  | '0.10.4'
+        '""'       | ''
+        '"'        | ''
+        ''         | ''
+        """)
+    void shouldRemoveSurroundingQuotes(String value, String expected) {
+        assertThat(ModuleBlockPredicates.removeQuotes(value)).isEqualTo(expected);
+    }
+}
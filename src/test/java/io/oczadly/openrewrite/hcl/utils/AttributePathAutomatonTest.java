@@ -0,0 +1,109 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttributePathAutomatonTest {
+
+    @ParameterizedTest(name = "''{0}'' at {1} accepts path {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        records.*.value     | records.www.value        | 0
+        records.*.value     | records.www              | -1
+        records.*.value     | records.www.ttl          | -2
+        *.records.*.value   | zone.records.www.value   | 0
+        **.value            | value                    | 0
+        **.value            | a.[3].b.value            | 0
+        **.value            | a.[3].b                  | -1
+        zones.*.ips[*]      | zones.z.ips.[7]          | 0
+        zones.*.ips[*]      | zones.z.ips              | -1
+        a[1].b              | a.[1].b                  | 0
+        a[1].b              | a.[0].b                  | -2
+        [*].addresses       | [2].addresses            | 0
+        "a.b".c             | a.b.c                    | -2
+        """)
+    void shouldMatchPath(String path, String walk, int expected) {
+        assertThat(run(AttributePathAutomaton.compile(List.of(path)), walk)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldMatchQuotedKeys() {
+        AttributePathAutomaton automaton = AttributePathAutomaton.compile(List.of("\"a.b\".c"));
+
+        AttributePathAutomaton.State state = automaton.start().onKey("a.b");
+
+        assertThat(state).isNotNull();
+        assertThat(state.onKey("c")).isNotNull().extracting(AttributePathAutomaton.State::acceptedPath).isEqualTo(0);
+    }
+
+    @Test
+    void shouldMatchAllPathsInOneWalk() {
+        AttributePathAutomaton automaton = AttributePathAutomaton.compile(List.of(
+            "records.*.value",
+            "*.records.*.value",
+            "**.ttl"
+        ));
+
+        assertThat(run(automaton, "records.www.value")).isZero();
+        assertThat(run(automaton, "zone.records.www.value")).isEqualTo(1);
+        assertThat(run(automaton, "records.records.www.value")).isEqualTo(1);
+        assertThat(run(automaton, "zone.records.www.ttl")).isEqualTo(2);
+        assertThat(run(automaton, "records.www.value.ttl")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldPreferFirstPathWhenSeveralEndAtSameNode() {
+        AttributePathAutomaton automaton = AttributePathAutomaton.compile(List.of("*.value", "records.value"));
+
+        assertThat(run(automaton, "records.value")).isZero();
+    }
+
+    @Test
+    void shouldPruneSubtreesNoPathReaches() {
+        AttributePathAutomaton.State start = AttributePathAutomaton.compile(List.of("records.*.value")).start();
+
+        assertThat(start.onKey("other")).isNull();
+        assertThat(start.onElement(0)).isNull();
+    }
+
+    @ParameterizedTest(name = "''{0}''")
+    @CsvSource(delimiter = '|', textBlock = """
+        ''              | Invalid attribute path '': the path is empty.
+        records..value  | Invalid attribute path 'records..value': empty step at offset 8.
+        records.        | Invalid attribute path 'records.': the path ends with '.'.
+        records[x]      | Invalid attribute path 'records[x]': expected '*' or a list index at offset 8.
+        records[*       | Invalid attribute path 'records[*': expected ']' at offset 9.
+        rec*rds         | Invalid attribute path 'rec*rds': unexpected '*' at offset 3.
+        *records        | Invalid attribute path '*records': expected '.' at offset 1.
+        "records        | Invalid attribute path '"records': unterminated quoted key.
+        """)
+    void shouldRejectInvalidPaths(String path, String message) {
+        assertThat(AttributePathAutomaton.validate(path)).isEqualTo(message);
+        assertThatThrownBy(() -> AttributePathAutomaton.compile(List.of(path)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(message);
+    }
+
+    /**
+     * @param walk dot-separated keys and {@code [n]} list indexes
+     * @return the accepted path at the end of the walk, {@code -1} if none, {@code -2} if the walk
+     * left the automaton
+     */
+    private static int run(AttributePathAutomaton automaton, String walk) {
+        AttributePathAutomaton.State state = automaton.start();
+        for (String step : walk.split("\\.")) {
+            state = step.startsWith("[")
+                ? state.onElement(Integer.parseInt(step.substring(1, step.length() - 1)))
+                : state.onKey(step);
+            if (state == null) {
+                return -2;
+            }
+        }
+        return state.acceptedPath();
+    }
+}
@@ -0,0 +1,104 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.hcl.tree.Hcl;
+
+import static io.oczadly.openrewrite.hcl.utils.HclTestSupport.parseBlock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockFingerprintTest {
+
+    @Test
+    void shouldIgnoreAttributeOrderWhitespaceAndComments() {
+        long fingerprint = fingerprintOf("""
+            moved {
+              from = module.old
+              to   = module.new
+            }
+            """);
+
+        assertThat(fingerprintOf("""
+            moved {
+              # renamed in 2.0
+              to = module.new
+              FROM = module.old // trailing
+            }
+            """)).isEqualTo(fingerprint);
+        assertThat(fingerprintOf("MOVED { \n from = module.old\n to = module.new \n}\n")).isEqualTo(fingerprint);
+    }
+
+    @Test
+    void shouldKeepWhitespaceInsideStrings() {
+        assertThat(fingerprintOf("locals {\n  name = \"a b\"\n}\n"))
+            .isNotEqualTo(fingerprintOf("locals {\n  name = \"ab\"\n}\n"));
+    }
+
+    @Test
+    void shouldDistinguishLabels() {
+        assertThat(fingerprintOf("provider \"azurerm\" {\n}\n"))
+            .isEqualTo(fingerprintOf("provider   \"azurerm\"   {\n}\n"))
+            .isNotEqualTo(fingerprintOf("provider \"azapi\" {\n}\n"))
+            .isNotEqualTo(fingerprintOf("provider {\n}\n"));
+    }
+
+    @Test
+    void shouldCompareNestedBlocks() {
+        String hcl = """
+            provider "azurerm" {
+              features {
+                resource_group {
+                  prevent_deletion_if_contains_resources = %s
+                }
+              }
+            }
+            """;
+
+        assertThat(fingerprintOf(hcl.formatted("false"))).isEqualTo(fingerprintOf(hcl.formatted("false")));
+        assertThat(fingerprintOf(hcl.formatted("false"))).isNotEqualTo(fingerprintOf(hcl.formatted("true")));
+    }
+
+    @Test
+    void shouldNotConfuseAttributesWithNestedBlocks() {
+        assertThat(fingerprintOf("provider \"azurerm\" {\n  features = {}\n}\n"))
+            .isNotEqualTo(fingerprintOf("provider \"azurerm\" {\n  features {}\n}\n"));
+    }
+
+    @Test
+    void shouldUseLastDeclarationOfRepeatedAttribute() {
+        assertThat(fingerprintOf("locals {\n  name = \"old\"\n  name = \"new\"\n}\n"))
+            .isEqualTo(fingerprintOf("locals {\n  name = \"new\"\n}\n"));
+    }
+
+    @Test
+    void shouldHashTuplesAndObjectsFromTree() {
+        long fingerprint = fingerprintOf("locals {\n  zones = [\"1\", \"2\"]\n  tags = { env = \"prod\" }\n}\n");
+
+        assertThat(fingerprintOf("locals {\n  zones = [ \"1\" , /* second */ \"2\" ]\n  tags = {\n    env = \"prod\"\n  }\n}\n"))
+            .isEqualTo(fingerprint);
+        assertThat(fingerprintOf("locals {\n  zones = [\"2\", \"1\"]\n  tags = { env = \"prod\" }\n}\n"))
+            .isNotEqualTo(fingerprint);
+        assertThat(fingerprintOf("locals {\n  zones = [\"1\", \"2\"]\n  tags = { env = \"dev\" }\n}\n"))
+            .isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void shouldHashOtherExpressionsByCanonicalForm() {
+        assertThat(fingerprintOf("locals {\n  name = lower( var.name )\n}\n"))
+            .isEqualTo(fingerprintOf("locals {\n  name = lower(var.name)\n}\n"))
+            .isNotEqualTo(fingerprintOf("locals {\n  name = upper(var.name)\n}\n"));
+    }
+
+    @Test
+    void shouldMatchStaticFingerprintWhenReusingInstance() {
+        Hcl.Block first = parseBlock("locals {\n  name = lower(var.name)\n}\n");
+        Hcl.Block second = parseBlock("locals {\n  name = upper(var.name)\n}\n");
+        BlockFingerprint fingerprints = new BlockFingerprint();
+
+        assertThat(fingerprints.fingerprint(first)).isEqualTo(BlockFingerprint.of(first));
+        assertThat(fingerprints.fingerprint(second)).isEqualTo(BlockFingerprint.of(second));
+    }
+
+    private static long fingerprintOf(String hcl) {
+        return BlockFingerprint.of(parseBlock(hcl));
+    }
+}
@@ -0,0 +1,61 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.hcl.tree.Hcl;
+
+import static io.oczadly.openrewrite.hcl.utils.HclTestSupport.parseBlock;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CanonicalHclWriterTest {
+
+    @Test
+    void shouldDropWhitespaceAndComments() {
+        Hcl.Block block = parseBlock("""
+            locals {
+              # DNS records
+              dns = {
+                records = { /* inline */
+                  www = { value = "a b" } // trailing
+                }
+              }
+            }
+            """);
+
+        assertThat(new CanonicalHclWriter().write(block).toString())
+            .isEqualTo("locals{dns={records={www={value=\"a b\"}}}}");
+    }
+
+    @Test
+    void shouldKeepHeredocContents() {
+        Hcl.Block block = parseBlock("""
+            locals {
+              script = <<EOT
+              echo  "hello"
+            EOT
+            }
+            """);
+
+        assertThat(new CanonicalHclWriter().write(block).toString()).contains("echo  \"hello\"");
+    }
+
+    @Test
+    void shouldReuseBufferAcrossWrites() {
+        CanonicalHclWriter writer = new CanonicalHclWriter();
+        Hcl.Block block = parseBlock("locals {\n  name = \"example\"\n}\n");
+
+        CharSequence first = writer.write(block);
+        CharSequence second = writer.write(block.getBody().get(0));
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.toString()).isEqualTo("name=\"example\"");
+    }
+
+    @Test
+    void shouldFindTextInCanonicalForm() {
+        CanonicalHclWriter writer = new CanonicalHclWriter();
+        Hcl.Block block = parseBlock("locals {\n  dns = {\n    records   =\n    {}\n  }\n}\n");
+
+        assertThat(writer.contains(block, "records={")).isTrue();
+        assertThat(writer.contains(parseBlock("locals {\n  dns = \"records = {\"\n}\n"), "records={")).isFalse();
+    }
+}
@@ -0,0 +1,93 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClockCacheTest {
+
+    @Test
+    void shouldCountHitsAndMisses() {
+        ClockCache<String, Integer> cache = new ClockCache<>(4);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.computeIfAbsent("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.computeIfAbsent("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.getIfPresent("b")).isNull();
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictEntriesNotUsedSinceLastSweep() {
+        ClockCache<String, String> cache = new ClockCache<>(2);
+        cache.computeIfAbsent("a", String::toUpperCase);
+        cache.computeIfAbsent("b", String::toUpperCase);
+        cache.getIfPresent("a");
+
+        cache.computeIfAbsent("c", String::toUpperCase);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.getIfPresent("a")).isEqualTo("A");
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("c")).isEqualTo("C");
+    }
+
+    @Test
+    void shouldStayBoundedUnderConcurrentAccess() throws Exception {
+        ClockCache<Integer, Integer> cache = new ClockCache<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        int key = i % 200;
+                        assertThat(cache.computeIfAbsent(key, k -> k * 2)).isEqualTo(key * 2);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+        assertThat(cache.hitCount() + cache.missCount()).isEqualTo(80_000);
+    }
+
+    @Test
+    void shouldReplaceValueOnPut() {
+        ClockCache<String, Integer> cache = new ClockCache<>(2);
+
+        cache.put("a", 1);
+        cache.put("a", 2);
+        cache.put("b", 3);
+        cache.put("c", 4);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getIfPresent("c")).isEqualTo(4);
+        assertThat(cache.computeIfAbsent("c", key -> 5)).isEqualTo(4);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectNonPositiveCapacity() {
+        assertThatThrownBy(() -> new ClockCache<>(0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,73 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConstraintSetTest {
+
+    @Test
+    void shouldReturnMatchingConstraintIndexes() {
+        ConstraintSet constraints = ConstraintSet.of(List.of("~> 0.10", ">= 0.11.0", "!= 0.10.4", "< 0.10.0"));
+
+        assertThat(constraints.matching("0.10.4").stream()).containsExactly(0);
+        assertThat(constraints.matching("0.10.5").stream()).containsExactly(0, 2);
+        assertThat(constraints.matching("0.9.9").stream()).containsExactly(2, 3);
+        assertThat(constraints.matching("\"1.0.0\"").stream()).containsExactly(1, 2);
+        assertThat(constraints.matching("~> 0.9.0").stream()).containsExactly(2, 3);
+        assertThat(constraints.matching("${var.version}").isEmpty()).isTrue();
+        assertThat(constraints.matching(null).isEmpty()).isTrue();
+        assertThat(constraints.size()).isEqualTo(4);
+        assertThat(constraints.get(1)).hasToString(">= 0.11.0");
+    }
+
+    @Test
+    void shouldAgreeWithIndividualMatching() {
+        Random random = new Random(42);
+        String[] operators = {"", "= ", "!= ", "> ", ">= ", "< ", "<= ", "~> "};
+        List<String> expressions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String expression = operators[random.nextInt(operators.length)] + randomVersion(random);
+            if (random.nextBoolean()) {
+                expression += ", " + operators[random.nextInt(operators.length)] + randomVersion(random);
+            }
+            expressions.add(expression);
+        }
+        ConstraintSet constraints = ConstraintSet.of(expressions);
+
+        for (int i = 0; i < 2_000; i++) {
+            String moduleVersion = random.nextInt(4) == 0
+                ? operators[1 + random.nextInt(operators.length - 1)] + randomVersion(random)
+                : random.nextInt(3) + "." + random.nextInt(4) + "." + random.nextInt(4);
+
+            BitSet expected = new BitSet();
+            for (int c = 0; c < expressions.size(); c++) {
+                if (constraints.get(c).matches(moduleVersion)) {
+                    expected.set(c);
+                }
+            }
+            assertThat(constraints.matching(moduleVersion)).as(moduleVersion).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldRejectInvalidConstraint() {
+        assertThatThrownBy(() -> ConstraintSet.of(List.of(">= 0.10.0", ">= 0.10.x")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String randomVersion(Random random) {
+        String version = String.valueOf(random.nextInt(3));
+        int segments = random.nextInt(3);
+        for (int i = 0; i < segments; i++) {
+            version += "." + random.nextInt(4);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,103 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DirectoryInternerTest {
+
+    @Test
+    void shouldAssignOneIdPerDirectory() {
+        DirectoryInterner interner = new DirectoryInterner();
+
+        int modules = interner.idOf(Paths.get("modules/vnet/main.tf"));
+
+        assertThat(interner.idOf(Paths.get("modules/vnet/variables.tf"))).isEqualTo(modules);
+        assertThat(interner.idOf(Paths.get("modules/pdns/main.tf"))).isNotEqualTo(modules);
+        assertThat(interner.idOf(Paths.get("modules/vnet/nested/main.tf"))).isNotEqualTo(modules);
+        assertThat(interner.idOf(Paths.get("modules/vnet.tf"))).isNotEqualTo(modules);
+        assertThat(interner.size()).isEqualTo(5);
+    }
+
+    @Test
+    void shouldAssignIdZeroToFilesWithoutParent() {
+        DirectoryInterner interner = new DirectoryInterner();
+
+        assertThat(interner.idOf(Paths.get("main.tf"))).isZero();
+        assertThat(interner.idOf(Paths.get("/main.tf"))).isNotZero();
+        assertThat(interner.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepIdsWhileTableGrows() {
+        DirectoryInterner interner = new DirectoryInterner();
+        List<Integer> ids = new ArrayList<>();
+
+        for (int i = 0; i < 1_000; i++) {
+            ids.add(interner.idOf(Paths.get("dir" + i, "main.tf")));
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(interner.idOf(Paths.get("dir" + i, "variables.tf"))).isEqualTo(ids.get(i)).isEqualTo(i + 1);
+        }
+        assertThat(interner.size()).isEqualTo(1_001);
+    }
+
+    @Test
+    void shouldShareInternerWithinRun() {
+        InMemoryExecutionContext ctx = new InMemoryExecutionContext();
+
+        assertThat(DirectoryInterner.forRun(ctx)).isSameAs(DirectoryInterner.forRun(ctx));
+        assertThat(DirectoryInterner.forRun(new InMemoryExecutionContext())).isNotSameAs(DirectoryInterner.forRun(ctx));
+    }
+
+    @Test
+    void shouldKeepDirectoryIdsWhileGrowing() {
+        DirectorySet set = new DirectorySet();
+        DirectoryMap<String> map = new DirectoryMap<>();
+
+        for (int id = 0; id < 10_000; id += 3) {
+            int directory = id;
+            set.add(directory);
+            map.computeIfAbsent(directory, () -> "dir" + directory);
+        }
+
+        for (int id = 0; id < 10_000; id++) {
+            assertThat(set.contains(id)).isEqualTo(id % 3 == 0);
+            assertThat(map.get(id)).isEqualTo(id % 3 == 0 ? "dir" + id : null);
+        }
+        assertThat(set.contains(1_000_000)).isFalse();
+        assertThat(new DirectorySet().isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldNotLoseConcurrentInsertions() {
+        DirectoryInterner interner = new DirectoryInterner();
+        DirectorySet set = new DirectorySet();
+        DirectoryMap<Object> map = new DirectoryMap<>();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    int id = interner.idOf(Paths.get("dir" + i, "main.tf"));
+                    set.add(id);
+                    map.computeIfAbsent(id, Object::new);
+                }
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertThat(interner.size()).isEqualTo(5_001);
+        for (int id = 1; id <= 5_000; id++) {
+            assertThat(set.contains(id)).isTrue();
+            assertThat(map.get(id)).isNotNull();
+        }
+    }
+}
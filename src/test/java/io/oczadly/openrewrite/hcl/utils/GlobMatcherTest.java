@@ -0,0 +1,102 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GlobMatcherTest {
+
+    @ParameterizedTest(name = "''{0}'' matches ''{1}'' = {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        **/main.tf                   | main.tf                         | true
+        **/main.tf                   | modules/vnet/main.tf            | true
+        **/main.tf                   | /work/main.tf                   | true
+        **/main.tf                   | modules/vnet/variables.tf       | false
+        *.tf                         | main.tf                         | true
+        *.tf                         | modules/main.tf                 | false
+        modules/**/main.tf           | modules/vnet/main.tf            | true
+        modules/**/main.tf           | modules/main.tf                 | false
+        modules/*/main.tf            | modules/vnet/main.tf            | true
+        modules/*/main.tf            | modules/vnet/subnet/main.tf     | false
+        *.{tf,hcl}                   | terragrunt.hcl                  | true
+        main{,_override}.tf          | main_override.tf                | true
+        [!v]*/main.tf                | vnet/main.tf                    | false
+        [a-z]?et/main.tf             | vnet/main.tf                    | true
+        **                           | modules/vnet/main.tf            | true
+        modules/vnet/main.tf         | modules//vnet/main.tf/          | true
+        """)
+    void shouldMatchGlobPatterns(String pattern, String path, boolean expected) {
+        assertThat(GlobMatcher.of(pattern).matches(path)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldMatchLikeDefaultFileSystem() {
+        String[] patternParts = {"*", "**", "?", "/", "a", "b", ".tf", "[a-c]", "[!a]", "[-a]", "{a,b}", "{,.tf}", "\\*", ",", "}"};
+        String[] pathParts = {"a", "b", "c", "/", "//", ".tf", "ab", "-", "*", ",", "\n"};
+        Random random = new Random(42);
+
+        List<String> paths = new ArrayList<>();
+        paths.add("");
+        paths.add("/");
+        for (int i = 0; i < 500; i++) {
+            paths.add(randomText(random, pathParts));
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            String pattern = randomText(random, patternParts);
+            GlobMatcher matcher = GlobMatcher.of(pattern);
+            for (String path : paths) {
+                assertThat(matcher.matches(path))
+                    .as("pattern '%s' on path '%s'", pattern, path)
+                    .isEqualTo(matchesWithPathMatcher(path, pattern));
+            }
+        }
+    }
+
+    @Test
+    void shouldReuseCompiledMatcher() {
+        assertThat(GlobMatcher.of("**/*.tf")).isSameAs(GlobMatcher.of("**/*.tf"));
+    }
+
+    @Test
+    void shouldSplitPathsLikeDefaultFileSystem() {
+        assertThat(GlobMatcher.segmentsOf("modules//vnet/main.tf/")).containsExactly("modules", "vnet", "main.tf");
+        assertThat(GlobMatcher.segmentsOf("/modules/main.tf")).containsExactly("", "modules", "main.tf");
+        assertThat(GlobMatcher.segmentsOf("")).containsExactly("");
+    }
+
+    @Test
+    void shouldRejectInvalidPattern() {
+        assertThatThrownBy(() -> GlobMatcher.of("modules/{vnet"))
+            .isInstanceOf(PatternSyntaxException.class);
+    }
+
+    private static String randomText(Random random, String[] parts) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            text.append(parts[random.nextInt(parts.length)]);
+        }
+        return text.toString();
+    }
+
+    private static boolean matchesWithPathMatcher(String path, String pattern) {
+        Path candidate = Paths.get(path);
+        if (FileSystems.getDefault().getPathMatcher("glob:" + pattern).matches(candidate)) {
+            return true;
+        }
+        return candidate.getParent() == null && pattern.startsWith("**/") &&
+            FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)).matches(candidate);
+    }
+}
@@ -0,0 +1,99 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.hcl.tree.Hcl;
+
+import static io.oczadly.openrewrite.hcl.utils.HclTestSupport.parse;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HclStyleDetectorTest {
+
+    @Test
+    void shouldDetectDefaultStyle() {
+        HclStyle style = HclStyleDetector.detect(parse("""
+            module "vnet" {
+              source  = "Azure/avm-res-network-virtualnetwork/azurerm"
+              version = "0.10.4"
+            }
+
+            module "pdns" {
+              source = "Azure/avm-res-network-privatednszone/azurerm"
+            }
+            """));
+
+        assertThat(style).isEqualTo(HclStyle.DEFAULT);
+    }
+
+    @Test
+    void shouldFallBackToDefaultStyleForEmptyFile() {
+        assertThat(HclStyleDetector.detect(parse(""))).isEqualTo(HclStyle.DEFAULT);
+    }
+
+    @Test
+    void shouldDetectIndentUnitRelativeToParentBlock() {
+        HclStyle style = HclStyleDetector.detect(parse("""
+            terraform {
+                required_providers {
+                    azurerm = {
+                        source  = "hashicorp/azurerm"
+                        version = "~> 4.0"
+                    }
+                }
+            }
+            """));
+
+        assertThat(style.getIndentUnit()).isEqualTo("    ");
+    }
+
+    @Test
+    void shouldDetectTabIndentation() {
+        HclStyle style = HclStyleDetector.detect(parse("module \"vnet\" {\n\tsource = \"a\"\n\tversion = \"0.10.4\"\n}\n"));
+
+        assertThat(style.getIndentUnit()).isEqualTo("\t");
+    }
+
+    @Test
+    void shouldDetectWindowsNewlines() {
+        HclStyle style = HclStyleDetector.detect(parse("locals {\r\n  a = 1\r\n}\r\n\r\nlocals {\r\n  b = 2\r\n}\r\n"));
+
+        assertThat(style.getNewline()).isEqualTo("\r\n");
+        assertThat(style.topLevelBlockSeparator()).isEqualTo("\r\n\r\n");
+        assertThat(style.withNewlines("a\nb")).isEqualTo("a\r\nb");
+    }
+
+    @Test
+    void shouldDetectUnalignedAssignmentsAndTightBlocks() {
+        HclStyle style = HclStyleDetector.detect(parse("""
+            module "vnet" {
+              source = "Azure/avm-res-network-virtualnetwork/azurerm"
+              version = "0.10.4"
+            }
+            module "pdns" {
+              source = "Azure/avm-res-network-privatednszone/azurerm"
+              version = "0.3.0"
+            }
+            """));
+
+        assertThat(style.isAlignAssignments()).isFalse();
+        assertThat(style.isBlankLineBetweenBlocks()).isFalse();
+        assertThat(style.topLevelBlockSeparator()).isEqualTo("\n");
+    }
+
+    @Test
+    void shouldReuseStyleForSameFileInstance() {
+        Hcl.ConfigFile configFile = parse("""
+            locals {
+              a = 1
+            }
+            """);
+
+        assertThat(HclStyleDetector.detect(configFile)).isSameAs(HclStyleDetector.detect(configFile));
+    }
+
+    @Test
+    void shouldReturnIndentationAfterLastLineBreak() {
+        assertThat(HclStyle.indentationOf("\n\n    ")).isEqualTo("    ");
+        assertThat(HclStyle.indentationOf("\n")).isEmpty();
+        assertThat(HclStyle.indentationOf(" ")).isNull();
+    }
+}
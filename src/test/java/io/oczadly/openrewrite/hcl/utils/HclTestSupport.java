@@ -0,0 +1,18 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.openrewrite.hcl.HclParser;
+import org.openrewrite.hcl.tree.Hcl;
+
+public final class HclTestSupport {
+
+    private HclTestSupport() {
+    }
+
+    public static Hcl.ConfigFile parse(String hcl) {
+        return (Hcl.ConfigFile) HclParser.builder().build().parse(hcl).findFirst().orElseThrow();
+    }
+
+    public static Hcl.Block parseBlock(String hcl) {
+        return (Hcl.Block) parse(hcl).getBody().get(0);
+    }
+}
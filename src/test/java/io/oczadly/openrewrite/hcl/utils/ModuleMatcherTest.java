@@ -0,0 +1,91 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.openrewrite.hcl.tree.Hcl;
+
+import static io.oczadly.openrewrite.hcl.utils.HclTestSupport.parse;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModuleMatcherTest {
+
+    private static final Hcl.ConfigFile CONFIG = parse("""
+        resource "azurerm_resource_group" "vnet" {
+          source = "Azure/avm-res-network-virtualnetwork/azurerm"
+        }
+
+        module "vnet" {
+          source  = "Azure/avm-res-network-virtualnetwork/azurerm"
+          version = "0.10.4"
+        }
+        """);
+
+    @ParameterizedTest(name = "name=''{0}'' source=''{1}'' version=''{2}'' should match = {3}")
+    @CsvSource(delimiter = '|', nullValues = "null", textBlock = """
+        vnet | Azure/avm-res-network-virtualnetwork/azurerm | ~> 0.10   | true
+        vnet | null                                         | null      | true
+        null | Azure/avm-res-network-virtualnetwork/azurerm | null      | true
+        null | null                                         | >= 0.10.4 | true
+        pdns | Azure/avm-res-network-virtualnetwork/azurerm | null      | false
+        vnet | Azure/avm-res-network-privatednszone/azurerm | null      | false
+        vnet | Azure/avm-res-network-virtualnetwork/azurerm | != 0.10.4 | false
+        """)
+    void shouldMatchModuleBlocks(String moduleName, String source, String version, boolean expected) {
+        ModuleMatcher matcher = ModuleMatcher.of(moduleName, source, version == null ? null : VersionConstraintMatcher.compile(version));
+
+        assertThat(matcher.matches(moduleBlock())).isEqualTo(expected);
+        assertThat(matcher.matchesAny(CONFIG)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldOnlyMatchModuleBlocks() {
+        Hcl.Block resource = (Hcl.Block) CONFIG.getBody().get(0);
+
+        assertThat(ModuleMatcher.of("vnet", null, null).matches(resource)).isFalse();
+        assertThat(ModuleMatcher.of(null, "Azure/avm-res-network-virtualnetwork/azurerm", null).matches(resource)).isFalse();
+    }
+
+    @Test
+    void shouldMatchAnyFileWithoutFilters() {
+        ModuleMatcher matcher = ModuleMatcher.of(null, null, null);
+
+        assertThat(matcher.hasFilters()).isFalse();
+        assertThat(matcher.matchesAny(parse("locals {}\n"))).isTrue();
+    }
+
+    @Test
+    void shouldReportUnsatisfiableVersionFilter() {
+        assertThat(ModuleMatcher.of(null, null, VersionConstraintMatcher.compile(">= 0.11.0, < 0.11.0")).isUnsatisfiable()).isTrue();
+        assertThat(ModuleMatcher.of(null, null, VersionConstraintMatcher.compile("~> 0.10")).isUnsatisfiable()).isFalse();
+        assertThat(ModuleMatcher.of("vnet", null, null).isUnsatisfiable()).isFalse();
+    }
+
+    @Test
+    void shouldReadFirstDeclarationOfSourceAndVersion() {
+        Hcl.Block module = (Hcl.Block) parse("""
+            module "vnet" {
+              version = "0.10.4"
+              source  = "Azure/avm-res-network-virtualnetwork/azurerm"
+              version = "0.11.0"
+              source  = "Azure/avm-res-network-privatednszone/azurerm"
+            }
+            """).getBody().get(0);
+
+        assertThat(ModuleMatcher.of(null, "Azure/avm-res-network-virtualnetwork/azurerm", VersionConstraintMatcher.compile("0.10.4")).matches(module)).isTrue();
+        assertThat(ModuleMatcher.of(null, "Azure/avm-res-network-privatednszone/azurerm", null).matches(module)).isFalse();
+        assertThat(ModuleMatcher.of(null, null, VersionConstraintMatcher.compile("0.11.0")).matches(module)).isFalse();
+    }
+
+    @Test
+    void shouldNotMatchModuleWithoutFilteredAttribute() {
+        Hcl.Block module = (Hcl.Block) parse("module \"vnet\" {\n}\n").getBody().get(0);
+
+        assertThat(ModuleMatcher.of(null, "Azure/avm-res-network-virtualnetwork/azurerm", null).matches(module)).isFalse();
+        assertThat(ModuleMatcher.of(null, null, VersionConstraintMatcher.compile("~> 0.10")).matches(module)).isFalse();
+    }
+
+    private static Hcl.Block moduleBlock() {
+        return (Hcl.Block) CONFIG.getBody().get(1);
+    }
+}
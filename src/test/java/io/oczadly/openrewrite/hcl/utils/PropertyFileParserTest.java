@@ -0,0 +1,203 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import io.oczadly.openrewrite.hcl.utils.PropertyFileParser.Format;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class PropertyFileParserTest {
+
+    @Test
+    void shouldFlattenNestedYaml() {
+        Map<String, String> values = PropertyFileParser.parse("""
+            # migration parameters
+            ---
+            avm:
+              vnet:
+                location: eastus2   # trailing comment
+                parent_id: "${data.terraform_remote_state.rg.outputs.resource.id}"
+              zones:
+                - "1"
+                - '2'
+              subnets:
+              - name: default
+                prefix: 10.0.0.0/24
+              - name: "private # endpoints"
+              empty:
+              tags: {}
+              optional: ~
+            "avm.quoted.key": 'it''s'
+            url: https://example.com/a:b
+            """, Format.YAML);
+
+        assertThat(values).containsOnly(
+            entry("avm.vnet.location", "eastus2"),
+            entry("avm.vnet.parent_id", "${data.terraform_remote_state.rg.outputs.resource.id}"),
+            entry("avm.zones[0]", "1"),
+            entry("avm.zones[1]", "2"),
+            entry("avm.subnets[0].name", "default"),
+            entry("avm.subnets[0].prefix", "10.0.0.0/24"),
+            entry("avm.subnets[1].name", "private # endpoints"),
+            entry("avm.quoted.key", "it's"),
+            entry("url", "https://example.com/a:b")
+        );
+    }
+
+    @Test
+    void shouldReadFullYaml() {
+        Map<String, String> values = PropertyFileParser.parse("""
+            defaults: &defaults
+              location: eastus2
+            zones: [1, "2", {name: three}]
+            description: >-
+              folded
+              text
+            script: |
+              echo one
+              echo two
+            version: 1.10
+            enabled: true
+            """, Format.YAML);
+
+        assertThat(values).containsOnly(
+            entry("defaults.location", "eastus2"),
+            entry("zones[0]", "1"),
+            entry("zones[1]", "2"),
+            entry("zones[2].name", "three"),
+            entry("description", "folded text"),
+            entry("script", "echo one\necho two\n"),
+            entry("version", "1.10"),
+            entry("enabled", "true")
+        );
+    }
+
+    @Test
+    void shouldFlattenNestedJson() {
+        Map<String, String> values = PropertyFileParser.parse("""
+            {
+              "avm": {
+                "vnet": {"location": "eastus2", "name": "vnet-\\u0031"},
+                "zones": ["1", 2],
+                "enabled": true,
+                "optional": null,
+                "tags": {},
+                "version": 1.10,
+                "size": -1.5e3
+              }
+            }
+            """, Format.JSON);
+
+        assertThat(values).containsOnly(
+            entry("avm.vnet.location", "eastus2"),
+            entry("avm.vnet.name", "vnet-1"),
+            entry("avm.zones[0]", "1"),
+            entry("avm.zones[1]", "2"),
+            entry("avm.enabled", "true"),
+            entry("avm.version", "1.10"),
+            entry("avm.size", "-1500")
+        );
+    }
+
+    @Test
+    void shouldReadEmptyFilesAsNoProperties() {
+        assertThat(PropertyFileParser.parse("", Format.JSON)).isEmpty();
+        assertThat(PropertyFileParser.parse("# nothing yet\n", Format.YAML)).isEmpty();
+    }
+
+    @Test
+    void shouldReadPropertiesFormat() {
+        Map<String, String> values = PropertyFileParser.parse("""
+            # comment
+            avm.vnet.location=eastus2
+            avm.vnet.name: vnet01
+            """, Format.PROPERTIES);
+
+        assertThat(values).containsOnly(
+            entry("avm.vnet.location", "eastus2"),
+            entry("avm.vnet.name", "vnet01")
+        );
+    }
+
+    @ParameterizedTest(name = "YAML ''{0}'' should be rejected")
+    @CsvSource(delimiter = '|', quoteCharacter = '"', textBlock = """
+        "key: 'unclosed"    | Malformed YAML at line
+        "key: [a, b"        | Malformed YAML at line
+        "- a"               | Malformed YAML: expected an object at the top level.
+        "just text"         | Malformed YAML: expected an object at the top level.
+        """)
+    void shouldRejectMalformedYaml(String yaml, String message) {
+        assertThatThrownBy(() -> PropertyFileParser.parse(yaml, Format.YAML))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageStartingWith(message);
+    }
+
+    @Test
+    void shouldRejectYamlAliases() {
+        String yaml = """
+            base: &base
+              location: eastus2
+            prod:
+              <<: *base
+            """;
+
+        assertThatThrownBy(() -> PropertyFileParser.parse(yaml, Format.YAML))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageStartingWith("Malformed YAML at line 4")
+            .hasMessageEndingWith(": aliases are not supported.");
+    }
+
+    @ParameterizedTest(name = "JSON ''{0}'' should be rejected")
+    @CsvSource(delimiter = '|', quoteCharacter = '\'', textBlock = """
+        [1, 2]      | Malformed JSON: expected an object at the top level.
+        {"a": 1     | Malformed JSON at line 1
+        {"a": x}    | Malformed JSON at line 1
+        {"a": "b}   | Malformed JSON at line 1
+        {} {}       | Malformed JSON at line 1
+        """)
+    void shouldRejectMalformedJson(String json, String message) {
+        assertThatThrownBy(() -> PropertyFileParser.parse(json, Format.JSON))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageStartingWith(message);
+    }
+
+    @ParameterizedTest(name = "JSON number ''{0}'' should be rejected")
+    @CsvSource(delimiter = '|', quoteCharacter = '\'', textBlock = """
+        --.e
+        1-2+3
+        01
+        1.
+        .5
+        1e
+        +1
+        """)
+    void shouldRejectMalformedJsonNumbers(String number) {
+        assertThatThrownBy(() -> PropertyFileParser.parse("{\"a\": " + number + "}", Format.JSON))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageStartingWith("Malformed JSON at line 1");
+    }
+
+    @ParameterizedTest(name = "file ''{0}'' should have format {1}")
+    @CsvSource(delimiter = '|', textBlock = """
+        params.properties | PROPERTIES
+        params.yaml       | YAML
+        dir/PARAMS.YML    | YAML
+        params.json       | JSON
+        """)
+    void shouldDetectFormatFromExtension(String file, Format expected) {
+        assertThat(PropertyFileParser.formatOf(Paths.get(file))).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldRejectUnsupportedFileType() {
+        assertThatThrownBy(() -> PropertyFileParser.formatOf(Paths.get("params.toml")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Unsupported property file type: 'params.toml'. Expected .properties, .yaml, .yml or .json.");
+    }
+}
@@ -192,6 +192,31 @@ class PropertyPlaceholderResolverTest {
             .hasMessageContaining("Failed to resolve property placeholders in: 'module.${{local.subnet_name'");
     }
 
+    @Test
+    void shouldKeepManyDoubleCurlyLiteralsAlongsidePlaceholders() {
+        Properties properties = new Properties();
+        properties.setProperty("env", "prod");
+        StringBuilder value = new StringBuilder("${env}");
+        StringBuilder expected = new StringBuilder("prod");
+        for (int i = 0; i < 48; i++) {
+            value.append("-${{var.x").append(i).append("}}");
+            expected.append("-${var.x").append(i).append('}');
+        }
+
+        String result = PropertyPlaceholderResolver.resolve(value.toString(), properties);
+
+        assertThat(result).isEqualTo(expected.toString());
+    }
+
+    @Test
+    void shouldKeepDoubleCurlyLiteralsInsideDefaults() {
+        Properties properties = new Properties();
+
+        String result = PropertyPlaceholderResolver.resolve("${subnet:${{local.subnets[\"${{var.env}}\"]}}-${zone:${{var.zone}}}}", properties);
+
+        assertThat(result).isEqualTo("${local.subnets[\"${{var.env}}\"]}-${var.zone}");
+    }
+
     @Test
     void shouldUseSystemPropertiesWhenPropertiesArgumentIsNull() {
         String key = "avm.placeholder.system";
@@ -207,5 +232,33 @@ class PropertyPlaceholderResolverTest {
         }
     }
 
-}
+    @Test
+    void shouldReuseCompiledTemplateAcrossPropertySources() {
+        PropertyPlaceholderResolver.Template template = PropertyPlaceholderResolver.compile("${env}-${region:westeurope}-[\"${{local.name}}\"]");
+        Properties production = new Properties();
+        production.setProperty("env", "prod");
+        production.setProperty("region", "eastus2");
+        Properties development = new Properties();
+        development.setProperty("env", "dev");
+
+        assertThat(template.hasPlaceholders()).isTrue();
+        assertThat(template.resolve(PropertySource.of(production))).isEqualTo("prod-eastus2-[\"${local.name}\"]");
+        assertThat(template.resolve(PropertySource.of(development))).isEqualTo("dev-westeurope-[\"${local.name}\"]");
+        assertThat(template).hasToString("${env}-${region:westeurope}-[\"${{local.name}}\"]");
+    }
+
+    @Test
+    void shouldCompileLiteralOnlyTemplateToConstant() {
+        PropertyPlaceholderResolver.Template template = PropertyPlaceholderResolver.compile("module.vnet[\"${{local.name}}\"]");
 
+        assertThat(template.hasPlaceholders()).isFalse();
+        assertThat(template.resolve(PropertySource.of(new Properties()))).isEqualTo("module.vnet[\"${local.name}\"]");
+    }
+
+    @Test
+    void shouldReportSyntaxErrorsWhenCompiling() {
+        assertThatThrownBy(() -> PropertyPlaceholderResolver.compile("${env:${}}"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Failed to resolve property placeholders in: '${}'");
+    }
+}
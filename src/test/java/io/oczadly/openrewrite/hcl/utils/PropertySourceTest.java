@@ -0,0 +1,146 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static io.oczadly.openrewrite.hcl.utils.SystemPropertyTestSupport.restoreSystemProperty;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PropertySourceTest {
+
+    @Test
+    void shouldNotObserveChangesAfterSnapshot() {
+        Properties properties = new Properties();
+        properties.setProperty("env", "prod");
+
+        PropertySource snapshot = PropertySource.snapshot(properties);
+        PropertySource live = PropertySource.of(properties);
+        properties.setProperty("env", "dev");
+        properties.setProperty("region", "eastus2");
+
+        assertThat(snapshot.getProperty("env")).isEqualTo("prod");
+        assertThat(snapshot.getProperty("region")).isNull();
+        assertThat(live.getProperty("env")).isEqualTo("dev");
+        assertThat(live.getProperty("region")).isEqualTo("eastus2");
+    }
+
+    @Test
+    void shouldReuseRunSnapshotStoredInExecutionContext() {
+        String key = "avm.property.source.run";
+        String previousValue = System.getProperty(key);
+        System.setProperty(key, "first");
+
+        try {
+            ExecutionContext ctx = new InMemoryExecutionContext();
+            PropertySource runSnapshot = PropertySource.forRun(ctx);
+            System.setProperty(key, "second");
+
+            assertThat(PropertySource.forRun(ctx)).isSameAs(runSnapshot);
+            assertThat(PropertySource.forRun(ctx).getProperty(key)).isEqualTo("first");
+            assertThat(PropertySource.forRun(new InMemoryExecutionContext()).getProperty(key)).isEqualTo("second");
+        } finally {
+            restoreSystemProperty(key, previousValue);
+        }
+    }
+
+    @Test
+    void shouldUseSourcePutIntoExecutionContext() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        PropertySource custom = key -> "avm.custom".equals(key) ? "custom-value" : null;
+        ctx.putMessage(PropertySource.RUN_SNAPSHOT_KEY, custom);
+
+        assertThat(PropertyPlaceholderResolver.resolveFrom("${avm.custom}-suffix", PropertySource.forRun(ctx)))
+            .isEqualTo("custom-value-suffix");
+    }
+
+    @Test
+    void shouldPreferEarlierLayers() {
+        Properties overrides = new Properties();
+        overrides.setProperty("env", "prod");
+        Properties defaults = new Properties();
+        defaults.setProperty("env", "dev");
+        defaults.setProperty("region", "westeurope");
+
+        PropertySource layered = PropertySource.layered(Arrays.asList(PropertySource.of(overrides), PropertySource.of(defaults)));
+
+        assertThat(layered.getProperty("env")).isEqualTo("prod");
+        assertThat(layered.getProperty("region")).isEqualTo("westeurope");
+        assertThat(layered.getProperty("zone")).isNull();
+    }
+
+    @Test
+    void shouldLoadFileOnFirstLookup(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("params.yaml");
+        PropertySource source = PropertySource.fromFile(file);
+        Files.write(file, "avm:\n  vnet:\n    location: eastus2\n".getBytes());
+
+        assertThat(source.getProperty("avm.vnet.location")).isEqualTo("eastus2");
+        Files.delete(file);
+        assertThat(source.getProperty("avm.vnet.location")).isEqualTo("eastus2");
+    }
+
+    @Test
+    void shouldReportUnreadableFileOnLookup(@TempDir Path directory) {
+        PropertySource source = PropertySource.fromFile(directory.resolve("missing.json"));
+
+        assertThatThrownBy(() -> source.getProperty("avm.vnet.location"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Failed to read property file:")
+            .hasMessageContaining("missing.json");
+    }
+
+    @Test
+    void shouldMatchConventionalEnvironmentVariableNames() {
+        PropertySource environment = LazyPropertySource.environment(Collections.singletonMap("AVM_VNET_PARENT_ID", "/subscriptions/0"));
+
+        assertThat(environment.getProperty("AVM_VNET_PARENT_ID")).isEqualTo("/subscriptions/0");
+        assertThat(environment.getProperty("avm.vnet.parent_id")).isEqualTo("/subscriptions/0");
+        assertThat(environment.getProperty("avm-vnet-parent-id")).isEqualTo("/subscriptions/0");
+        assertThat(environment.getProperty("avm.vnet.location")).isNull();
+    }
+
+    @Test
+    void shouldLayerConfiguredSourcesBehindSystemProperties(@TempDir Path directory) throws IOException {
+        Path yaml = directory.resolve("prod.yaml");
+        Files.write(yaml, "avm:\n  env: prod\n  region: eastus2\n".getBytes());
+        Path properties = directory.resolve("defaults.properties");
+        Files.write(properties, "avm.region=westeurope\navm.zone=1\n".getBytes());
+        String previousSources = System.getProperty(PropertySource.SOURCES_PROPERTY);
+        String previousEnv = System.getProperty("avm.env");
+        System.setProperty(PropertySource.SOURCES_PROPERTY, yaml + ", " + properties + ",env");
+        System.setProperty("avm.env", "staging");
+
+        try {
+            PropertySource runSource = PropertySource.forRun(new InMemoryExecutionContext());
+
+            assertThat(runSource.getProperty("avm.env")).isEqualTo("staging");
+            assertThat(runSource.getProperty("avm.region")).isEqualTo("eastus2");
+            assertThat(runSource.getProperty("avm.zone")).isEqualTo("1");
+            assertThat(PropertyPlaceholderResolver.resolveFrom("${avm.env}-${avm.region}-${avm.zone}", runSource))
+                .isEqualTo("staging-eastus2-1");
+        } finally {
+            restoreSystemProperty(PropertySource.SOURCES_PROPERTY, previousSources);
+            restoreSystemProperty("avm.env", previousEnv);
+        }
+    }
+
+    @Test
+    void shouldRejectUnsupportedConfiguredSource() {
+        Properties properties = new Properties();
+        properties.setProperty(PropertySource.SOURCES_PROPERTY, "params.toml");
+
+        assertThatThrownBy(() -> PropertySource.configured(PropertySource.of(properties)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unsupported property file type: 'params.toml'");
+    }
+}
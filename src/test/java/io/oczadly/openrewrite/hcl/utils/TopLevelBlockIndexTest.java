@@ -0,0 +1,91 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.hcl.tree.BodyContent;
+import org.openrewrite.hcl.tree.Hcl;
+import org.openrewrite.hcl.tree.Space;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.oczadly.openrewrite.hcl.utils.HclTestSupport.parse;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopLevelBlockIndexTest {
+
+    private static final String HCL = """
+        terraform {
+          required_version = ">= 1.5"
+
+          required_providers {
+            azurerm = {
+              source  = "hashicorp/azurerm"
+              version = "~> 4.0"
+            }
+          }
+        }
+
+        provider "azurerm" {
+          features {}
+        }
+
+        MODULE "vnet" {
+          source = "Azure/avm-res-network-virtualnetwork/azurerm"
+        }
+
+        module "pdns" {
+          source = "Azure/avm-res-network-privatednszone/azurerm"
+        }
+
+        locals {
+          name = "example"
+        }
+        """;
+
+    @Test
+    void shouldIndexBlocksByTypeAndFirstLabel() {
+        TopLevelBlockIndex index = TopLevelBlockIndex.of(parse(HCL));
+
+        assertThat(index.blocks("module")).hasSize(2);
+        assertThat(index.blocks("Module", "vnet")).hasSize(1);
+        assertThat(index.contains("module", "pdns")).isTrue();
+        assertThat(index.contains("provider", "azurerm")).isTrue();
+        assertThat(index.contains("provider", "azapi")).isFalse();
+        assertThat(index.first("locals")).isNotNull();
+        assertThat(index.first("data")).isNull();
+        assertThat(index.blocks("data")).isEmpty();
+    }
+
+    @Test
+    void shouldIndexRequiredProvidersOfTerraformBlock() {
+        TopLevelBlockIndex index = TopLevelBlockIndex.of(parse(HCL));
+
+        Hcl.Block requiredProviders = index.requiredProviders();
+
+        assertThat(requiredProviders).isNotNull();
+        assertThat(requiredProviders.getType().getName()).isEqualTo("required_providers");
+        assertThat(TopLevelBlockIndex.of(parse("terraform {}\n")).requiredProviders()).isNull();
+    }
+
+    @Test
+    void shouldReuseIndexForSameBody() {
+        Hcl.ConfigFile configFile = parse(HCL);
+
+        assertThat(TopLevelBlockIndex.of(configFile)).isSameAs(TopLevelBlockIndex.of(configFile));
+        assertThat(TopLevelBlockIndex.of(configFile.withPrefix(Space.format("\n"))))
+            .isSameAs(TopLevelBlockIndex.of(configFile));
+    }
+
+    @Test
+    void shouldReindexWhenBodyChanges() {
+        Hcl.ConfigFile configFile = parse(HCL);
+        assertThat(TopLevelBlockIndex.of(configFile).first("locals")).isNotNull();
+
+        List<BodyContent> body = new ArrayList<>(configFile.getBody());
+        body.remove(body.size() - 1);
+        Hcl.ConfigFile edited = configFile.withBody(body);
+
+        assertThat(edited.getId()).isEqualTo(configFile.getId());
+        assertThat(TopLevelBlockIndex.of(edited).first("locals")).isNull();
+    }
+}
@@ -1,9 +1,11 @@
 package io.oczadly.openrewrite.hcl.utils;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class VersionConstraintMatcherTest {
 
@@ -29,16 +31,27 @@ class VersionConstraintMatcherTest {
         >= 0.10.0               | ${var.module_version} | false
         ~> 0.3.5                | ~> 0.3.5 | true
         ~> 0.3                  | ~> 0.3.5 | true
-        ~> 0.3.5                | ~> 0.3   | false
+        ~> 0.3.5                | ~> 0.3   | true
         >= 0.3.0                | ~> 0.3.5 | true
         ~> 0.4.0                | ~> 0.3.5 | false
         = 0.3.5                 | ~> 0.3.5 | true
-        != 0.3.5                | ~> 0.3.5 | false
+        != 0.3.5                | ~> 0.3.5 | true
         >= 0.3.5                | >= 0.3.5 | true
         ~> 0.10.1               | = 0.10.1 | true
         ~> 0.10.1               | <= 0.10.1 | true
         = 0.3.5                 | != 0.3.5 | false
-        >= 0.3.5                | != 0.3.5 | false
+        >= 0.3.5                | != 0.3.5 | true
+        >= 0.10.0               | 0.010.0  | false
+        >= 0.10.0               | 0.10.0.1 | false
+        >= 0.10.0               | 1048575.0.0 | true
+        >= 0.10.0               | 1048576.0.0 | false
+        ~> 1048575.0            | 1048575.9.9 | true
+        ~> 0.3.5                | ">= 0.3.0, < 0.3.5" | false
+        ~> 0.3.5                | ">= 0.3.0, < 0.3.6" | true
+        != 0.3.5                | = 0.3.5  | false
+        < 0.3.0                 | >= 0.3.0 | false
+        <= 0.3.0                | >= 0.3.0 | true
+        >= 0.10.0               | ~> 0.x   | false
         """)
     void shouldMatchSupportedConstraints(String constraint, String moduleVersion, boolean expected) {
         assertThat(VersionConstraintMatcher.matches(constraint, moduleVersion)).isEqualTo(expected);
@@ -56,8 +69,86 @@ class VersionConstraintMatcherTest {
         >= 0.10.x           | false
         >= 0.10.0,          | false
         0.10.0-beta         | false
+        1048576.0.0         | false
         """)
     void shouldValidateConstraints(String constraint, boolean expected) {
         assertThat(VersionConstraintMatcher.isValidConstraint(constraint)).isEqualTo(expected);
     }
+
+    @Test
+    void shouldReuseCompiledConstraintAcrossModuleVersions() {
+        VersionConstraintMatcher.CompiledConstraint constraint = VersionConstraintMatcher.compile(">= 0.10.0, < 0.11.0");
+
+        assertThat(constraint.matches("0.10.0")).isTrue();
+        assertThat(constraint.matches("0.10.9")).isTrue();
+        assertThat(constraint.matches("0.11.0")).isFalse();
+        assertThat(constraint.matches(null)).isFalse();
+        assertThat(constraint).hasToString(">= 0.10.0, < 0.11.0");
+    }
+
+    @Test
+    void shouldRejectInvalidConstraintWhenCompiling() {
+        assertThatThrownBy(() -> VersionConstraintMatcher.compile(">= 0.10.x"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldMatchRawQuotedLiteralSource() {
+        VersionConstraintMatcher.CompiledConstraint constraint = VersionConstraintMatcher.compile("~> 0.10.1");
+
+        assertThat(constraint.matches("\"0.10.4\"")).isTrue();
+        assertThat(constraint.matches(" \" ~> 0.10.2 \" ")).isTrue();
+        assertThat(constraint.matches(new StringBuilder("\"0.11.0\""))).isFalse();
+        assertThat(constraint.matches("\"\"")).isFalse();
+    }
+
+    @ParameterizedTest(name = "constraint ''{0}'' satisfiability should be {1}")
+    @CsvSource(delimiter = '|', quoteCharacter = '"', textBlock = """
+        >= 0.10.0, < 0.11.0     | true
+        != 0.10.0               | true
+        >= 0.11.0, < 0.11.0     | false
+        ~> 0.10.1, >= 0.11.0    | false
+        = 0.10.1, != 0.10.1     | false
+        < 0.0.0                 | false
+        > 0.10.1, < 0.10.2      | false
+        >= 0.10.x               | false
+        """)
+    void shouldDetectUnsatisfiableConstraints(String constraint, boolean expected) {
+        assertThat(VersionConstraintMatcher.isSatisfiableConstraint(constraint)).isEqualTo(expected);
+    }
+
+    @Test
+    void shouldIntersectAndOverlapCompiledConstraints() {
+        VersionConstraintMatcher.CompiledConstraint pessimistic = VersionConstraintMatcher.compile("~> 0.10");
+        VersionConstraintMatcher.CompiledConstraint excluded = VersionConstraintMatcher.compile("!= 0.10.4");
+        VersionConstraintMatcher.CompiledConstraint newer = VersionConstraintMatcher.compile(">= 1.0.0");
+
+        VersionConstraintMatcher.CompiledConstraint intersection = pessimistic.intersect(excluded);
+
+        assertThat(intersection.matches("0.10.3")).isTrue();
+        assertThat(intersection.matches("0.10.4")).isFalse();
+        assertThat(intersection.matches("0.99.0")).isTrue();
+        assertThat(intersection.matches("1.0.0")).isFalse();
+        assertThat(intersection).hasToString("~> 0.10, != 0.10.4");
+        assertThat(pessimistic.overlaps(excluded)).isTrue();
+        assertThat(pessimistic.overlaps(newer)).isFalse();
+        assertThat(pessimistic.intersect(newer).isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldMemoizeParsedModuleVersions() {
+        VersionConstraintMatcher.CompiledConstraint constraint = VersionConstraintMatcher.compile("~> 1.2");
+        String moduleVersion = "~> 1.2.cache-" + System.nanoTime();
+        String repeatedVersion = "\"1.2.77\"";
+
+        long missesBefore = VersionConstraintMatcher.moduleVersionCache().missCount();
+        assertThat(constraint.matches(repeatedVersion)).isTrue();
+        assertThat(constraint.matches(repeatedVersion)).isTrue();
+        assertThat(constraint.matches(moduleVersion)).isFalse();
+        long hitsBefore = VersionConstraintMatcher.moduleVersionCache().hitCount();
+        assertThat(constraint.matches(moduleVersion)).isFalse();
+
+        assertThat(VersionConstraintMatcher.moduleVersionCache().hitCount()).isGreaterThan(hitsBefore);
+        assertThat(VersionConstraintMatcher.moduleVersionCache().missCount()).isGreaterThan(missesBefore);
+    }
 }
@@ -0,0 +1,56 @@
+package io.oczadly.openrewrite.hcl.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeakIdentityCacheTest {
+
+    @Test
+    void shouldKeyByInstanceRatherThanEquality() {
+        WeakIdentityCache<String, Integer> cache = new WeakIdentityCache<>();
+        String key = new String("a");
+        String equalKey = new String("a");
+
+        cache.put(key, 1);
+
+        assertThat(cache.getIfPresent(key)).isEqualTo(1);
+        assertThat(cache.getIfPresent(equalKey)).isNull();
+
+        cache.put(equalKey, 2);
+
+        assertThat(cache.getIfPresent(key)).isEqualTo(1);
+        assertThat(cache.getIfPresent(equalKey)).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldReplaceValueOfSameInstance() {
+        WeakIdentityCache<Object, String> cache = new WeakIdentityCache<>();
+        Object key = new Object();
+
+        cache.put(key, "first");
+        cache.put(key, "second");
+
+        assertThat(cache.getIfPresent(key)).isEqualTo("second");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDropEntriesOfUnreachableKeys() throws InterruptedException {
+        WeakIdentityCache<Object, String> cache = new WeakIdentityCache<>();
+        Object retained = new Object();
+        cache.put(retained, "retained");
+        for (int i = 0; i < 100; i++) {
+            cache.put(new Object(), "dropped");
+        }
+
+        for (int attempt = 0; attempt < 50 && cache.size() > 1; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getIfPresent(retained)).isEqualTo("retained");
+    }
+}